@@ -0,0 +1,94 @@
+package com.example.externalsort.benchmark;
+
+import com.example.externalsort.aggregator.MyBufferAggregator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The benchmark is intended to measure {@link MyBufferAggregator#getInt(long)} and
+ * {@link MyBufferAggregator#setInt(long, int)} in sequential and random access patterns. The aggregator holds
+ * {@link #LENGTH} integers split into segments of the specified size.
+ *
+ * @author Ruslan Sverchkov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(AggregatorBenchmark.LENGTH)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregatorBenchmark {
+
+    static final int LENGTH = 1 << 24;
+
+    @Param({"16777216", "1048576", "65536"})
+    private int segmentInts;
+
+    private MyBufferAggregator<ByteBuffer> aggregator;
+    private long[] randomIndexes;
+
+    @Setup
+    public void setUp() {
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int allocated = 0; allocated < LENGTH; allocated += segmentInts) {
+            buffers.add(ByteBuffer.allocateDirect(segmentInts * MyBufferAggregator.INT_SIZE_IN_BYTES));
+        }
+        aggregator = new MyBufferAggregator<>(buffers);
+        Random random = new Random(0);
+        randomIndexes = new long[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            randomIndexes[i] = random.nextInt(LENGTH);
+            aggregator.setInt(i, random.nextInt());
+        }
+    }
+
+    @Benchmark
+    public long sequentialGet() {
+        long sum = 0;
+        for (long i = 0; i < LENGTH; i++) {
+            sum += aggregator.getInt(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void sequentialSet() {
+        for (long i = 0; i < LENGTH; i++) {
+            aggregator.setInt(i, (int) i);
+        }
+    }
+
+    @Benchmark
+    public long randomGet() {
+        long sum = 0;
+        for (long index : randomIndexes) {
+            sum += aggregator.getInt(index);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void randomSet() {
+        for (long index : randomIndexes) {
+            aggregator.setInt(index, (int) index);
+        }
+    }
+
+}
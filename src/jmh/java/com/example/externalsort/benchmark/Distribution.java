@@ -0,0 +1,104 @@
+package com.example.externalsort.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The enumeration is intended to list the data distributions the benchmarks are run on.
+ *
+ * @author Ruslan Sverchkov
+ */
+public enum Distribution {
+
+    /**
+     * Uniformly distributed 32-bit integers.
+     */
+    RANDOM {
+        @Override
+        public int[] generate(int size, long seed) {
+            Random random = new Random(seed);
+            int[] data = new int[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = random.nextInt();
+            }
+            return data;
+        }
+    },
+
+    /**
+     * Random integers sorted ascending.
+     */
+    SORTED {
+        @Override
+        public int[] generate(int size, long seed) {
+            int[] data = RANDOM.generate(size, seed);
+            Arrays.sort(data);
+            return data;
+        }
+    },
+
+    /**
+     * Random integers sorted descending, like the files of the integration test.
+     */
+    REVERSED {
+        @Override
+        public int[] generate(int size, long seed) {
+            int[] data = SORTED.generate(size, seed);
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                int temp = data[i];
+                data[i] = data[j];
+                data[j] = temp;
+            }
+            return data;
+        }
+    },
+
+    /**
+     * Integers out of a thousand distinct ones.
+     */
+    FEW_UNIQUES {
+        @Override
+        public int[] generate(int size, long seed) {
+            Random random = new Random(seed);
+            int[] data = new int[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = random.nextInt(1000) * 7919;
+            }
+            return data;
+        }
+    },
+
+    /**
+     * Integers out of a million distinct ones, the k-th most frequent integer occurs about 1/k as often as the most
+     * frequent one.
+     */
+    ZIPF {
+        @Override
+        public int[] generate(int size, long seed) {
+            int ranks = 1 << 20;
+            double[] cumulative = new double[ranks];
+            double sum = 0;
+            for (int rank = 0; rank < ranks; rank++) {
+                sum += 1.0 / (rank + 1);
+                cumulative[rank] = sum;
+            }
+            Random random = new Random(seed);
+            int[] data = new int[size];
+            for (int i = 0; i < size; i++) {
+                int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                data[i] = (rank < 0 ? -rank - 1 : rank) * 0x9E3779B1;
+            }
+            return data;
+        }
+    };
+
+    /**
+     * The method is intended to generate integers of this distribution.
+     *
+     * @param size the number of integers
+     * @param seed a random seed, the same seed yields the same integers
+     * @return the integers, never returns null
+     */
+    public abstract int[] generate(int size, long seed);
+
+}
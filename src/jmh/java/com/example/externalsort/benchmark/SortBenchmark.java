@@ -0,0 +1,90 @@
+package com.example.externalsort.benchmark;
+
+import com.example.externalsort.SortEngine;
+import com.example.externalsort.SynchronousExecutor;
+import com.example.externalsort.aggregator.MyBufferAggregator;
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The benchmark is intended to measure the sort engines on in-memory aggregators of different sizes and data
+ * distributions with different numbers of threads. The data is restored before every invocation, the restoring is not
+ * measured. Pick the combinations to run with JMH's -p option, e.g. {@code -p engine=RADIX -p size=10000000}.
+ *
+ * @author Ruslan Sverchkov
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SortBenchmark {
+
+    @Param({"1000000", "10000000"})
+    private int size;
+
+    @Param({"1", "4", "16"})
+    private int threads;
+
+    @Param
+    private Distribution distribution;
+
+    @Param
+    private SortEngine engine;
+
+    private int[] data;
+    private ForkJoinPool pool;
+    private SynchronousExecutor executor;
+    private MyBufferAggregator<ByteBuffer> aggregator;
+    private MyBufferAggregator<ByteBuffer> scratch;
+
+    @Setup
+    public void setUp() {
+        data = distribution.generate(size, 0);
+        pool = new ForkJoinPool(threads);
+        executor = new SynchronousExecutor(pool);
+        aggregator = getAggregator(size);
+        scratch = engine.isScratchRequired() ? getAggregator(size) : null;
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        for (int i = 0; i < size; i++) {
+            aggregator.setInt(i, data[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public MyBufferAggregator<ByteBuffer> sort() throws Throwable {
+        executor.execute(engine.getTask(aggregator, scratch));
+        return aggregator;
+    }
+
+    private static MyBufferAggregator<ByteBuffer> getAggregator(int size) {
+        return new MyBufferAggregator<>(ImmutableList.of(
+                ByteBuffer.allocateDirect(size * MyBufferAggregator.INT_SIZE_IN_BYTES)));
+    }
+
+}
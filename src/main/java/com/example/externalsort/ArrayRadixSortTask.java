@@ -0,0 +1,207 @@
+package com.example.externalsort;
+
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A parallel LSD radix sort implementation for an int array, the same algorithm as {@link RadixSortTask}: the integers
+ * are distributed between the array and a scratch array by 8-bit digits in at most four passes, every pass is split
+ * into one block per pool thread which are counted and then scattered in parallel. A pass is skipped if all integers
+ * share the same digit.
+ * <p/>
+ * If the task is cancelled, the blocks stop at the next check and the array is left partially sorted.
+ *
+ * @author Ruslan Sverchkov
+ */
+@NotThreadSafe
+public class ArrayRadixSortTask extends RecursiveAction {
+
+    private static final int DIGIT_BITS = 8;
+    private static final int RADIX = 1 << DIGIT_BITS;
+    private static final int DIGIT_MASK = RADIX - 1;
+    private static final int SIGN_DIGIT_SHIFT = Integer.SIZE - DIGIT_BITS;
+    private static final int MIN_BLOCK_LENGTH = 1 << 16;
+    private static final int CANCELLATION_CHECK_MASK = (1 << 16) - 1;
+
+    private final int[] array;
+    private final int[] scratch;
+
+    /**
+     * Constructs an ArrayRadixSortTask instance.
+     *
+     * @param array   the array to sort
+     * @param scratch an array to distribute the integers to, its content is overwritten
+     * @throws IllegalArgumentException if:
+     *                                  * array is null
+     *                                  * scratch is null
+     *                                  * scratch is shorter than array
+     */
+    public ArrayRadixSortTask(int[] array, int[] scratch) {
+        Validate.notNull(array);
+        Validate.notNull(scratch);
+        Validate.isTrue(scratch.length >= array.length);
+        this.array = array;
+        this.scratch = scratch;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void compute() {
+        int length = array.length;
+        int blocks = Math.max(1, Math.min(getParallelism(), length / MIN_BLOCK_LENGTH));
+        int[] bounds = new int[blocks + 1];
+        for (int block = 0; block <= blocks; block++) {
+            bounds[block] = (int) ((long) length * block / blocks);
+        }
+        int[] source = array;
+        int[] target = scratch;
+        for (int shift = 0; shift < Integer.SIZE && !isCancelled(); shift += DIGIT_BITS) {
+            int[][] counts = new int[blocks][RADIX];
+            List<RecursiveAction> histograms = new ArrayList<>(blocks);
+            for (int block = 0; block < blocks; block++) {
+                histograms.add(new Histogram(this, source, bounds[block], bounds[block + 1], shift, counts[block]));
+            }
+            invokeAll(histograms);
+            if (!toOffsets(counts, length)) {
+                continue;
+            }
+            List<RecursiveAction> scatters = new ArrayList<>(blocks);
+            for (int block = 0; block < blocks; block++) {
+                scatters.add(new Scatter(this, source, target, bounds[block], bounds[block + 1], shift, counts[block]));
+            }
+            invokeAll(scatters);
+            int[] temp = source;
+            source = target;
+            target = temp;
+        }
+        if (source != array) {
+            System.arraycopy(source, 0, array, 0, length);
+        }
+    }
+
+    /**
+     * The method is intended to find out how many threads may scan the data at the same time.
+     *
+     * @return the parallelism of the pool the task runs in, or of the common pool if it runs outside of a pool
+     */
+    private static int getParallelism() {
+        ForkJoinPool pool = ForkJoinTask.getPool();
+        return pool == null ? ForkJoinPool.getCommonPoolParallelism() : pool.getParallelism();
+    }
+
+    /**
+     * The method is intended to replace the per-block digit counts with the positions the blocks start scattering
+     * each digit from. Digits are ordered first, blocks second, which keeps every pass stable.
+     *
+     * @param counts per-block digit counts
+     * @param length the number of integers counted
+     * @return {@code false} if all the integers share the same digit and the pass may be skipped
+     */
+    private static boolean toOffsets(int[][] counts, int length) {
+        int offset = 0;
+        for (int digit = 0; digit < RADIX; digit++) {
+            int digitCount = 0;
+            for (int[] blockCounts : counts) {
+                int count = blockCounts[digit];
+                blockCounts[digit] = offset;
+                offset += count;
+                digitCount += count;
+            }
+            if (digitCount == length) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The method is intended to extract a digit of the specified integer. The sign bit is inverted in the most
+     * significant digit so that negative integers precede positive ones.
+     *
+     * @param value an integer
+     * @param shift the digit position in bits
+     * @return the digit, between 0 and {@code RADIX - 1}
+     */
+    private static int getDigit(int value, int shift) {
+        int digit = (value >>> shift) & DIGIT_MASK;
+        return shift == SIGN_DIGIT_SHIFT ? digit ^ (RADIX >>> 1) : digit;
+    }
+
+    /**
+     * The task counts the digits of a block.
+     */
+    private static class Histogram extends RecursiveAction {
+
+        private final RecursiveAction root;
+        private final int[] source;
+        private final int from;
+        private final int to;
+        private final int shift;
+        private final int[] counts;
+
+        Histogram(RecursiveAction root, int[] source, int from, int to, int shift, int[] counts) {
+            this.root = root;
+            this.source = source;
+            this.from = from;
+            this.to = to;
+            this.shift = shift;
+            this.counts = counts;
+        }
+
+        @Override
+        protected void compute() {
+            for (int i = from; i < to; i++) {
+                if ((i & CANCELLATION_CHECK_MASK) == 0 && root.isCancelled()) {
+                    return;
+                }
+                counts[getDigit(source[i], shift)]++;
+            }
+        }
+
+    }
+
+    /**
+     * The task moves the integers of a block to the positions the block has been given for their digits.
+     */
+    private static class Scatter extends RecursiveAction {
+
+        private final RecursiveAction root;
+        private final int[] source;
+        private final int[] target;
+        private final int from;
+        private final int to;
+        private final int shift;
+        private final int[] offsets;
+
+        Scatter(RecursiveAction root, int[] source, int[] target, int from, int to, int shift, int[] offsets) {
+            this.root = root;
+            this.source = source;
+            this.target = target;
+            this.from = from;
+            this.to = to;
+            this.shift = shift;
+            this.offsets = offsets;
+        }
+
+        @Override
+        protected void compute() {
+            for (int i = from; i < to; i++) {
+                if ((i & CANCELLATION_CHECK_MASK) == 0 && root.isCancelled()) {
+                    return;
+                }
+                int value = source[i];
+                target[offsets[getDigit(value, shift)]++] = value;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,315 @@
+package com.example.externalsort;
+
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A parallel sample sort implementation for an int array, the same algorithm as {@link SampleSortTask}: the splitters
+ * taken from a random sample cut the range into up to 256 buckets, the blocks of the range are counted and scattered
+ * to the scratch array in parallel, and every bucket is copied back and sorted by a task of its own. Large buckets are
+ * sample sorted again, small ones by {@link Arrays#sort(int[], int, int)}. If all the integers of a range fall into
+ * one bucket, the range is sorted by {@link ArraySortTask}.
+ * <p/>
+ * If the task is cancelled, the blocks and buckets stop at the next check and the array is left partially sorted.
+ *
+ * @author Ruslan Sverchkov
+ */
+@NotThreadSafe
+public class ArraySampleSortTask extends RecursiveAction {
+
+    private static final int MAX_LOG_BUCKETS = 8;
+    private static final int OVERSAMPLING = 16;
+    private static final int SEQUENTIAL_THRESHOLD = 1 << 16;
+    private static final int MIN_BLOCK_LENGTH = 1 << 16;
+
+    private final ArraySampleSortTask root;
+    private final int[] array;
+    private final int[] scratch;
+    private final int from;
+    private final int to;
+
+    /**
+     * Constructs an ArraySampleSortTask instance.
+     *
+     * @param array   the array to sort
+     * @param scratch an array to distribute the integers to, its content is overwritten
+     * @throws IllegalArgumentException if:
+     *                                  * array is null
+     *                                  * scratch is null
+     *                                  * scratch is shorter than array
+     */
+    public ArraySampleSortTask(int[] array, int[] scratch) {
+        Validate.notNull(array);
+        Validate.notNull(scratch);
+        Validate.isTrue(scratch.length >= array.length);
+        this.root = this;
+        this.array = array;
+        this.scratch = scratch;
+        this.from = 0;
+        this.to = array.length;
+    }
+
+    /**
+     * Constructs an ArraySampleSortTask instance for a bucket of the root task's range.
+     *
+     * @param root the task this one has been split from in the first place
+     * @param from first index of the bucket, inclusive
+     * @param to   last index of the bucket, exclusive
+     */
+    private ArraySampleSortTask(ArraySampleSortTask root, int from, int to) {
+        this.root = root;
+        this.array = root.array;
+        this.scratch = root.scratch;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void compute() {
+        int length = to - from;
+        if (root.isCancelled() || length < 2) {
+            return;
+        }
+        if (length <= SEQUENTIAL_THRESHOLD) {
+            Arrays.sort(array, from, to);
+            return;
+        }
+        int logBuckets = Math.min(MAX_LOG_BUCKETS, 32 - Integer.numberOfLeadingZeros(length / SEQUENTIAL_THRESHOLD));
+        int[] tree = getSplitterTree(logBuckets);
+        int blocks = Math.max(1, Math.min(getParallelism(), length / MIN_BLOCK_LENGTH));
+        int[] bounds = new int[blocks + 1];
+        for (int block = 0; block <= blocks; block++) {
+            bounds[block] = from + (int) ((long) length * block / blocks);
+        }
+        int[][] counts = new int[blocks][tree.length];
+        List<RecursiveAction> histograms = new ArrayList<>(blocks);
+        for (int block = 0; block < blocks; block++) {
+            histograms.add(new Histogram(this, bounds[block], bounds[block + 1], tree, logBuckets, counts[block]));
+        }
+        invokeAll(histograms);
+        if (root.isCancelled()) {
+            return;
+        }
+        int[] bucketBounds = new int[tree.length + 1];
+        if (!toOffsets(counts, from, length, bucketBounds)) {
+            new ArraySortTask(root, array, from, to - 1).invoke();
+            return;
+        }
+        List<RecursiveAction> scatters = new ArrayList<>(blocks);
+        for (int block = 0; block < blocks; block++) {
+            scatters.add(new Scatter(this, bounds[block], bounds[block + 1], tree, logBuckets, counts[block]));
+        }
+        invokeAll(scatters);
+        List<RecursiveAction> buckets = new ArrayList<>(tree.length);
+        for (int bucket = 0; bucket < tree.length; bucket++) {
+            if (bucketBounds[bucket + 1] > bucketBounds[bucket]) {
+                buckets.add(new Bucket(new ArraySampleSortTask(root, bucketBounds[bucket], bucketBounds[bucket + 1])));
+            }
+        }
+        invokeAll(buckets);
+    }
+
+    /**
+     * The method is intended to find out how many threads may scan the range at the same time.
+     *
+     * @return the parallelism of the pool the task runs in, or of the common pool if it runs outside of a pool
+     */
+    private static int getParallelism() {
+        ForkJoinPool pool = ForkJoinTask.getPool();
+        return pool == null ? ForkJoinPool.getCommonPoolParallelism() : pool.getParallelism();
+    }
+
+    /**
+     * The method is intended to choose the splitters from a random sample of the range and lay them out as an
+     * implicit binary search tree, see {@link SampleSortTask}.
+     *
+     * @param logBuckets the binary logarithm of the number of buckets
+     * @return the tree, an array as long as the number of buckets whose element at index 0 is not used
+     */
+    private int[] getSplitterTree(int logBuckets) {
+        int bucketsNumber = 1 << logBuckets;
+        int[] sample = new int[bucketsNumber * OVERSAMPLING];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = array[from + random.nextInt(to - from)];
+        }
+        Arrays.sort(sample);
+        int[] splitters = new int[bucketsNumber - 1];
+        for (int i = 0; i < splitters.length; i++) {
+            splitters[i] = sample[(i + 1) * OVERSAMPLING];
+        }
+        int[] tree = new int[bucketsNumber];
+        fillTree(tree, 1, splitters, 0, splitters.length);
+        return tree;
+    }
+
+    /**
+     * The method is intended to put the median of the specified splitters to the specified node and the rest to its
+     * subtrees.
+     *
+     * @param tree      the tree
+     * @param node      an index of the node
+     * @param splitters sorted splitters
+     * @param first     first index of the splitters to put, inclusive
+     * @param last      last index of the splitters to put, exclusive
+     */
+    private static void fillTree(int[] tree, int node, int[] splitters, int first, int last) {
+        if (first >= last) {
+            return;
+        }
+        int middle = (first + last) >>> 1;
+        tree[node] = splitters[middle];
+        fillTree(tree, 2 * node, splitters, first, middle);
+        fillTree(tree, 2 * node + 1, splitters, middle + 1, last);
+    }
+
+    /**
+     * The method is intended to find the bucket of the specified integer. Bucket i holds the integers greater than
+     * splitter i - 1 and not greater than splitter i.
+     *
+     * @param tree       the splitter tree
+     * @param logBuckets the binary logarithm of the number of buckets
+     * @param value      an integer
+     * @return the bucket, between 0 and the number of buckets - 1
+     */
+    private static int getBucket(int[] tree, int logBuckets, int value) {
+        int node = 1;
+        for (int level = 0; level < logBuckets; level++) {
+            node = 2 * node + (value > tree[node] ? 1 : 0);
+        }
+        return node - tree.length;
+    }
+
+    /**
+     * The method is intended to replace the per-block bucket counts with the positions the blocks start scattering
+     * each bucket from. Buckets are ordered first, blocks second.
+     *
+     * @param counts       per-block bucket counts
+     * @param from         the position the first bucket starts from
+     * @param length       the number of integers counted
+     * @param bucketBounds an array to store the positions each bucket starts from to, the last element is set to the
+     *                     position the last bucket ends at
+     * @return {@code false} if all the integers fall into the same bucket and distributing them makes no progress
+     */
+    private static boolean toOffsets(int[][] counts, int from, int length, int[] bucketBounds) {
+        int offset = from;
+        boolean progress = true;
+        for (int bucket = 0; bucket < bucketBounds.length - 1; bucket++) {
+            bucketBounds[bucket] = offset;
+            for (int[] blockCounts : counts) {
+                int count = blockCounts[bucket];
+                blockCounts[bucket] = offset;
+                offset += count;
+            }
+            if (offset - bucketBounds[bucket] == length) {
+                progress = false;
+            }
+        }
+        bucketBounds[bucketBounds.length - 1] = offset;
+        return progress;
+    }
+
+    /**
+     * The task counts the buckets of a block.
+     */
+    private static class Histogram extends RecursiveAction {
+
+        private final ArraySampleSortTask task;
+        private final int from;
+        private final int to;
+        private final int[] tree;
+        private final int logBuckets;
+        private final int[] counts;
+
+        Histogram(ArraySampleSortTask task, int from, int to, int[] tree, int logBuckets, int[] counts) {
+            this.task = task;
+            this.from = from;
+            this.to = to;
+            this.tree = tree;
+            this.logBuckets = logBuckets;
+            this.counts = counts;
+        }
+
+        @Override
+        protected void compute() {
+            int[] array = task.array;
+            for (int i = from; i < to; i++) {
+                if ((i & (MIN_BLOCK_LENGTH - 1)) == 0 && task.root.isCancelled()) {
+                    return;
+                }
+                counts[getBucket(tree, logBuckets, array[i])]++;
+            }
+        }
+
+    }
+
+    /**
+     * The task moves the integers of a block to the scratch positions the block has been given for their buckets.
+     */
+    private static class Scatter extends RecursiveAction {
+
+        private final ArraySampleSortTask task;
+        private final int from;
+        private final int to;
+        private final int[] tree;
+        private final int logBuckets;
+        private final int[] offsets;
+
+        Scatter(ArraySampleSortTask task, int from, int to, int[] tree, int logBuckets, int[] offsets) {
+            this.task = task;
+            this.from = from;
+            this.to = to;
+            this.tree = tree;
+            this.logBuckets = logBuckets;
+            this.offsets = offsets;
+        }
+
+        @Override
+        protected void compute() {
+            int[] array = task.array;
+            int[] scratch = task.scratch;
+            for (int i = from; i < to; i++) {
+                if ((i & (MIN_BLOCK_LENGTH - 1)) == 0 && task.root.isCancelled()) {
+                    return;
+                }
+                int value = array[i];
+                scratch[offsets[getBucket(tree, logBuckets, value)]++] = value;
+            }
+        }
+
+    }
+
+    /**
+     * The task copies a bucket back from the scratch array and sorts it.
+     */
+    private static class Bucket extends RecursiveAction {
+
+        private final ArraySampleSortTask task;
+
+        Bucket(ArraySampleSortTask task) {
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (task.root.isCancelled()) {
+                return;
+            }
+            System.arraycopy(task.scratch, task.from, task.array, task.from, task.to - task.from);
+            task.invoke();
+        }
+
+    }
+
+}
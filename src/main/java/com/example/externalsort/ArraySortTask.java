@@ -0,0 +1,279 @@
+package com.example.externalsort;
+
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A parallel quick sort implementation for an int array. The task partitions its sub-sequence by Hoare's scheme, forks
+ * a task for the smaller part and goes on partitioning the other one itself until it is not longer than the threshold,
+ * then sorts it by {@link Arrays#sort(int[], int, int)}. The threshold leaves a few sub-sequences per pool thread, so
+ * the primitive sort of the JDK does most of the work, and in a pool of one thread the array is sorted by it at once.
+ * A part which has been partitioned too many times is sorted by it as well, so a bad pivot sequence cannot make the
+ * sort quadratic.
+ * <p/>
+ * An adaptive task first splits the array into natural runs like {@link RunAdaptiveSortTask}. If there are few long
+ * runs, the array is sorted by {@link Arrays#sort(int[])} at once, which merges the natural runs itself.
+ * <p/>
+ * The task stops as soon as the task it has been split from in the first place is cancelled, or the task which has
+ * started it as a part of its own work, if any.
+ *
+ * @author Ruslan Sverchkov
+ */
+@NotThreadSafe
+public class ArraySortTask extends RecursiveAction {
+
+    /**
+     * Sub-sequences not longer than this are never partitioned.
+     */
+    public static final int MIN_THRESHOLD = 1 << 16;
+
+    private static final int SUB_SEQUENCES_PER_THREAD = 4;
+    private static final int NINTHER_THRESHOLD = 1 << 10;
+
+    private final ArraySortTask root;
+    private final ForkJoinTask<?> owner;
+    private final int[] array;
+    private final int firstIndex;
+    private final int lastIndex;
+    private final int depthLimit;
+    private final boolean adaptive;
+    private int threshold;
+
+    /**
+     * Constructs an ArraySortTask instance sorting the whole array.
+     *
+     * @param array    the array to sort
+     * @param adaptive whether or not to look for natural runs first
+     * @throws IllegalArgumentException if array is null
+     */
+    public ArraySortTask(int[] array, boolean adaptive) {
+        Validate.notNull(array);
+        this.root = this;
+        this.owner = this;
+        this.array = array;
+        this.firstIndex = 0;
+        this.lastIndex = array.length - 1;
+        this.depthLimit = SequentialSort.getDepthLimit(array.length);
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * Constructs an ArraySortTask instance which also stops when the specified task is cancelled. This is intended for
+     * tasks which sort a part of their array by an ArraySortTask.
+     *
+     * @param owner      the task whose cancellation stops this one
+     * @param array      the array to sort
+     * @param firstIndex first index of sub-sequence to sort
+     * @param lastIndex  last index of sub-sequence to sort, if lastIndex < firstIndex we simply do nothing
+     * @throws IllegalArgumentException if:
+     *                                  * owner is null
+     *                                  * array is null
+     *                                  * first index is negative
+     *                                  * last index is not less than the array length
+     */
+    ArraySortTask(ForkJoinTask<?> owner, int[] array, int firstIndex, int lastIndex) {
+        Validate.notNull(owner);
+        Validate.notNull(array);
+        Validate.isTrue(firstIndex >= 0);
+        Validate.isTrue(lastIndex < array.length);
+        this.root = this;
+        this.owner = owner;
+        this.array = array;
+        this.firstIndex = firstIndex;
+        this.lastIndex = lastIndex;
+        this.depthLimit = SequentialSort.getDepthLimit(lastIndex - firstIndex + 1);
+        this.adaptive = false;
+    }
+
+    /**
+     * Constructs an ArraySortTask instance for a sub-sequence of the root task's sub-sequence.
+     *
+     * @param root       the task this one has been split from in the first place
+     * @param firstIndex first index of sub-sequence to sort
+     * @param lastIndex  last index of sub-sequence to sort
+     * @param depthLimit how many more times the sub-sequence may be partitioned
+     */
+    private ArraySortTask(ArraySortTask root, int firstIndex, int lastIndex, int depthLimit) {
+        this.root = root;
+        this.owner = root.owner;
+        this.array = root.array;
+        this.firstIndex = firstIndex;
+        this.lastIndex = lastIndex;
+        this.depthLimit = depthLimit;
+        this.adaptive = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void compute() {
+        if (root == this) {
+            if (adaptive && isPresorted()) {
+                Arrays.sort(array);
+                return;
+            }
+            long length = lastIndex - firstIndex + 1;
+            threshold = (int) Math.max(MIN_THRESHOLD, length / (getParallelism() * SUB_SEQUENCES_PER_THREAD));
+        }
+        int first = firstIndex;
+        int last = lastIndex;
+        int depth = depthLimit;
+        List<ArraySortTask> forked = new ArrayList<>();
+        while (last - first + 1 > root.threshold && depth > 0 && !root.isStopped()) {
+            int leftLast = partition(first, last);
+            depth--;
+            ArraySortTask task;
+            if (leftLast - first < last - leftLast - 1) {
+                task = new ArraySortTask(root, first, leftLast, depth);
+                first = leftLast + 1;
+            } else {
+                task = new ArraySortTask(root, leftLast + 1, last, depth);
+                last = leftLast;
+            }
+            task.fork();
+            forked.add(task);
+        }
+        if (!root.isStopped() && first < last) {
+            Arrays.sort(array, first, last + 1);
+        }
+        for (int k = forked.size() - 1; k >= 0; k--) {
+            forked.get(k).join();
+        }
+    }
+
+    /**
+     * Tells whether or not the task should stop, which is the case if either the task or its owner is cancelled.
+     *
+     * @return {@code true} if the task should stop
+     */
+    private boolean isStopped() {
+        return isCancelled() || owner.isCancelled();
+    }
+
+    /**
+     * The method is intended to find out how many threads may sort the array at the same time.
+     *
+     * @return the parallelism of the pool the task runs in, or of the common pool if it runs outside of a pool
+     */
+    private static int getParallelism() {
+        ForkJoinPool pool = ForkJoinTask.getPool();
+        return pool == null ? ForkJoinPool.getCommonPoolParallelism() : pool.getParallelism();
+    }
+
+    /**
+     * The method is intended to tell whether or not the array consists of few long natural runs, as
+     * {@link RunAdaptiveSortTask} defines them.
+     *
+     * @return whether or not the array is presorted
+     */
+    private boolean isPresorted() {
+        int maxRuns = (int) Math.min(RunAdaptiveSortTask.MAX_RUNS,
+                array.length / RunAdaptiveSortTask.MIN_AVERAGE_RUN_LENGTH + 1);
+        int runs = 0;
+        int i = 0;
+        while (i < array.length) {
+            if (runs++ == maxRuns) {
+                return false;
+            }
+            int j = i + 1;
+            if (j < array.length && array[j] < array[i]) {
+                while (j < array.length && array[j] < array[j - 1]) {
+                    j++;
+                }
+            } else {
+                while (j < array.length && array[j] >= array[j - 1]) {
+                    j++;
+                }
+            }
+            i = j;
+        }
+        return true;
+    }
+
+    /**
+     * The method is intended to partition the specified sub-sequence by Hoare's scheme, see
+     * {@link SequentialSort#partition(com.example.externalsort.aggregator.MyBufferAggregator, long, long)}.
+     *
+     * @param first first index of sub-sequence to partition
+     * @param last  last index of sub-sequence to partition, must be greater than first
+     * @return the last index of the left part, always less than last; integers up to it are not greater than
+     *         integers after it
+     */
+    private int partition(int first, int last) {
+        swap(first, selectPivot(first, last));
+        int pivot = array[first];
+        int i = first - 1;
+        int j = last + 1;
+        while (true) {
+            do {
+                i++;
+            } while (array[i] < pivot);
+            do {
+                j--;
+            } while (array[j] > pivot);
+            if (i >= j) {
+                return j;
+            }
+            swap(i, j);
+        }
+    }
+
+    /**
+     * The method is intended to choose a pivot for the specified sub-sequence: a median of three integers, or Tukey's
+     * ninther if the sub-sequence is long.
+     *
+     * @param first first index of sub-sequence
+     * @param last  last index of sub-sequence
+     * @return an index of the pivot, between first and last
+     */
+    private int selectPivot(int first, int last) {
+        int length = last - first + 1;
+        int middle = first + length / 2;
+        if (length <= NINTHER_THRESHOLD) {
+            return medianOfThree(first, middle, last);
+        }
+        int step = length / 8;
+        return medianOfThree(medianOfThree(first, first + step, first + 2 * step),
+                medianOfThree(middle - step, middle, middle + step),
+                medianOfThree(last - 2 * step, last - step, last));
+    }
+
+    /**
+     * The method is intended to find a median of three integers of the array.
+     *
+     * @param a an index of the first integer
+     * @param b an index of the second integer
+     * @param c an index of the third integer
+     * @return an index of the median
+     */
+    private int medianOfThree(int a, int b, int c) {
+        int x = array[a];
+        int y = array[b];
+        int z = array[c];
+        if (x < y) {
+            return y < z ? b : x < z ? c : a;
+        }
+        return x < z ? a : y < z ? c : b;
+    }
+
+    /**
+     * The method is intended to swap two integers of the array.
+     *
+     * @param i an index of the first integer
+     * @param j an index of the second integer
+     */
+    private void swap(int i, int j) {
+        int temp = array[i];
+        array[i] = array[j];
+        array[j] = temp;
+    }
+
+}
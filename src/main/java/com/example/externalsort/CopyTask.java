@@ -0,0 +1,69 @@
+package com.example.externalsort;
+
+import com.example.externalsort.aggregator.MyBufferAggregator;
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The task is intended to copy a range of one aggregator to the same range of another one in parallel. The range is
+ * split in halves until the halves are short enough to be copied sequentially.
+ *
+ * @author Ruslan Sverchkov
+ */
+@NotThreadSafe
+public class CopyTask extends RecursiveAction {
+
+    private static final long SEQUENTIAL_THRESHOLD = 1 << 16;
+
+    private final ForkJoinTask<?> root;
+    private final MyBufferAggregator source;
+    private final MyBufferAggregator target;
+    private final long from;
+    private final long to;
+
+    /**
+     * Constructs a CopyTask instance.
+     *
+     * @param root   a task which stops the copying if cancelled, usually the task the copying is a part of
+     * @param source the aggregator to copy from
+     * @param target the aggregator to copy to
+     * @param from   first index of the range, inclusive
+     * @param to     last index of the range, exclusive
+     * @throws IllegalArgumentException if:
+     *                                  * root is null
+     *                                  * source is null
+     *                                  * target is null
+     *                                  * from is negative
+     */
+    public CopyTask(ForkJoinTask<?> root, MyBufferAggregator source, MyBufferAggregator target, long from, long to) {
+        Validate.notNull(root);
+        Validate.notNull(source);
+        Validate.notNull(target);
+        Validate.isTrue(from >= 0);
+        this.root = root;
+        this.source = source;
+        this.target = target;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void compute() {
+        if (root.isCancelled()) {
+            return;
+        }
+        if (to - from > SEQUENTIAL_THRESHOLD) {
+            long middle = from + (to - from) / 2;
+            invokeAll(new CopyTask(root, source, target, from, middle), new CopyTask(root, source, target, middle, to));
+            return;
+        }
+        source.copyRange(from, target, from, to - from);
+    }
+
+}
@@ -1,59 +1,343 @@
 package com.example.externalsort;
 
 import com.example.externalsort.aggregator.MyBufferAggregator;
-import com.example.externalsort.aggregator.MyMappedBufferAggregator;
-import com.example.externalsort.aggregator.MyMappedBufferAggregatorFactory;
+import com.example.externalsort.external.ExternalMergeSort;
+import com.example.externalsort.external.IntMerger;
+import com.example.externalsort.external.MergePlanner;
+import com.example.externalsort.external.RunFormat;
+import com.example.externalsort.external.RunFormation;
+import com.example.externalsort.io.ChannelIntOutput;
+import com.example.externalsort.io.IntInput;
+import com.example.externalsort.io.MappedIntInput;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import org.apache.commons.lang.StringUtils;
 
 import java.io.*;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ForkJoinPool;
 
 /**
  * The class is intended to sort the specified file using the specified number of threads. This is the application's
- * entry point. Any messages to user are simply put in {@link System#out}, in my opinion this is
- * quite reasonable for such an application. Exceptions occurred during processing are eventually also printed in
- * the console which is also reasonable since there is nothing else to do with them anyway.
+ * entry point, it validates the arguments and delegates to an {@link ExternalSorter}. Any messages to user are simply
+ * put in {@link System#out}, in my opinion this is quite reasonable for such an application. Exceptions occurred
+ * during processing are eventually also printed in the console which is also reasonable since there is nothing else to
+ * do with them anyway.
  * There are no attempts to implement i18n since there is no such requirement, even though messages is source code
  * look not so pretty.
+ * <p/>
+ * By default the file is mapped into memory and sorted in place. If a memory budget is specified and the file is
+ * bigger than the budget, the file is sorted out of core by {@link ExternalMergeSort} instead, so that the memory
+ * used does not depend on the file size. A file sorted in memory which fits in the heap is read into an int array
+ * and sorted there by the array variant of the engine unless the mapped option is present.
+ * <p/>
+ * With the output option the file is left intact: it is mapped read-only and copied into the output file which is
+ * sorted in place then, or it is streamed through {@link ExternalMergeSort} into the output file, so that the data is
+ * read once and written once.
+ * <p/>
+ * With the merge option the application merges already sorted files into a new file instead of sorting, only the
+ * memory, byte order and buffer options apply then.
+ * <p/>
+ * The statistics of the sort are printed when it is over.
  *
  * @author Ruslan Sverchkov
  */
 public class ExternalSort {
 
-    private static final int MAX_BYTES_TO_MAP = Integer.MAX_VALUE - Integer.MAX_VALUE % MyBufferAggregator.INT_SIZE_IN_BYTES;
-    private static final String WELCOME = "Program usage: java -jar external_sort.jar <file path> <threads number>";
+    private static final String WELCOME = "Program usage: java -jar external_sort.jar <file path> <threads number>"
+            + " [options]\n"
+            + "           or: java -jar external_sort.jar --merge <output file> <sorted file>... [options]\n"
+            + "Options:\n"
+            + "  --memory=<size>     sort out of core within <size> bytes of memory, k, m and g suffixes are allowed\n"
+            + "  --engine=<name>     sort algorithm: quicksort (default), block_quicksort, radix,\n"
+            + "                      samplesort or adaptive\n"
+            + "  --byte-order=<name> byte order of the integers: big (default), little or native\n"
+            + "  --runs=<name>       out of core run formation: sort (default) or replacement, requires --memory\n"
+            + "  --buffer=<size>     size of every merge buffer, chosen to merge in one pass if possible by default\n"
+            + "  --io-buffer=<size>  size of every read-ahead and write-behind buffer, at most 1/8 of the memory\n"
+            + "  --compress          compress the sorted runs, requires --memory\n"
+            + "  --mapped            sort through memory mappings even if the file fits in the heap\n"
+            + "  --temp-dirs=<dirs>  directories to spread temporary files across, separated by " + File.pathSeparator
+            + "\n"
+            + "  --output=<file>     write the sorted integers to a new file instead of sorting in place\n"
+            + "  --merge             merge already sorted files into the output file instead of sorting,\n"
+            + "                      only --memory, --byte-order and --buffer apply";
+    private static final String OPTION_PREFIX = "--";
+    private static final String MEMORY_OPTION = "memory";
+    private static final String ENGINE_OPTION = "engine";
+    private static final String BYTE_ORDER_OPTION = "byte-order";
+    private static final String RUNS_OPTION = "runs";
+    private static final String BUFFER_OPTION = "buffer";
+    private static final String IO_BUFFER_OPTION = "io-buffer";
+    private static final String TEMP_DIRS_OPTION = "temp-dirs";
+    private static final String COMPRESS_OPTION = "compress";
+    private static final String MAPPED_OPTION = "mapped";
+    private static final String OUTPUT_OPTION = "output";
+    private static final String MERGE_OPTION = "merge";
+    private static final Set<String> OPTIONS = ImmutableSet.of(MEMORY_OPTION, ENGINE_OPTION, BYTE_ORDER_OPTION,
+            RUNS_OPTION, BUFFER_OPTION, IO_BUFFER_OPTION, TEMP_DIRS_OPTION, COMPRESS_OPTION, MAPPED_OPTION,
+            OUTPUT_OPTION, MERGE_OPTION);
+    private static final Set<String> MERGE_OPTIONS = ImmutableSet.of(MEMORY_OPTION, BYTE_ORDER_OPTION, BUFFER_OPTION,
+            MERGE_OPTION);
+    private static final ConcurrentMap<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+    private static final int DEFAULT_MERGE_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final int MIN_MERGE_BUFFER_SIZE = 64 * 1024;
 
     /**
-     * The method is intended to sort the specified file using the specified number of threads.
+     * The method is intended to sort the specified file using the specified number of threads, or to merge the
+     * specified sorted files if the merge option is present.
      *
-     * @param args file path and threads number
+     * @param args file path, threads number and options, or output file path, sorted file paths and options
      * @throws Throwable if any error occurred during processing
      */
     public static void main(String... args) throws Throwable {
-        if (args.length != 2) {
+        List<String> positional = new ArrayList<>();
+        List<String> optionStrings = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith(OPTION_PREFIX)) {
+                optionStrings.add(arg);
+            } else {
+                positional.add(arg);
+            }
+        }
+        ExternalSort sort = new ExternalSort();
+        ConstructionResult<Map<String, String>> options = sort.getOptions(optionStrings);
+        if (!options.getErrors().isEmpty()) {
+            printErrors(options.getErrors());
+            return;
+        }
+        boolean merge = options.getObject().containsKey(MERGE_OPTION);
+        if (merge ? positional.size() < 2 : positional.size() != 2) {
             System.out.println(WELCOME);
             return;
         }
-        ExternalSort sort = new ExternalSort();
-        ConstructionResult<File> file = sort.getFile(args[0]);
-        ConstructionResult<Integer> threadsNumber = sort.getThreadsNumber(args[1]);
+        if (merge) {
+            sort.merge(positional, options.getObject());
+            return;
+        }
+        ConstructionResult<File> file = sort.getFile(positional.get(0));
+        ConstructionResult<Integer> threadsNumber = sort.getThreadsNumber(positional.get(1));
         Collection<String> errors = new ArrayList<>();
         errors.addAll(file.getErrors());
         errors.addAll(threadsNumber.getErrors());
+        ConstructionResult<Long> memoryBudget = null;
+        if (options.getObject().containsKey(MEMORY_OPTION)) {
+            memoryBudget = sort.getMemoryBudget(options.getObject().get(MEMORY_OPTION));
+            errors.addAll(memoryBudget.getErrors());
+        }
+        ConstructionResult<SortEngine> engine = new ConstructionResult<>(SortEngine.QUICKSORT);
+        if (options.getObject().containsKey(ENGINE_OPTION)) {
+            engine = sort.getEngine(options.getObject().get(ENGINE_OPTION));
+            errors.addAll(engine.getErrors());
+        }
+        ConstructionResult<ByteOrder> byteOrder = new ConstructionResult<>(ByteOrder.BIG_ENDIAN);
+        if (options.getObject().containsKey(BYTE_ORDER_OPTION)) {
+            byteOrder = sort.getByteOrder(options.getObject().get(BYTE_ORDER_OPTION));
+            errors.addAll(byteOrder.getErrors());
+        }
+        ConstructionResult<RunFormation> runFormation = new ConstructionResult<>(RunFormation.SORT);
+        if (options.getObject().containsKey(RUNS_OPTION)) {
+            runFormation = sort.getRunFormation(options.getObject().get(RUNS_OPTION));
+            errors.addAll(runFormation.getErrors());
+            if (!options.getObject().containsKey(MEMORY_OPTION)) {
+                errors.add("Option " + OPTION_PREFIX + RUNS_OPTION + " requires " + OPTION_PREFIX + MEMORY_OPTION);
+            }
+        }
+        ConstructionResult<Integer> bufferSize = new ConstructionResult<>(0);
+        if (options.getObject().containsKey(BUFFER_OPTION)) {
+            bufferSize = sort.getBufferSize(options.getObject().get(BUFFER_OPTION));
+            errors.addAll(bufferSize.getErrors());
+            if (!options.getObject().containsKey(MEMORY_OPTION)) {
+                errors.add("Option " + OPTION_PREFIX + BUFFER_OPTION + " requires " + OPTION_PREFIX + MEMORY_OPTION);
+            }
+        }
+        ConstructionResult<Integer> ioBufferSize = new ConstructionResult<>(0);
+        if (options.getObject().containsKey(IO_BUFFER_OPTION)) {
+            ioBufferSize = sort.getIoBufferSize(options.getObject().get(IO_BUFFER_OPTION));
+            errors.addAll(ioBufferSize.getErrors());
+            if (memoryBudget == null) {
+                errors.add("Option " + OPTION_PREFIX + IO_BUFFER_OPTION + " requires " + OPTION_PREFIX
+                        + MEMORY_OPTION);
+            } else if (memoryBudget.getErrors().isEmpty() && ioBufferSize.getErrors().isEmpty()
+                    && ioBufferSize.getObject() > memoryBudget.getObject() / 8) {
+                errors.add("I/O buffer size must not exceed 1/8 of the memory budget");
+            }
+        }
+        RunFormat runFormat = RunFormat.PLAIN;
+        if (options.getObject().containsKey(COMPRESS_OPTION)) {
+            runFormat = RunFormat.COMPRESSED;
+            if (memoryBudget == null) {
+                errors.add("Option " + OPTION_PREFIX + COMPRESS_OPTION + " requires " + OPTION_PREFIX + MEMORY_OPTION);
+            }
+        }
+        ConstructionResult<File> output = null;
+        if (options.getObject().containsKey(OUTPUT_OPTION)) {
+            output = sort.getOutputFile(options.getObject().get(OUTPUT_OPTION));
+            errors.addAll(output.getErrors());
+            if (output.getErrors().isEmpty() && file.getErrors().isEmpty() && output.getObject().getCanonicalFile()
+                    .equals(file.getObject().getCanonicalFile())) {
+                errors.add("Output file must not be the file to sort");
+            }
+        }
+        ConstructionResult<List<File>> tempDirectories = null;
+        if (options.getObject().containsKey(TEMP_DIRS_OPTION)) {
+            tempDirectories = sort.getTempDirectories(options.getObject().get(TEMP_DIRS_OPTION));
+            errors.addAll(tempDirectories.getErrors());
+        } else if (file.getErrors().isEmpty()) {
+            List<File> parent = ImmutableList.of(file.getObject().getAbsoluteFile().getParentFile());
+            tempDirectories = new ConstructionResult<>(parent);
+        }
         if (!errors.isEmpty()) {
-            for (String error : errors) {
-                System.out.println(error);
+            printErrors(errors);
+            return;
+        }
+        ExternalSorter.Builder builder = new ExternalSorter.Builder()
+                .pool(getPool(threadsNumber.getObject()))
+                .engine(engine.getObject())
+                .byteOrder(byteOrder.getObject())
+                .onHeap(!options.getObject().containsKey(MAPPED_OPTION))
+                .tempDirectories(tempDirectories.getObject());
+        if (memoryBudget != null) {
+            builder.memoryBudget(memoryBudget.getObject())
+                    .runFormation(runFormation.getObject())
+                    .runFormat(runFormat)
+                    .mergeBufferSize(bufferSize.getObject())
+                    .ioBufferSize(ioBufferSize.getObject());
+        }
+        File outputFile = output == null ? file.getObject() : output.getObject();
+        try (ExternalSorter sorter = builder.build()) {
+            System.out.println(sorter.sort(file.getObject(), outputFile));
+        }
+    }
+
+    /**
+     * The method is intended to print the errors to the console.
+     *
+     * @param errors errors to print
+     */
+    protected static void printErrors(Collection<String> errors) {
+        for (String error : errors) {
+            System.out.println(error);
+        }
+    }
+
+    /**
+     * The method is intended to validate the merge arguments and to merge the specified sorted files. If a memory
+     * budget is specified, it is split equally between the inputs' windows and the output buffer, unless the buffer
+     * size is specified explicitly. The options which only make sense for sorting are rejected.
+     *
+     * @param positional output file path and sorted file paths
+     * @param options    options
+     * @throws Throwable if any error occurred during processing
+     */
+    protected void merge(List<String> positional, Map<String, String> options) throws Throwable {
+        Collection<String> errors = new ArrayList<>();
+        for (String option : OPTIONS) {
+            if (options.containsKey(option) && !MERGE_OPTIONS.contains(option)) {
+                errors.add("Option " + OPTION_PREFIX + option + " does not apply to " + OPTION_PREFIX + MERGE_OPTION);
+            }
+        }
+        ConstructionResult<File> output = getOutputFile(positional.get(0));
+        errors.addAll(output.getErrors());
+        List<File> inputs = new ArrayList<>();
+        for (String inputPath : positional.subList(1, positional.size())) {
+            ConstructionResult<File> input = getSortedFile(inputPath);
+            errors.addAll(input.getErrors());
+            if (input.getErrors().isEmpty()) {
+                inputs.add(input.getObject());
+            }
+        }
+        if (output.getErrors().isEmpty()) {
+            for (File input : inputs) {
+                if (input.getCanonicalFile().equals(output.getObject().getCanonicalFile())) {
+                    errors.add("Output file must not be one of the sorted files");
+                }
+            }
+        }
+        int bufferSize = DEFAULT_MERGE_BUFFER_SIZE;
+        if (options.containsKey(MEMORY_OPTION)) {
+            ConstructionResult<Long> memoryBudget = getMemoryBudget(options.get(MEMORY_OPTION));
+            errors.addAll(memoryBudget.getErrors());
+            if (memoryBudget.getErrors().isEmpty()) {
+                long size = Math.min(memoryBudget.getObject() / (inputs.size() + 1), Integer.MAX_VALUE);
+                bufferSize = (int) Math.max(MIN_MERGE_BUFFER_SIZE, size - size % MyBufferAggregator.INT_SIZE_IN_BYTES);
+            }
+        }
+        ConstructionResult<ByteOrder> byteOrder = new ConstructionResult<>(ByteOrder.BIG_ENDIAN);
+        if (options.containsKey(BYTE_ORDER_OPTION)) {
+            byteOrder = getByteOrder(options.get(BYTE_ORDER_OPTION));
+            errors.addAll(byteOrder.getErrors());
+        }
+        if (options.containsKey(BUFFER_OPTION)) {
+            ConstructionResult<Integer> explicitBufferSize = getBufferSize(options.get(BUFFER_OPTION));
+            errors.addAll(explicitBufferSize.getErrors());
+            if (explicitBufferSize.getErrors().isEmpty()) {
+                bufferSize = explicitBufferSize.getObject();
             }
+        }
+        if (!errors.isEmpty()) {
+            printErrors(errors);
             return;
         }
-        SynchronousExecutor executor = new SynchronousExecutor(new ForkJoinPool(threadsNumber.getObject()));
-        MyMappedBufferAggregatorFactory factory = new MyMappedBufferAggregatorFactory(MAX_BYTES_TO_MAP);
-        MyMappedBufferAggregator aggregator = factory.get(file.getObject());
-        executor.execute(new MySortTask(aggregator, 0, aggregator.getLength() - 1));
-        aggregator.force();
+        mergeFiles(inputs, output.getObject(), bufferSize, byteOrder.getObject());
+    }
+
+    /**
+     * The method is intended to merge the specified sorted files into the output file. Every input is read through a
+     * mapped window, the output is written sequentially.
+     *
+     * @param inputs     sorted files to merge
+     * @param output     a file to write the merged integers to, it is overwritten if exists
+     * @param bufferSize size of every input window and of the output buffer in bytes
+     * @param byteOrder  a byte order of the integers of the inputs and of the output
+     * @throws IOException if an I/O error occurred
+     */
+    protected void mergeFiles(List<File> inputs, File output, int bufferSize, ByteOrder byteOrder)
+            throws IOException {
+        List<IntInput> sources = new ArrayList<>();
+        try {
+            for (File input : inputs) {
+                sources.add(new MappedIntInput(input, bufferSize, byteOrder));
+            }
+            try (ChannelIntOutput out = new ChannelIntOutput(new FileOutputStream(output).getChannel(), bufferSize,
+                    byteOrder)) {
+                new IntMerger().merge(sources, out);
+            }
+        } finally {
+            for (IntInput source : sources) {
+                source.close();
+            }
+        }
+    }
+
+    /**
+     * The method is intended to return a pool with the specified number of threads. The pools are cached, so running
+     * the application many times in the same JVM reuses one pool per threads number instead of creating a pool per
+     * run. The pool threads are daemons, so the cached pools do not prevent the JVM from exiting.
+     *
+     * @param threadsNumber a threads number
+     * @return a pool with the specified number of threads, never returns null
+     */
+    protected static ForkJoinPool getPool(int threadsNumber) {
+        ForkJoinPool pool = POOLS.get(threadsNumber);
+        if (pool == null) {
+            ForkJoinPool newPool = new ForkJoinPool(threadsNumber);
+            pool = POOLS.putIfAbsent(threadsNumber, newPool);
+            if (pool == null) {
+                pool = newPool;
+            } else {
+                newPool.shutdown();
+            }
+        }
+        return pool;
     }
 
     /**
@@ -81,6 +365,84 @@ public class ExternalSort {
         return new ConstructionResult<>(file);
     }
 
+    /**
+     * The method is intended to construct a sorted file to merge using the specified string.
+     * Validation rules:
+     * * file exists
+     * * file length is a multiple of {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     * Unlike {@link #getFile(String)}, an empty file is valid.
+     *
+     * @param filePath a file path
+     * @return a file construction result, never returns null
+     */
+    protected ConstructionResult<File> getSortedFile(String filePath) {
+        if (StringUtils.isEmpty(filePath)) {
+            return new ConstructionResult<>(ImmutableList.of("File path is required"));
+        }
+        File file = new File(filePath);
+        if (!file.isFile()) {
+            return new ConstructionResult<>(ImmutableList.of("File " + filePath + " does not exist"));
+        }
+        if (file.length() % MyBufferAggregator.INT_SIZE_IN_BYTES != 0) {
+            return new ConstructionResult<>(ImmutableList.of("Size of " + filePath + " must be a multiple of "
+                    + MyBufferAggregator.INT_SIZE_IN_BYTES));
+        }
+        return new ConstructionResult<>(file);
+    }
+
+    /**
+     * The method is intended to construct an output file using the specified string.
+     * Validation rule: the path is not a directory.
+     *
+     * @param filePath a file path
+     * @return a file construction result, never returns null
+     */
+    protected ConstructionResult<File> getOutputFile(String filePath) {
+        if (StringUtils.isEmpty(filePath)) {
+            return new ConstructionResult<>(ImmutableList.of("Output file path is required"));
+        }
+        File file = new File(filePath);
+        if (file.isDirectory()) {
+            return new ConstructionResult<>(ImmutableList.of("Output file " + filePath + " is a directory"));
+        }
+        return new ConstructionResult<>(file);
+    }
+
+    /**
+     * The method is intended to construct a temp directories list using the specified string.
+     * Validation rules:
+     * * the value is a list of paths separated by {@link File#pathSeparator}
+     * * every path is a writable directory
+     * * no directory is listed twice
+     *
+     * @param tempDirectoriesString a string representation of temp directories list
+     * @return a temp directories list construction result, never returns null
+     */
+    protected ConstructionResult<List<File>> getTempDirectories(String tempDirectoriesString) {
+        if (StringUtils.isEmpty(tempDirectoriesString)) {
+            return new ConstructionResult<>(ImmutableList.of("Temp directories are required"));
+        }
+        List<File> directories = new ArrayList<>();
+        Collection<String> errors = new ArrayList<>();
+        for (String path : StringUtils.split(tempDirectoriesString, File.pathSeparator)) {
+            File directory = new File(path).getAbsoluteFile();
+            if (!directory.isDirectory() || !directory.canWrite()) {
+                errors.add("Temp directory " + path + " does not exist or is not writable");
+            } else if (directories.contains(directory)) {
+                errors.add("Temp directory " + path + " is specified more than once");
+            } else {
+                directories.add(directory);
+            }
+        }
+        if (!errors.isEmpty()) {
+            return new ConstructionResult<>(errors);
+        }
+        if (directories.isEmpty()) {
+            return new ConstructionResult<>(ImmutableList.of("Temp directories are required"));
+        }
+        return new ConstructionResult<List<File>>(directories);
+    }
+
     /**
      * The method is intended to construct a threads number value using the specified string.
      * Validation rule: the value must be a positive integer.
@@ -105,4 +467,197 @@ public class ExternalSort {
         }
     }
 
+    /**
+     * The method is intended to construct an options map using the specified strings.
+     * Validation rules:
+     * * every string looks like {@code --<name>=<value>} or {@code --<name>}, the value of the latter is an empty
+     * string
+     * * every option is known
+     * * no option is specified twice
+     *
+     * @param optionStrings option strings
+     * @return an options map construction result, never returns null
+     */
+    protected ConstructionResult<Map<String, String>> getOptions(Collection<String> optionStrings) {
+        Map<String, String> options = new HashMap<>();
+        Collection<String> errors = new ArrayList<>();
+        for (String optionString : optionStrings) {
+            String name = StringUtils.substringBefore(optionString.substring(OPTION_PREFIX.length()), "=");
+            String value = StringUtils.substringAfter(optionString, "=");
+            if (!OPTIONS.contains(name)) {
+                errors.add("Unknown option " + optionString);
+            } else if (options.put(name, value) != null) {
+                errors.add("Option " + OPTION_PREFIX + name + " is specified more than once");
+            }
+        }
+        if (!errors.isEmpty()) {
+            return new ConstructionResult<>(errors);
+        }
+        return new ConstructionResult<>(options);
+    }
+
+    /**
+     * The method is intended to construct a sort engine using the specified string.
+     * Validation rule: the value is a name of one of {@link SortEngine} constants (case insensitive).
+     *
+     * @param engineString a string representation of sort engine
+     * @return a sort engine construction result, never returns null
+     */
+    protected ConstructionResult<SortEngine> getEngine(String engineString) {
+        if (StringUtils.isEmpty(engineString)) {
+            return new ConstructionResult<>(ImmutableList.of("Engine is required"));
+        }
+        for (SortEngine engine : SortEngine.values()) {
+            if (engine.name().equalsIgnoreCase(engineString)) {
+                return new ConstructionResult<>(engine);
+            }
+        }
+        return new ConstructionResult<>(ImmutableList.of("Unknown engine " + engineString));
+    }
+
+    /**
+     * The method is intended to construct a byte order using the specified string.
+     * Validation rule: the value is big, little or native (case insensitive), the latter means
+     * {@link ByteOrder#nativeOrder()}.
+     *
+     * @param byteOrderString a string representation of byte order
+     * @return a byte order construction result, never returns null
+     */
+    protected ConstructionResult<ByteOrder> getByteOrder(String byteOrderString) {
+        if (StringUtils.isEmpty(byteOrderString)) {
+            return new ConstructionResult<>(ImmutableList.of("Byte order is required"));
+        }
+        if ("big".equalsIgnoreCase(byteOrderString)) {
+            return new ConstructionResult<>(ByteOrder.BIG_ENDIAN);
+        }
+        if ("little".equalsIgnoreCase(byteOrderString)) {
+            return new ConstructionResult<>(ByteOrder.LITTLE_ENDIAN);
+        }
+        if ("native".equalsIgnoreCase(byteOrderString)) {
+            return new ConstructionResult<>(ByteOrder.nativeOrder());
+        }
+        return new ConstructionResult<>(ImmutableList.of("Unknown byte order " + byteOrderString));
+    }
+
+    /**
+     * The method is intended to construct a run formation using the specified string.
+     * Validation rule: the value is a name of one of {@link RunFormation} constants (case insensitive).
+     *
+     * @param runFormationString a string representation of run formation
+     * @return a run formation construction result, never returns null
+     */
+    protected ConstructionResult<RunFormation> getRunFormation(String runFormationString) {
+        if (StringUtils.isEmpty(runFormationString)) {
+            return new ConstructionResult<>(ImmutableList.of("Run formation is required"));
+        }
+        for (RunFormation runFormation : RunFormation.values()) {
+            if (runFormation.name().equalsIgnoreCase(runFormationString)) {
+                return new ConstructionResult<>(runFormation);
+            }
+        }
+        return new ConstructionResult<>(ImmutableList.of("Unknown run formation " + runFormationString));
+    }
+
+    /**
+     * The method is intended to construct a memory budget value using the specified string.
+     * Validation rules:
+     * * the value is a positive integer optionally followed by one of k, m or g suffixes (case insensitive)
+     * * the value is not less than {@link ExternalMergeSort#MIN_MEMORY_BUDGET}
+     *
+     * @param memoryBudgetString a string representation of memory budget
+     * @return a memory budget value construction result in bytes, never returns null
+     */
+    protected ConstructionResult<Long> getMemoryBudget(String memoryBudgetString) {
+        ConstructionResult<Long> size = getSize(memoryBudgetString, "Memory budget");
+        if (!size.getErrors().isEmpty()) {
+            return size;
+        }
+        if (size.getObject() < ExternalMergeSort.MIN_MEMORY_BUDGET) {
+            return new ConstructionResult<>(ImmutableList.of("Memory budget must be at least "
+                    + ExternalMergeSort.MIN_MEMORY_BUDGET + " bytes"));
+        }
+        return size;
+    }
+
+    /**
+     * The method is intended to construct a merge buffer size value using the specified string.
+     * Validation rules:
+     * * the value is a positive integer optionally followed by one of k, m or g suffixes (case insensitive)
+     * * the value is between {@link MergePlanner#MIN_BUFFER_SIZE} and {@link MergePlanner#MAX_BUFFER_SIZE}
+     *
+     * @param bufferSizeString a string representation of merge buffer size
+     * @return a merge buffer size value construction result in bytes rounded down to a multiple of
+     *         {@link MyBufferAggregator#INT_SIZE_IN_BYTES}, never returns null
+     */
+    protected ConstructionResult<Integer> getBufferSize(String bufferSizeString) {
+        ConstructionResult<Long> size = getSize(bufferSizeString, "Buffer size");
+        if (!size.getErrors().isEmpty()) {
+            return new ConstructionResult<>(size.getErrors());
+        }
+        if (size.getObject() < MergePlanner.MIN_BUFFER_SIZE || size.getObject() > MergePlanner.MAX_BUFFER_SIZE) {
+            return new ConstructionResult<>(ImmutableList.of("Buffer size must be between "
+                    + MergePlanner.MIN_BUFFER_SIZE + " and " + MergePlanner.MAX_BUFFER_SIZE + " bytes"));
+        }
+        int bufferSize = size.getObject().intValue();
+        return new ConstructionResult<>(bufferSize - bufferSize % MyBufferAggregator.INT_SIZE_IN_BYTES);
+    }
+
+    /**
+     * The method is intended to construct a read-ahead and write-behind buffer size value using the specified string.
+     * Validation rules:
+     * * the value is a positive integer optionally followed by one of k, m or g suffixes (case insensitive)
+     * * the value is between {@link ExternalMergeSort#MIN_IO_BUFFER_SIZE} and {@link Integer#MAX_VALUE}
+     *
+     * @param ioBufferSizeString a string representation of I/O buffer size
+     * @return an I/O buffer size value construction result in bytes rounded down to a multiple of
+     *         {@link MyBufferAggregator#INT_SIZE_IN_BYTES}, never returns null
+     */
+    protected ConstructionResult<Integer> getIoBufferSize(String ioBufferSizeString) {
+        ConstructionResult<Long> size = getSize(ioBufferSizeString, "I/O buffer size");
+        if (!size.getErrors().isEmpty()) {
+            return new ConstructionResult<>(size.getErrors());
+        }
+        if (size.getObject() < ExternalMergeSort.MIN_IO_BUFFER_SIZE || size.getObject() > Integer.MAX_VALUE) {
+            return new ConstructionResult<>(ImmutableList.of("I/O buffer size must be between "
+                    + ExternalMergeSort.MIN_IO_BUFFER_SIZE + " and " + Integer.MAX_VALUE + " bytes"));
+        }
+        int ioBufferSize = size.getObject().intValue();
+        return new ConstructionResult<>(ioBufferSize - ioBufferSize % MyBufferAggregator.INT_SIZE_IN_BYTES);
+    }
+
+    /**
+     * The method is intended to construct a size value in bytes using the specified string.
+     * Validation rule: the value is a positive integer optionally followed by one of k, m or g suffixes (case
+     * insensitive).
+     *
+     * @param sizeString a string representation of size
+     * @param name       a name of the value to use in error messages
+     * @return a size value construction result in bytes, never returns null
+     */
+    protected ConstructionResult<Long> getSize(String sizeString, String name) {
+        if (StringUtils.isEmpty(sizeString)) {
+            return new ConstructionResult<>(ImmutableList.of(name + " is required"));
+        }
+        String digits = sizeString;
+        long multiplier = 1;
+        int suffixIndex = "kmg".indexOf(Character.toLowerCase(sizeString.charAt(sizeString.length() - 1)));
+        if (suffixIndex >= 0) {
+            digits = sizeString.substring(0, sizeString.length() - 1);
+            multiplier = 1L << (10 * (suffixIndex + 1));
+        }
+        try {
+            long size = Long.parseLong(digits);
+            if (size <= 0) {
+                return new ConstructionResult<>(ImmutableList.of(name + " must be positive"));
+            }
+            if (size > Long.MAX_VALUE / multiplier) {
+                return new ConstructionResult<>(ImmutableList.of(name + " is too big"));
+            }
+            return new ConstructionResult<>(size * multiplier);
+        } catch (NumberFormatException e) {
+            return new ConstructionResult<>(ImmutableList.of(name + " must be an integer optionally followed by"
+                    + " k, m or g"));
+        }
+    }
+
 }
\ No newline at end of file
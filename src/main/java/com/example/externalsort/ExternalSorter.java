@@ -0,0 +1,558 @@
+package com.example.externalsort;
+
+import com.example.externalsort.aggregator.MyBufferAggregator;
+import com.example.externalsort.aggregator.MyMappedBufferAggregator;
+import com.example.externalsort.aggregator.MyMappedBufferAggregatorFactory;
+import com.example.externalsort.external.ExternalMergeSort;
+import com.example.externalsort.external.RunFormat;
+import com.example.externalsort.external.RunFormation;
+import com.example.externalsort.external.TempDirectories;
+import com.example.externalsort.io.IntInput;
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * The class is intended to sort files and streams of integers from an application, it is what {@link ExternalSort}
+ * does for the command line. An instance is configured once by a {@link Builder} and may run any number of sorts,
+ * one after another or concurrently, reusing its pool, the I/O threads and buffers of the out of core sorts and, for
+ * the small ones, their chunk buffers. The sorter must be closed once it is not needed anymore, closing shuts down the
+ * pool the sorter has created and the I/O threads and drops the buffers.
+ * <p/>
+ * Without a memory budget a file is mapped into memory and sorted in place. With a memory budget a file bigger than
+ * the budget and any stream are sorted out of core by {@link ExternalMergeSort}.
+ * <p/>
+ * A file sorted in memory which fits in the heap is rather read into an int array, sorted there by the array variant of
+ * the engine and written back sequentially, unless the sorter has been told to map the files anyway. The heap a sort
+ * needs is reserved for it first, the sorts of all the sorters share three quarters of the max heap; if the
+ * reservation fails or the file holds more integers than an array may, the file is mapped. The chunks of the out of
+ * core sort are not moved to the heap: they are bounded by the budget and kept in direct buffers which the channels
+ * read and write without a copy.
+ * <p/>
+ * The integers are big-endian unless another byte order is specified, files written on the same platform are sorted
+ * faster in {@link ByteOrder#nativeOrder()}.
+ *
+ * @author Ruslan Sverchkov
+ */
+@ThreadSafe
+public class ExternalSorter implements Closeable {
+
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+    private static final int HEAP_IO_BUFFER_SIZE = 1 << 20;
+    private static final AtomicLong RESERVED_HEAP = new AtomicLong();
+
+    private final ForkJoinPool ownPool;
+    private final SynchronousExecutor executor;
+    private final SortEngine engine;
+    private final ByteOrder byteOrder;
+    private final long memoryBudget;
+    private final boolean onHeap;
+    private final List<File> tempDirectories;
+    private final ExternalMergeSort externalMergeSort;
+
+    /**
+     * Constructs an ExternalSorter instance from the builder's settings.
+     *
+     * @param builder a builder holding the settings
+     */
+    private ExternalSorter(Builder builder) {
+        this.ownPool = builder.pool == null ? new ForkJoinPool(builder.threadsNumber) : null;
+        this.executor = new SynchronousExecutor(builder.pool == null ? ownPool : builder.pool);
+        this.engine = builder.engine;
+        this.byteOrder = builder.byteOrder;
+        this.memoryBudget = builder.memoryBudget;
+        this.onHeap = builder.onHeap;
+        this.tempDirectories = builder.tempDirectories;
+        this.externalMergeSort = memoryBudget == 0 ? null : new ExternalMergeSort(executor, engine,
+                builder.runFormation, builder.runFormat, byteOrder, memoryBudget, builder.mergeBufferSize,
+                builder.ioBufferSize, tempDirectories);
+    }
+
+    /**
+     * The method is intended to sort the specified file in place.
+     *
+     * @param file a file to sort
+     * @return the statistics of the sort, never returns null
+     * @throws IllegalArgumentException if file is null or its size is not a multiple of
+     *                                  {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     * @throws Throwable                if any error occurred during processing
+     */
+    public SortResult sort(File file) throws Throwable {
+        return sort(file, file);
+    }
+
+    /**
+     * The method is intended to sort the specified file into the output file. If the output is the file itself, the
+     * file is sorted in place, otherwise the file is left intact.
+     *
+     * @param file   a file to sort
+     * @param output a file to write the sorted integers to, it is overwritten if exists
+     * @return the statistics of the sort, never returns null
+     * @throws IllegalArgumentException if file or output is null or the file size is not a multiple of
+     *                                  {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     * @throws Throwable                if any error occurred during processing
+     */
+    public SortResult sort(File file, File output) throws Throwable {
+        Validate.notNull(file);
+        Validate.notNull(output);
+        Validate.isTrue(file.length() % MyBufferAggregator.INT_SIZE_IN_BYTES == 0);
+        if (externalMergeSort != null && file.length() > memoryBudget) {
+            return sortOutOfCore(file, output);
+        }
+        long time = System.currentTimeMillis();
+        long heapSize = engine.isScratchRequired() ? 2 * file.length() : file.length();
+        boolean sortedOnHeap = onHeap && file.length() / MyBufferAggregator.INT_SIZE_IN_BYTES <= MAX_ARRAY_LENGTH
+                && reserveHeap(heapSize);
+        if (sortedOnHeap) {
+            try {
+                sortOnHeap(file, output);
+            } finally {
+                releaseHeap(heapSize);
+            }
+        } else if (output.getCanonicalFile().equals(file.getCanonicalFile())) {
+            sortInPlace(file);
+        } else {
+            sortToFile(file, output);
+        }
+        return new SortResult(file.length() / MyBufferAggregator.INT_SIZE_IN_BYTES, false, sortedOnHeap, null,
+                System.currentTimeMillis() - time);
+    }
+
+    /**
+     * The method is intended to sort the integers read from the input and write them to the output out of core.
+     * Neither of the channels is closed.
+     *
+     * @param input  a channel to read the integers from
+     * @param output a channel to write the sorted integers to
+     * @return the statistics of the sort, never returns null
+     * @throws IllegalArgumentException if input or output is null
+     * @throws IllegalStateException    if no memory budget has been specified
+     * @throws Throwable                if any error occurred during processing
+     */
+    public SortResult sort(ReadableByteChannel input, WritableByteChannel output) throws Throwable {
+        return getExternalMergeSort().sort(input, output);
+    }
+
+    /**
+     * The method is intended to sort the integers of the stream out of core, see
+     * {@link ExternalMergeSort#sort(IntStream)}. The returned input must be closed.
+     *
+     * @param input a stream of the integers to sort
+     * @return the sorted integers, never returns null
+     * @throws IllegalArgumentException if input is null
+     * @throws IllegalStateException    if no memory budget has been specified
+     * @throws Throwable                if any error occurred during processing
+     */
+    public IntInput sort(IntStream input) throws Throwable {
+        return getExternalMergeSort().sort(input);
+    }
+
+    /**
+     * The method is intended to return the out of core sort for the streams.
+     *
+     * @return the out of core sort, never returns null
+     * @throws IllegalStateException if no memory budget has been specified
+     */
+    private ExternalMergeSort getExternalMergeSort() {
+        if (externalMergeSort == null) {
+            throw new IllegalStateException("Streams can only be sorted within a memory budget");
+        }
+        return externalMergeSort;
+    }
+
+    /**
+     * The method is intended to reserve the specified number of bytes of the heap for a sort. The reservations are
+     * shared by all the sorters and together never exceed three quarters of the max heap, a quarter is left to the rest
+     * of the application. The limit is fixed rather than taken from the free heap, which already excludes the arrays of
+     * the sorts holding reservations and would count them twice.
+     *
+     * @param bytes number of bytes to reserve
+     * @return whether or not the bytes have been reserved, if so they must be released by {@link #releaseHeap(long)}
+     */
+    static boolean reserveHeap(long bytes) {
+        long limit = Runtime.getRuntime().maxMemory() / 4 * 3;
+        while (true) {
+            long reserved = RESERVED_HEAP.get();
+            if (reserved + bytes > limit) {
+                return false;
+            }
+            if (RESERVED_HEAP.compareAndSet(reserved, reserved + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * The method is intended to release the bytes reserved by {@link #reserveHeap(long)}.
+     *
+     * @param bytes number of bytes to release
+     */
+    static void releaseHeap(long bytes) {
+        RESERVED_HEAP.addAndGet(-bytes);
+    }
+
+    /**
+     * The method is intended to read the specified file into an int array, sort the array by the array variant of the
+     * engine in the pool and write it to the output file. The file is read completely before the output is opened, so
+     * the output may be the file itself.
+     *
+     * @param file   a file to sort
+     * @param output a file to write the sorted integers to, either the file itself or a new file which is overwritten
+     *               if exists
+     * @throws Throwable if any error occurred during processing
+     */
+    private void sortOnHeap(File file, File output) throws Throwable {
+        int[] integers = new int[(int) (file.length() / MyBufferAggregator.INT_SIZE_IN_BYTES)];
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HEAP_IO_BUFFER_SIZE).order(byteOrder);
+        try (FileChannel in = new FileInputStream(file).getChannel()) {
+            int offset = 0;
+            while (offset < integers.length) {
+                if (in.read(buffer) < 0) {
+                    throw new EOFException(file + " has been truncated while being read");
+                }
+                buffer.flip();
+                int length = Math.min(buffer.remaining() / MyBufferAggregator.INT_SIZE_IN_BYTES,
+                        integers.length - offset);
+                buffer.asIntBuffer().get(integers, offset, length);
+                buffer.position(length * MyBufferAggregator.INT_SIZE_IN_BYTES);
+                buffer.compact();
+                offset += length;
+            }
+        }
+        int[] scratch = engine.isScratchRequired() ? new int[integers.length] : null;
+        executor.execute(engine.getTask(integers, scratch));
+        try (FileChannel out = output.getCanonicalFile().equals(file.getCanonicalFile())
+                ? new RandomAccessFile(file, "rw").getChannel()
+                : new FileOutputStream(output).getChannel()) {
+            writeInts(integers, buffer, out);
+            out.force(false);
+        }
+    }
+
+    /**
+     * The method is intended to write the specified integers to the channel through the buffer.
+     *
+     * @param integers the integers to write
+     * @param buffer   a buffer in the byte order of the integers, its content is overwritten
+     * @param out      a channel to write to
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeInts(int[] integers, ByteBuffer buffer, WritableByteChannel out) throws IOException {
+        int offset = 0;
+        while (offset < integers.length) {
+            buffer.clear();
+            int length = Math.min(buffer.capacity() / MyBufferAggregator.INT_SIZE_IN_BYTES, integers.length - offset);
+            buffer.asIntBuffer().put(integers, offset, length);
+            buffer.limit(length * MyBufferAggregator.INT_SIZE_IN_BYTES);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            offset += length;
+        }
+    }
+
+    /**
+     * The method is intended to sort the specified file in place through a memory mapping.
+     *
+     * @param file a file to sort
+     * @throws Throwable if any error occurred during processing
+     */
+    private void sortInPlace(File file) throws Throwable {
+        MyMappedBufferAggregatorFactory factory = new MyMappedBufferAggregatorFactory(byteOrder);
+        sortMapped(factory, factory.get(file));
+    }
+
+    /**
+     * The method is intended to sort the specified file into the output file through memory mappings. The file is
+     * mapped read-only and copied into the mapped output in parallel, then the output is sorted in place.
+     *
+     * @param file   a file to sort, it is not modified
+     * @param output a file to write the sorted integers to, it is overwritten if exists
+     * @throws Throwable if any error occurred during processing
+     */
+    private void sortToFile(File file, File output) throws Throwable {
+        MyMappedBufferAggregatorFactory factory = new MyMappedBufferAggregatorFactory(byteOrder);
+        final MyMappedBufferAggregator source = factory.get(file, FileChannel.MapMode.READ_ONLY);
+        try (RandomAccessFile target = new RandomAccessFile(output, "rw")) {
+            target.setLength(file.length());
+        }
+        final MyMappedBufferAggregator aggregator = factory.get(output);
+        executor.execute(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                new CopyTask(this, source, aggregator, 0, source.getLength()).invoke();
+            }
+        });
+        sortMapped(factory, aggregator);
+    }
+
+    /**
+     * The method is intended to sort the specified mapped aggregator and to force the changes to the storage. If the
+     * engine needs a scratch aggregator, it is mapped from a temporary file in one of the temp directories.
+     *
+     * @param factory    a factory to map the scratch file with
+     * @param aggregator an aggregator to sort
+     * @throws Throwable if any error occurred during processing
+     */
+    private void sortMapped(MyMappedBufferAggregatorFactory factory, MyMappedBufferAggregator aggregator)
+            throws Throwable {
+        if (!engine.isScratchRequired()) {
+            executor.execute(engine.getTask(aggregator, null));
+            aggregator.force();
+            return;
+        }
+        long length = aggregator.getLength() * MyBufferAggregator.INT_SIZE_IN_BYTES;
+        File scratchFile = new TempDirectories(tempDirectories).createTempFile("scratch", length);
+        try {
+            try (RandomAccessFile scratch = new RandomAccessFile(scratchFile, "rw")) {
+                scratch.setLength(length);
+            }
+            executor.execute(engine.getTask(aggregator, factory.get(scratchFile)));
+            aggregator.force();
+        } finally {
+            if (!scratchFile.delete()) {
+                scratchFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * The method is intended to sort the specified file out of core. The output is written only when all the runs
+     * have been spilled, so the output may be the file itself.
+     *
+     * @param file   a file to sort
+     * @param output a file to write the sorted integers to, either the file itself or a new file which is overwritten
+     *               if exists
+     * @return the statistics of the sort, never returns null
+     * @throws Throwable if any error occurred during processing
+     */
+    private SortResult sortOutOfCore(File file, File output) throws Throwable {
+        try (FileChannel in = new FileInputStream(file).getChannel();
+             FileChannel out = output.getCanonicalFile().equals(file.getCanonicalFile())
+                     ? new RandomAccessFile(file, "rw").getChannel()
+                     : new FileOutputStream(output).getChannel()) {
+            SortResult result = externalMergeSort.sort(in, out);
+            out.force(false);
+            return result;
+        }
+    }
+
+    /**
+     * The method is intended to shut down the pool the sorter has created and the I/O threads of the out of core
+     * sorts, and to drop the buffers kept for the next out of core sorts. A pool specified by
+     * {@link Builder#pool(ForkJoinPool)} is not shut down. The sorts running at the moment are completed, no sorts may
+     * be run afterwards.
+     */
+    @Override
+    public void close() {
+        if (ownPool != null) {
+            ownPool.shutdown();
+        }
+        if (externalMergeSort != null) {
+            externalMergeSort.close();
+        }
+    }
+
+    /**
+     * The class is intended to collect the settings of an {@link ExternalSorter}. Every setting has a default, so
+     * {@code new ExternalSorter.Builder().build()} sorts files in memory with all the available processors.
+     */
+    @NotThreadSafe
+    public static class Builder {
+
+        private int threadsNumber = Runtime.getRuntime().availableProcessors();
+        private ForkJoinPool pool;
+        private SortEngine engine = SortEngine.QUICKSORT;
+        private ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
+        private long memoryBudget;
+        private boolean onHeap = true;
+        private RunFormation runFormation = RunFormation.SORT;
+        private RunFormat runFormat = RunFormat.PLAIN;
+        private int mergeBufferSize;
+        private int ioBufferSize;
+        private List<File> tempDirectories = ImmutableList.of(new File(System.getProperty("java.io.tmpdir")));
+
+        /**
+         * Sets the number of threads of a new pool the sorter creates. The pool threads are daemons, the pool is shut
+         * down when the sorter is closed. Resets the pool set by {@link #pool(ForkJoinPool)}.
+         *
+         * @param threadsNumber a threads number, the number of available processors by default
+         * @return this builder
+         * @throws IllegalArgumentException if threadsNumber is not positive
+         */
+        public Builder threads(int threadsNumber) {
+            Validate.isTrue(threadsNumber > 0);
+            this.threadsNumber = threadsNumber;
+            this.pool = null;
+            return this;
+        }
+
+        /**
+         * Sets an existing pool to sort with, so that several sorters may share one. The pool is not shut down by the
+         * sorter.
+         *
+         * @param pool a pool to sort with
+         * @return this builder
+         * @throws IllegalArgumentException if pool is null
+         */
+        public Builder pool(ForkJoinPool pool) {
+            Validate.notNull(pool);
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * Sets the algorithm to sort the files and the chunks with.
+         *
+         * @param engine an algorithm, {@link SortEngine#QUICKSORT} by default
+         * @return this builder
+         * @throws IllegalArgumentException if engine is null
+         */
+        public Builder engine(SortEngine engine) {
+            Validate.notNull(engine);
+            this.engine = engine;
+            return this;
+        }
+
+        /**
+         * Sets the byte order of the integers of the files and of the streams.
+         *
+         * @param byteOrder a byte order, {@link ByteOrder#BIG_ENDIAN} by default
+         * @return this builder
+         * @throws IllegalArgumentException if byteOrder is null
+         */
+        public Builder byteOrder(ByteOrder byteOrder) {
+            Validate.notNull(byteOrder);
+            this.byteOrder = byteOrder;
+            return this;
+        }
+
+        /**
+         * Sets the max number of bytes to hold in memory. The files bigger than the budget and the streams are sorted
+         * out of core.
+         *
+         * @param memoryBudget a memory budget in bytes, 0 by default which means the files are mapped into memory
+         *                     whatever their size is and the streams cannot be sorted
+         * @return this builder
+         * @throws IllegalArgumentException if memoryBudget is neither 0 nor at least
+         *                                  {@link ExternalMergeSort#MIN_MEMORY_BUDGET}
+         */
+        public Builder memoryBudget(long memoryBudget) {
+            Validate.isTrue(memoryBudget == 0 || memoryBudget >= ExternalMergeSort.MIN_MEMORY_BUDGET);
+            this.memoryBudget = memoryBudget;
+            return this;
+        }
+
+        /**
+         * Sets whether or not a file sorted in memory is read into an int array if it fits in the heap, rather than
+         * mapped into memory. Either way it is sorted by the engine, an array by its array variant.
+         *
+         * @param onHeap whether or not to sort on heap, true by default
+         * @return this builder
+         */
+        public Builder onHeap(boolean onHeap) {
+            this.onHeap = onHeap;
+            return this;
+        }
+
+        /**
+         * Sets the way to split the input into sorted runs when sorting out of core.
+         *
+         * @param runFormation a run formation, {@link RunFormation#SORT} by default
+         * @return this builder
+         * @throws IllegalArgumentException if runFormation is null
+         */
+        public Builder runFormation(RunFormation runFormation) {
+            Validate.notNull(runFormation);
+            this.runFormation = runFormation;
+            return this;
+        }
+
+        /**
+         * Sets the format to store the sorted runs in when sorting out of core.
+         *
+         * @param runFormat a run format, {@link RunFormat#PLAIN} by default
+         * @return this builder
+         * @throws IllegalArgumentException if runFormat is null
+         */
+        public Builder runFormat(RunFormat runFormat) {
+            Validate.notNull(runFormat);
+            this.runFormat = runFormat;
+            return this;
+        }
+
+        /**
+         * Sets the size of every merge buffer when sorting out of core.
+         *
+         * @param mergeBufferSize a buffer size in bytes, 0 by default which means the size is chosen automatically
+         * @return this builder
+         * @throws IllegalArgumentException if mergeBufferSize is negative
+         */
+        public Builder mergeBufferSize(int mergeBufferSize) {
+            Validate.isTrue(mergeBufferSize >= 0);
+            this.mergeBufferSize = mergeBufferSize;
+            return this;
+        }
+
+        /**
+         * Sets the size of every read-ahead and write-behind buffer when sorting out of core.
+         *
+         * @param ioBufferSize a buffer size in bytes, 0 by default which means the size is chosen automatically
+         * @return this builder
+         * @throws IllegalArgumentException if ioBufferSize is negative
+         */
+        public Builder ioBufferSize(int ioBufferSize) {
+            Validate.isTrue(ioBufferSize >= 0);
+            this.ioBufferSize = ioBufferSize;
+            return this;
+        }
+
+        /**
+         * Sets the directories to create the temporary files in.
+         *
+         * @param tempDirectories temp directories, {@code java.io.tmpdir} by default
+         * @return this builder
+         * @throws IllegalArgumentException if tempDirectories list is null, empty or contains null elements
+         */
+        public Builder tempDirectories(List<File> tempDirectories) {
+            Validate.notEmpty(tempDirectories);
+            Validate.noNullElements(tempDirectories);
+            this.tempDirectories = ImmutableList.copyOf(tempDirectories);
+            return this;
+        }
+
+        /**
+         * Constructs a sorter with the settings.
+         *
+         * @return a new sorter, never returns null
+         * @throws IllegalArgumentException if the out of core settings are specified without a memory budget or are
+         *                                  not valid for {@link ExternalMergeSort}
+         */
+        public ExternalSorter build() {
+            Validate.isTrue(memoryBudget > 0 || runFormation == RunFormation.SORT && runFormat == RunFormat.PLAIN
+                    && mergeBufferSize == 0 && ioBufferSize == 0, "Out of core settings require a memory budget");
+            return new ExternalSorter(this);
+        }
+
+    }
+
+}
@@ -4,22 +4,60 @@ import com.example.externalsort.aggregator.MyBufferAggregator;
 import org.apache.commons.lang.Validate;
 
 import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.RecursiveAction;
 
 /**
- * A naive quick sort implementation. It works fine though.
+ * A parallel introsort implementation with Hoare, three-way, block and parallel partitioning.
+ * The task partitions its sub-sequence, forks a task for one part and goes on partitioning the other one itself until
+ * it is not longer than the threshold, then sorts it sequentially by {@link SequentialSort} and joins the forked tasks.
+ * So the number of tasks depends on the threshold rather than on the number of integers.
+ * Like {@link SequentialSort}, the task is an introsort: a part which has been partitioned too many times is finished
+ * by heap sort, so a bad pivot sequence cannot make the sort quadratic.
+ * If sampling shows the sub-sequence has few distinct integers, every task partitions into three parts and skips the
+ * integers equal to the pivot, see {@link SequentialSort#isLowCardinality(MyBufferAggregator, long, long)}.
+ * Otherwise the parts are split by Hoare's scheme or, if the task is blocked, by BlockQuicksort's block partitioning,
+ * see {@link SequentialSort#blockPartition(MyBufferAggregator, long, long)}.
+ * A sub-sequence longer than the parallel threshold is partitioned by all the pool threads at once: it is split into
+ * one chunk per thread, the chunks are partitioned around the same pivot in parallel, and then the integers which have
+ * ended up on the wrong side of the common boundary are exchanged in parallel too. The positions of those integers
+ * follow from the prefix sums of the chunks' counts, so every thread knows which ranges to exchange without waiting
+ * for the others. This keeps the whole pool busy at the top levels, which would otherwise be single long scans.
+ * The task stops as soon as the task it has been split from in the first place is cancelled, or the task which has
+ * started it as a part of its own work, if any.
  *
  * @author Ruslan Sverchkov
  */
 @NotThreadSafe
 public class MySortTask extends RecursiveAction {
 
+    /**
+     * Sub-sequences not longer than this are sorted sequentially by default.
+     */
+    public static final long DEFAULT_THRESHOLD = 1 << 13;
+
+    /**
+     * Sub-sequences longer than this are partitioned in parallel by default.
+     */
+    public static final long DEFAULT_PARALLEL_THRESHOLD = 1 << 22;
+
+    private static final long MIN_CHUNK_LENGTH = 1 << 16;
+
+    private final MySortTask root;
+    private final ForkJoinTask<?> owner;
     private final MyBufferAggregator aggregator;
     private final long firstIndex;
     private final long lastIndex;
+    private final long threshold;
+    private final long parallelThreshold;
+    private final int depthLimit;
+    private final boolean blocked;
+    private boolean threeWay;
 
     /**
-     * Constructs a MySortTask instance.
+     * Constructs a MySortTask instance with the {@link #DEFAULT_THRESHOLD}.
      *
      * @param aggregator the aggregator to sort
      * @param firstIndex first index of sub-sequence to sort
@@ -32,12 +70,130 @@ public class MySortTask extends RecursiveAction {
      *                                  * first index is negative
      */
     public MySortTask(MyBufferAggregator aggregator, long firstIndex, long lastIndex) {
+        this(aggregator, firstIndex, lastIndex, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Constructs a MySortTask instance.
+     *
+     * @param aggregator the aggregator to sort
+     * @param firstIndex first index of sub-sequence to sort
+     * @param lastIndex  last index of sub-sequence to sort, if lastIndex < firstIndex we simply do nothing
+     * @param threshold  max length of a sub-sequence to sort sequentially
+     * @throws IllegalArgumentException if:
+     *                                  * aggregator is null
+     *                                  * aggregator is read-only
+     *                                  * first index is negative
+     *                                  * threshold is not positive
+     */
+    public MySortTask(MyBufferAggregator aggregator, long firstIndex, long lastIndex, long threshold) {
+        this(aggregator, firstIndex, lastIndex, threshold, false);
+    }
+
+    /**
+     * Constructs a MySortTask instance.
+     *
+     * @param aggregator the aggregator to sort
+     * @param firstIndex first index of sub-sequence to sort
+     * @param lastIndex  last index of sub-sequence to sort, if lastIndex < firstIndex we simply do nothing
+     * @param threshold  max length of a sub-sequence to sort sequentially
+     * @param blocked    whether or not to partition by blocks rather than by Hoare's scheme
+     * @throws IllegalArgumentException if:
+     *                                  * aggregator is null
+     *                                  * aggregator is read-only
+     *                                  * first index is negative
+     *                                  * threshold is not positive
+     */
+    public MySortTask(MyBufferAggregator aggregator, long firstIndex, long lastIndex, long threshold,
+                      boolean blocked) {
+        this(aggregator, firstIndex, lastIndex, threshold, blocked, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Constructs a MySortTask instance.
+     *
+     * @param aggregator        the aggregator to sort
+     * @param firstIndex        first index of sub-sequence to sort
+     * @param lastIndex         last index of sub-sequence to sort, if lastIndex < firstIndex we simply do nothing
+     * @param threshold         max length of a sub-sequence to sort sequentially
+     * @param blocked           whether or not to partition by blocks rather than by Hoare's scheme
+     * @param parallelThreshold max length of a sub-sequence to partition by a single thread,
+     *                          {@link Long#MAX_VALUE} disables parallel partitioning
+     * @throws IllegalArgumentException if:
+     *                                  * aggregator is null
+     *                                  * aggregator is read-only
+     *                                  * first index is negative
+     *                                  * threshold is not positive
+     *                                  * parallel threshold is not positive
+     */
+    public MySortTask(MyBufferAggregator aggregator, long firstIndex, long lastIndex, long threshold,
+                      boolean blocked, long parallelThreshold) {
+        Validate.notNull(aggregator);
+        Validate.isTrue(!aggregator.isReadOnly());
+        Validate.isTrue(firstIndex >= 0);
+        Validate.isTrue(threshold > 0);
+        Validate.isTrue(parallelThreshold > 0);
+        this.root = this;
+        this.owner = this;
+        this.aggregator = aggregator;
+        this.firstIndex = firstIndex;
+        this.lastIndex = lastIndex;
+        this.threshold = threshold;
+        this.parallelThreshold = parallelThreshold;
+        this.depthLimit = SequentialSort.getDepthLimit(lastIndex - firstIndex + 1);
+        this.blocked = blocked;
+    }
+
+    /**
+     * Constructs a MySortTask instance with the default thresholds which also stops when the specified task is
+     * cancelled. This is intended for tasks which sort a part of their range by a MySortTask.
+     *
+     * @param owner      the task whose cancellation stops this one
+     * @param aggregator the aggregator to sort
+     * @param firstIndex first index of sub-sequence to sort
+     * @param lastIndex  last index of sub-sequence to sort, if lastIndex < firstIndex we simply do nothing
+     * @throws IllegalArgumentException if:
+     *                                  * owner is null
+     *                                  * aggregator is null
+     *                                  * aggregator is read-only
+     *                                  * first index is negative
+     */
+    MySortTask(ForkJoinTask<?> owner, MyBufferAggregator aggregator, long firstIndex, long lastIndex) {
+        Validate.notNull(owner);
         Validate.notNull(aggregator);
         Validate.isTrue(!aggregator.isReadOnly());
         Validate.isTrue(firstIndex >= 0);
+        this.root = this;
+        this.owner = owner;
         this.aggregator = aggregator;
         this.firstIndex = firstIndex;
         this.lastIndex = lastIndex;
+        this.threshold = DEFAULT_THRESHOLD;
+        this.parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+        this.depthLimit = SequentialSort.getDepthLimit(lastIndex - firstIndex + 1);
+        this.blocked = false;
+    }
+
+    /**
+     * Constructs a MySortTask instance for a sub-sequence of the root task's sub-sequence.
+     *
+     * @param root       the task this one has been split from in the first place
+     * @param firstIndex first index of sub-sequence to sort
+     * @param lastIndex  last index of sub-sequence to sort
+     * @param depthLimit how many more times the sub-sequence may be partitioned before falling back to heap sort
+     * @param threeWay   whether or not to partition into three parts
+     */
+    private MySortTask(MySortTask root, long firstIndex, long lastIndex, int depthLimit, boolean threeWay) {
+        this.root = root;
+        this.owner = root.owner;
+        this.aggregator = root.aggregator;
+        this.firstIndex = firstIndex;
+        this.lastIndex = lastIndex;
+        this.threshold = root.threshold;
+        this.parallelThreshold = root.parallelThreshold;
+        this.depthLimit = depthLimit;
+        this.blocked = root.blocked;
+        this.threeWay = threeWay;
     }
 
     /**
@@ -45,29 +201,234 @@ public class MySortTask extends RecursiveAction {
      */
     @Override
     protected void compute() {
-        if (firstIndex >= lastIndex) {
-            return;
+        if (root == this) {
+            threeWay = SequentialSort.isLowCardinality(aggregator, firstIndex, lastIndex);
         }
-        long i = firstIndex, j = lastIndex;
-        int pivot = aggregator.getInt(firstIndex + (lastIndex - firstIndex) / 2);
-        while (i <= j) {
-            while (aggregator.getInt(i) < pivot) {
-                i++;
+        long first = firstIndex;
+        long last = lastIndex;
+        int depth = depthLimit;
+        long[] bounds = new long[2];
+        List<MySortTask> forked = new ArrayList<>();
+        while (last - first + 1 > threshold && depth > 0 && !root.isStopped()) {
+            long leftLast;
+            long rightFirst;
+            if (threeWay) {
+                SequentialSort.partitionThreeWay(aggregator, first, last, bounds);
+                leftLast = bounds[0] - 1;
+                rightFirst = bounds[1] + 1;
+            } else if (last - first + 1 > parallelThreshold && getChunksNumber(last - first + 1) > 1) {
+                leftLast = partitionInParallel(first, last);
+                rightFirst = leftLast + 1;
+            } else if (blocked) {
+                leftLast = SequentialSort.blockPartition(aggregator, first, last);
+                rightFirst = leftLast + 1;
+            } else {
+                leftLast = SequentialSort.partition(aggregator, first, last);
+                rightFirst = leftLast + 1;
             }
-            while (aggregator.getInt(j) > pivot) {
-                j--;
+            depth--;
+            MySortTask task;
+            if (leftLast - first < last - rightFirst) {
+                task = new MySortTask(root, first, leftLast, depth, threeWay);
+                first = rightFirst;
+            } else {
+                task = new MySortTask(root, rightFirst, last, depth, threeWay);
+                last = leftLast;
             }
-            if (i <= j) {
-                int temp = aggregator.getInt(i);
-                aggregator.setInt(i, aggregator.getInt(j));
-                aggregator.setInt(j, temp);
-                i++;
-                j--;
+            task.fork();
+            forked.add(task);
+        }
+        if (!root.isStopped()) {
+            SequentialSort.sort(aggregator, first, last, depth, threeWay, blocked);
+        }
+        for (int k = forked.size() - 1; k >= 0; k--) {
+            forked.get(k).join();
+        }
+    }
+
+    /**
+     * Tells whether or not the task should stop, which is the case if either the task or its owner is cancelled.
+     *
+     * @return {@code true} if the task should stop
+     */
+    private boolean isStopped() {
+        return isCancelled() || owner.isCancelled();
+    }
+
+    /**
+     * The method is intended to calculate the number of chunks to partition a sub-sequence in parallel by.
+     *
+     * @param length the length of the sub-sequence
+     * @return the number of chunks, one per pool thread unless the chunks get too short, 1 outside of a pool
+     */
+    private static int getChunksNumber(long length) {
+        if (!ForkJoinTask.inForkJoinPool()) {
+            return 1;
+        }
+        return (int) Math.max(1, Math.min(ForkJoinTask.getPool().getParallelism(), length / MIN_CHUNK_LENGTH));
+    }
+
+    /**
+     * The method is intended to partition the specified sub-sequence by all the pool threads, see the class comment.
+     * Integers less than the pivot go to the left part, the rest go to the right one.
+     *
+     * @param first first index of sub-sequence to partition
+     * @param last  last index of sub-sequence to partition
+     * @return the last index of the left part, always less than last; integers up to it are not greater than
+     *         integers after it
+     */
+    private long partitionInParallel(long first, long last) {
+        int pivot = aggregator.getInt(SequentialSort.selectPivot(aggregator, first, last));
+        int chunks = getChunksNumber(last - first + 1);
+        long[] bounds = new long[chunks + 1];
+        for (int chunk = 0; chunk <= chunks; chunk++) {
+            bounds[chunk] = first + (last - first + 1) * chunk / chunks;
+        }
+        long[] lessNumbers = new long[chunks];
+        List<RecursiveAction> partitions = new ArrayList<>(chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            partitions.add(new ChunkPartition(root, bounds[chunk], bounds[chunk + 1], pivot, lessNumbers, chunk));
+        }
+        invokeAll(partitions);
+        long boundary = first;
+        for (long lessNumber : lessNumbers) {
+            boundary += lessNumber;
+        }
+        if (boundary == first) {
+            // the pivot is the least integer, nothing is less than it
+            return SequentialSort.partition(aggregator, first, last);
+        }
+        // greater or equal integers left of the boundary and less integers right of it, in the order of the chunks
+        List<long[]> leftRanges = new ArrayList<>(chunks);
+        List<long[]> rightRanges = new ArrayList<>(chunks);
+        long misplaced = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            long chunkBoundary = bounds[chunk] + lessNumbers[chunk];
+            if (chunkBoundary < boundary && bounds[chunk + 1] > chunkBoundary) {
+                long end = Math.min(bounds[chunk + 1], boundary);
+                leftRanges.add(new long[]{chunkBoundary, end - chunkBoundary});
+                misplaced += end - chunkBoundary;
+            }
+            if (chunkBoundary > boundary && chunkBoundary > bounds[chunk]) {
+                long start = Math.max(bounds[chunk], boundary);
+                rightRanges.add(new long[]{start, chunkBoundary - start});
+            }
+        }
+        List<RecursiveAction> exchanges = new ArrayList<>(chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            long from = misplaced * chunk / chunks;
+            long to = misplaced * (chunk + 1) / chunks;
+            if (to > from) {
+                exchanges.add(new Exchange(root, leftRanges, rightRanges, from, to));
             }
         }
-        MySortTask left = new MySortTask(aggregator, firstIndex, j);
-        MySortTask right = new MySortTask(aggregator, i, lastIndex);
-        invokeAll(left, right);
+        invokeAll(exchanges);
+        return boundary - 1;
+    }
+
+    /**
+     * The task partitions a chunk around a pivot: integers less than the pivot go first.
+     */
+    private static class ChunkPartition extends RecursiveAction {
+
+        private final MySortTask root;
+        private final long from;
+        private final long to;
+        private final int pivot;
+        private final long[] lessNumbers;
+        private final int chunk;
+
+        ChunkPartition(MySortTask root, long from, long to, int pivot, long[] lessNumbers, int chunk) {
+            this.root = root;
+            this.from = from;
+            this.to = to;
+            this.pivot = pivot;
+            this.lessNumbers = lessNumbers;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (root.isStopped()) {
+                return;
+            }
+            MyBufferAggregator aggregator = root.aggregator;
+            long i = from;
+            long j = to - 1;
+            while (true) {
+                while (i <= j && aggregator.getInt(i) < pivot) {
+                    i++;
+                }
+                while (i <= j && aggregator.getInt(j) >= pivot) {
+                    j--;
+                }
+                if (i >= j) {
+                    break;
+                }
+                SequentialSort.swap(aggregator, i++, j--);
+            }
+            lessNumbers[chunk] = i - from;
+        }
+
+    }
+
+    /**
+     * The task exchanges a stretch of the misplaced integers: the k-th integer of the left ranges with the k-th
+     * integer of the right ones, for k from the first index of the stretch inclusive to the last one exclusive.
+     */
+    private static class Exchange extends RecursiveAction {
+
+        private final MySortTask root;
+        private final List<long[]> leftRanges;
+        private final List<long[]> rightRanges;
+        private final long from;
+        private final long to;
+
+        Exchange(MySortTask root, List<long[]> leftRanges, List<long[]> rightRanges, long from, long to) {
+            this.root = root;
+            this.leftRanges = leftRanges;
+            this.rightRanges = rightRanges;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (root.isStopped()) {
+                return;
+            }
+            int leftRange = 0;
+            long leftSkipped = 0;
+            while (leftSkipped + leftRanges.get(leftRange)[1] <= from) {
+                leftSkipped += leftRanges.get(leftRange++)[1];
+            }
+            int rightRange = 0;
+            long rightSkipped = 0;
+            while (rightSkipped + rightRanges.get(rightRange)[1] <= from) {
+                rightSkipped += rightRanges.get(rightRange++)[1];
+            }
+            long leftOffset = from - leftSkipped;
+            long rightOffset = from - rightSkipped;
+            long remaining = to - from;
+            while (remaining > 0) {
+                long[] left = leftRanges.get(leftRange);
+                long[] right = rightRanges.get(rightRange);
+                long length = Math.min(remaining, Math.min(left[1] - leftOffset, right[1] - rightOffset));
+                root.aggregator.swapRanges(left[0] + leftOffset, right[0] + rightOffset, length);
+                remaining -= length;
+                leftOffset += length;
+                rightOffset += length;
+                if (leftOffset == left[1]) {
+                    leftRange++;
+                    leftOffset = 0;
+                }
+                if (rightOffset == right[1]) {
+                    rightRange++;
+                    rightOffset = 0;
+                }
+            }
+        }
+
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,213 @@
+package com.example.externalsort;
+
+import com.example.externalsort.aggregator.MyBufferAggregator;
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A parallel LSD radix sort implementation. The integers are distributed between the aggregator and a scratch
+ * aggregator by 8-bit digits, so the sort takes at most four linear passes whatever the data is. Every pass splits the
+ * data into one block per pool thread, the blocks are counted into per-block histograms in parallel and then scattered
+ * to their final positions in parallel. A pass is skipped if all integers share the same digit.
+ * <p/>
+ * If the task is cancelled, the blocks stop at the next check and the aggregator is left partially sorted.
+ *
+ * @author Ruslan Sverchkov
+ */
+@NotThreadSafe
+public class RadixSortTask extends RecursiveAction {
+
+    private static final int DIGIT_BITS = 8;
+    private static final int RADIX = 1 << DIGIT_BITS;
+    private static final int DIGIT_MASK = RADIX - 1;
+    private static final int SIGN_DIGIT_SHIFT = Integer.SIZE - DIGIT_BITS;
+    private static final long MIN_BLOCK_LENGTH = 1 << 16;
+    private static final long CANCELLATION_CHECK_MASK = (1 << 16) - 1;
+
+    private final MyBufferAggregator aggregator;
+    private final MyBufferAggregator scratch;
+
+    /**
+     * Constructs a RadixSortTask instance.
+     *
+     * @param aggregator the aggregator to sort
+     * @param scratch    an aggregator to distribute the integers to, its content is overwritten
+     * @throws IllegalArgumentException if:
+     *                                  * aggregator is null
+     *                                  * aggregator is read-only
+     *                                  * scratch is null
+     *                                  * scratch is read-only
+     *                                  * scratch is shorter than aggregator
+     */
+    public RadixSortTask(MyBufferAggregator aggregator, MyBufferAggregator scratch) {
+        Validate.notNull(aggregator);
+        Validate.isTrue(!aggregator.isReadOnly());
+        Validate.notNull(scratch);
+        Validate.isTrue(!scratch.isReadOnly());
+        Validate.isTrue(scratch.getLength() >= aggregator.getLength());
+        this.aggregator = aggregator;
+        this.scratch = scratch;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void compute() {
+        long length = aggregator.getLength();
+        int blocks = (int) Math.max(1, Math.min(getParallelism(), length / MIN_BLOCK_LENGTH));
+        long[] bounds = new long[blocks + 1];
+        for (int block = 0; block <= blocks; block++) {
+            bounds[block] = length * block / blocks;
+        }
+        MyBufferAggregator source = aggregator;
+        MyBufferAggregator target = scratch;
+        for (int shift = 0; shift < Integer.SIZE && !isCancelled(); shift += DIGIT_BITS) {
+            long[][] counts = new long[blocks][RADIX];
+            List<RecursiveAction> histograms = new ArrayList<>(blocks);
+            for (int block = 0; block < blocks; block++) {
+                histograms.add(new Histogram(this, source, bounds[block], bounds[block + 1], shift, counts[block]));
+            }
+            invokeAll(histograms);
+            if (!toOffsets(counts, length)) {
+                continue;
+            }
+            List<RecursiveAction> scatters = new ArrayList<>(blocks);
+            for (int block = 0; block < blocks; block++) {
+                scatters.add(new Scatter(this, source, target, bounds[block], bounds[block + 1], shift, counts[block]));
+            }
+            invokeAll(scatters);
+            MyBufferAggregator temp = source;
+            source = target;
+            target = temp;
+        }
+        if (source != aggregator) {
+            new CopyTask(this, source, aggregator, 0, length).invoke();
+        }
+    }
+
+    /**
+     * The method is intended to find out how many threads may scan the data at the same time.
+     *
+     * @return the parallelism of the pool the task runs in, or of the common pool if it runs outside of a pool
+     */
+    private static int getParallelism() {
+        ForkJoinPool pool = ForkJoinTask.getPool();
+        return pool == null ? ForkJoinPool.getCommonPoolParallelism() : pool.getParallelism();
+    }
+
+    /**
+     * The method is intended to replace the per-block digit counts with the positions the blocks start scattering
+     * each digit from. Digits are ordered first, blocks second, which keeps every pass stable.
+     *
+     * @param counts per-block digit counts
+     * @param length the number of integers counted
+     * @return {@code false} if all the integers share the same digit and the pass may be skipped
+     */
+    private static boolean toOffsets(long[][] counts, long length) {
+        long offset = 0;
+        for (int digit = 0; digit < RADIX; digit++) {
+            long digitCount = 0;
+            for (long[] blockCounts : counts) {
+                long count = blockCounts[digit];
+                blockCounts[digit] = offset;
+                offset += count;
+                digitCount += count;
+            }
+            if (digitCount == length) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The method is intended to extract a digit of the specified integer. The sign bit is inverted in the most
+     * significant digit so that negative integers precede positive ones.
+     *
+     * @param value an integer
+     * @param shift the digit position in bits
+     * @return the digit, between 0 and {@code RADIX - 1}
+     */
+    private static int getDigit(int value, int shift) {
+        int digit = (value >>> shift) & DIGIT_MASK;
+        return shift == SIGN_DIGIT_SHIFT ? digit ^ (RADIX >>> 1) : digit;
+    }
+
+    /**
+     * The task counts the digits of a block.
+     */
+    private static class Histogram extends RecursiveAction {
+
+        private final RecursiveAction root;
+        private final MyBufferAggregator source;
+        private final long from;
+        private final long to;
+        private final int shift;
+        private final long[] counts;
+
+        Histogram(RecursiveAction root, MyBufferAggregator source, long from, long to, int shift, long[] counts) {
+            this.root = root;
+            this.source = source;
+            this.from = from;
+            this.to = to;
+            this.shift = shift;
+            this.counts = counts;
+        }
+
+        @Override
+        protected void compute() {
+            for (long i = from; i < to; i++) {
+                if ((i & CANCELLATION_CHECK_MASK) == 0 && root.isCancelled()) {
+                    return;
+                }
+                counts[getDigit(source.getInt(i), shift)]++;
+            }
+        }
+
+    }
+
+    /**
+     * The task moves the integers of a block to the positions the block has been given for their digits.
+     */
+    private static class Scatter extends RecursiveAction {
+
+        private final RecursiveAction root;
+        private final MyBufferAggregator source;
+        private final MyBufferAggregator target;
+        private final long from;
+        private final long to;
+        private final int shift;
+        private final long[] offsets;
+
+        Scatter(RecursiveAction root, MyBufferAggregator source, MyBufferAggregator target, long from, long to,
+                int shift, long[] offsets) {
+            this.root = root;
+            this.source = source;
+            this.target = target;
+            this.from = from;
+            this.to = to;
+            this.shift = shift;
+            this.offsets = offsets;
+        }
+
+        @Override
+        protected void compute() {
+            for (long i = from; i < to; i++) {
+                if ((i & CANCELLATION_CHECK_MASK) == 0 && root.isCancelled()) {
+                    return;
+                }
+                int value = source.getInt(i);
+                target.setInt(offsets[getDigit(value, shift)]++, value);
+            }
+        }
+
+    }
+
+}
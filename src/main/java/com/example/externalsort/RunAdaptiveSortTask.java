@@ -0,0 +1,285 @@
+package com.example.externalsort;
+
+import com.example.externalsort.aggregator.MyBufferAggregator;
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A run-adaptive sort implementation for presorted data. A sequential pre-pass splits the aggregator into natural runs:
+ * maximal non-descending sub-sequences and maximal strictly descending ones. If there are few long runs, the descending
+ * runs are reversed in place and the runs are merged pairwise between the aggregator and a scratch aggregator, level by
+ * level, the merges themselves are split between the pool threads. Sorted or reversed data is thus finished in a
+ * single linear pass, and k concatenated sorted batches take log2(k) merge passes.
+ * <p/>
+ * If there are too many runs, the pre-pass stops as soon as it notices that, and the aggregator is sorted by the
+ * fallback task instead. Cancelling this task cancels the fallback task as well.
+ *
+ * @author Ruslan Sverchkov
+ */
+@NotThreadSafe
+public class RunAdaptiveSortTask extends RecursiveAction {
+
+    /**
+     * Max number of runs to merge, data with more runs is sorted by the fallback task.
+     */
+    public static final int MAX_RUNS = 256;
+
+    /**
+     * Min average run length to merge, data with shorter runs is sorted by the fallback task.
+     */
+    public static final long MIN_AVERAGE_RUN_LENGTH = 1024;
+
+    private static final long SEQUENTIAL_THRESHOLD = 1 << 16;
+
+    private final MyBufferAggregator aggregator;
+    private final MyBufferAggregator scratch;
+    private final RecursiveAction fallback;
+
+    /**
+     * Constructs a RunAdaptiveSortTask instance.
+     *
+     * @param aggregator the aggregator to sort
+     * @param scratch    an aggregator to merge the runs to, its content is overwritten
+     * @param fallback   a task sorting the aggregator if it is not presorted enough
+     * @throws IllegalArgumentException if:
+     *                                  * aggregator is null
+     *                                  * aggregator is read-only
+     *                                  * scratch is null
+     *                                  * scratch is read-only
+     *                                  * scratch is shorter than aggregator
+     *                                  * fallback is null
+     */
+    public RunAdaptiveSortTask(MyBufferAggregator aggregator, MyBufferAggregator scratch, RecursiveAction fallback) {
+        Validate.notNull(aggregator);
+        Validate.isTrue(!aggregator.isReadOnly());
+        Validate.notNull(scratch);
+        Validate.isTrue(!scratch.isReadOnly());
+        Validate.isTrue(scratch.getLength() >= aggregator.getLength());
+        Validate.notNull(fallback);
+        this.aggregator = aggregator;
+        this.scratch = scratch;
+        this.fallback = fallback;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        fallback.cancel(mayInterruptIfRunning);
+        return cancelled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void compute() {
+        long length = aggregator.getLength();
+        int maxRuns = (int) Math.min(MAX_RUNS, length / MIN_AVERAGE_RUN_LENGTH + 1);
+        long[] bounds = new long[maxRuns + 1];
+        boolean[] descending = new boolean[maxRuns];
+        int runs = findRuns(bounds, descending);
+        if (runs < 0) {
+            if (!isCancelled()) {
+                fallback.invoke();
+            }
+            return;
+        }
+        List<RecursiveAction> reversals = new ArrayList<>();
+        for (int run = 0; run < runs; run++) {
+            if (descending[run]) {
+                reversals.add(new Reverse(this, aggregator, bounds[run], bounds[run + 1] - 1, 0,
+                        (bounds[run + 1] - bounds[run]) / 2));
+            }
+        }
+        invokeAll(reversals);
+        MyBufferAggregator source = aggregator;
+        MyBufferAggregator target = scratch;
+        while (runs > 1 && !isCancelled()) {
+            List<RecursiveAction> merges = new ArrayList<>();
+            int merged = 0;
+            for (int run = 0; run < runs; run += 2) {
+                if (run + 1 < runs) {
+                    merges.add(new Merge(this, source, target, bounds[run], bounds[run + 1], bounds[run + 1],
+                            bounds[run + 2], bounds[run]));
+                } else {
+                    merges.add(new CopyTask(this, source, target, bounds[run], bounds[run + 1]));
+                }
+                bounds[++merged] = bounds[Math.min(run + 2, runs)];
+            }
+            invokeAll(merges);
+            runs = merged;
+            MyBufferAggregator temp = source;
+            source = target;
+            target = temp;
+        }
+        if (source != aggregator) {
+            new CopyTask(this, source, aggregator, 0, length).invoke();
+        }
+    }
+
+    /**
+     * The method is intended to split the aggregator into natural runs.
+     *
+     * @param bounds     an array to put the first index of every run and the aggregator length to, its length limits
+     *                   the number of runs
+     * @param descending an array to put whether or not every run is strictly descending to
+     * @return the number of runs, or -1 if there are more runs than the bounds array can hold
+     */
+    private int findRuns(long[] bounds, boolean[] descending) {
+        long length = aggregator.getLength();
+        int runs = 0;
+        long i = 0;
+        while (i < length) {
+            if (runs == descending.length) {
+                return -1;
+            }
+            long j = i + 1;
+            int previous = aggregator.getInt(i);
+            if (j < length && aggregator.getInt(j) < previous) {
+                descending[runs] = true;
+                for (int current; j < length && (current = aggregator.getInt(j)) < previous; j++) {
+                    previous = current;
+                }
+            } else {
+                descending[runs] = false;
+                for (int current; j < length && (current = aggregator.getInt(j)) >= previous; j++) {
+                    previous = current;
+                }
+            }
+            bounds[++runs] = j;
+            i = j;
+        }
+        return runs;
+    }
+
+    /**
+     * The task reverses a run by swapping the symmetric pairs of integers, the pairs are split between tasks.
+     */
+    private static class Reverse extends RecursiveAction {
+
+        private final ForkJoinTask<?> root;
+        private final MyBufferAggregator aggregator;
+        private final long firstIndex;
+        private final long lastIndex;
+        private final long fromPair;
+        private final long toPair;
+
+        Reverse(ForkJoinTask<?> root, MyBufferAggregator aggregator, long firstIndex, long lastIndex, long fromPair,
+                long toPair) {
+            this.root = root;
+            this.aggregator = aggregator;
+            this.firstIndex = firstIndex;
+            this.lastIndex = lastIndex;
+            this.fromPair = fromPair;
+            this.toPair = toPair;
+        }
+
+        @Override
+        protected void compute() {
+            if (toPair - fromPair > SEQUENTIAL_THRESHOLD) {
+                long middle = fromPair + (toPair - fromPair) / 2;
+                invokeAll(new Reverse(root, aggregator, firstIndex, lastIndex, fromPair, middle),
+                        new Reverse(root, aggregator, firstIndex, lastIndex, middle, toPair));
+                return;
+            }
+            for (long pair = fromPair; pair < toPair && !root.isCancelled(); pair++) {
+                SequentialSort.swap(aggregator, firstIndex + pair, lastIndex - pair);
+            }
+        }
+
+    }
+
+    /**
+     * The task merges two adjacent sorted runs of the source to the target. Long merges are split in two independent
+     * ones: the longer run is cut in the middle and the shorter one is cut by a binary search for the middle integer.
+     */
+    private static class Merge extends RecursiveAction {
+
+        private final ForkJoinTask<?> root;
+        private final MyBufferAggregator source;
+        private final MyBufferAggregator target;
+        private final long leftFrom;
+        private final long leftTo;
+        private final long rightFrom;
+        private final long rightTo;
+        private final long targetFrom;
+
+        Merge(ForkJoinTask<?> root, MyBufferAggregator source, MyBufferAggregator target, long leftFrom, long leftTo,
+              long rightFrom, long rightTo, long targetFrom) {
+            this.root = root;
+            this.source = source;
+            this.target = target;
+            this.leftFrom = leftFrom;
+            this.leftTo = leftTo;
+            this.rightFrom = rightFrom;
+            this.rightTo = rightTo;
+            this.targetFrom = targetFrom;
+        }
+
+        @Override
+        protected void compute() {
+            if (root.isCancelled()) {
+                return;
+            }
+            long leftLength = leftTo - leftFrom;
+            long rightLength = rightTo - rightFrom;
+            if (leftLength + rightLength <= SEQUENTIAL_THRESHOLD) {
+                merge();
+                return;
+            }
+            long leftMiddle;
+            long rightMiddle;
+            if (leftLength >= rightLength) {
+                leftMiddle = leftFrom + leftLength / 2;
+                rightMiddle = lowerBound(rightFrom, rightTo, source.getInt(leftMiddle));
+            } else {
+                rightMiddle = rightFrom + rightLength / 2;
+                leftMiddle = lowerBound(leftFrom, leftTo, source.getInt(rightMiddle));
+            }
+            invokeAll(new Merge(root, source, target, leftFrom, leftMiddle, rightFrom, rightMiddle, targetFrom),
+                    new Merge(root, source, target, leftMiddle, leftTo, rightMiddle, rightTo,
+                            targetFrom + (leftMiddle - leftFrom) + (rightMiddle - rightFrom)));
+        }
+
+        private long lowerBound(long from, long to, int value) {
+            while (from < to) {
+                long middle = from + (to - from) / 2;
+                if (source.getInt(middle) < value) {
+                    from = middle + 1;
+                } else {
+                    to = middle;
+                }
+            }
+            return from;
+        }
+
+        private void merge() {
+            long i = leftFrom;
+            long j = rightFrom;
+            long k = targetFrom;
+            while (i < leftTo && j < rightTo) {
+                int left = source.getInt(i);
+                int right = source.getInt(j);
+                if (right < left) {
+                    target.setInt(k++, right);
+                    j++;
+                } else {
+                    target.setInt(k++, left);
+                    i++;
+                }
+            }
+            source.copyRange(i, target, k, leftTo - i);
+            source.copyRange(j, target, k + leftTo - i, rightTo - j);
+        }
+
+    }
+
+}
@@ -0,0 +1,327 @@
+package com.example.externalsort;
+
+import com.example.externalsort.aggregator.MyBufferAggregator;
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A parallel sample sort implementation. A random sample of the range is sorted and every {@code OVERSAMPLING}-th
+ * integer of it becomes a splitter, the splitters cut the range into up to 256 buckets. The range is split into one
+ * block per pool thread, the blocks are counted into per-block bucket histograms in parallel and then scattered to the
+ * scratch aggregator in parallel, so no pass over the range runs on a single thread. Every bucket is then copied back
+ * and sorted by a task of its own: large buckets are sample sorted again, small ones sequentially.
+ * <p/>
+ * A bucket is found by descending an implicit binary search tree of the splitters, which takes the same number of
+ * comparisons for every integer and does not branch on their results. If all the integers of a range fall into one
+ * bucket, which happens when a few distinct integers dominate the range, the range is sorted by {@link MySortTask}
+ * which copes with duplicates.
+ * <p/>
+ * If the task is cancelled, the blocks and buckets stop at the next check and the aggregator is left partially sorted.
+ *
+ * @author Ruslan Sverchkov
+ */
+@NotThreadSafe
+public class SampleSortTask extends RecursiveAction {
+
+    private static final int MAX_LOG_BUCKETS = 8;
+    private static final int OVERSAMPLING = 16;
+    private static final long SEQUENTIAL_THRESHOLD = 1 << 16;
+    private static final long MIN_BLOCK_LENGTH = 1 << 16;
+    private static final int BUFFER_LENGTH = 1024;
+
+    private final SampleSortTask root;
+    private final MyBufferAggregator aggregator;
+    private final MyBufferAggregator scratch;
+    private final long from;
+    private final long to;
+
+    /**
+     * Constructs a SampleSortTask instance.
+     *
+     * @param aggregator the aggregator to sort
+     * @param scratch    an aggregator to distribute the integers to, its content is overwritten
+     * @throws IllegalArgumentException if:
+     *                                  * aggregator is null
+     *                                  * aggregator is read-only
+     *                                  * scratch is null
+     *                                  * scratch is read-only
+     *                                  * scratch is shorter than aggregator
+     */
+    public SampleSortTask(MyBufferAggregator aggregator, MyBufferAggregator scratch) {
+        Validate.notNull(aggregator);
+        Validate.isTrue(!aggregator.isReadOnly());
+        Validate.notNull(scratch);
+        Validate.isTrue(!scratch.isReadOnly());
+        Validate.isTrue(scratch.getLength() >= aggregator.getLength());
+        this.root = this;
+        this.aggregator = aggregator;
+        this.scratch = scratch;
+        this.from = 0;
+        this.to = aggregator.getLength();
+    }
+
+    /**
+     * Constructs a SampleSortTask instance for a bucket of the root task's range.
+     *
+     * @param root the task this one has been split from in the first place
+     * @param from first index of the bucket, inclusive
+     * @param to   last index of the bucket, exclusive
+     */
+    private SampleSortTask(SampleSortTask root, long from, long to) {
+        this.root = root;
+        this.aggregator = root.aggregator;
+        this.scratch = root.scratch;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void compute() {
+        long length = to - from;
+        if (root.isCancelled() || length < 2) {
+            return;
+        }
+        if (length <= SEQUENTIAL_THRESHOLD) {
+            SequentialSort.sort(aggregator, from, to - 1);
+            return;
+        }
+        int logBuckets = Math.min(MAX_LOG_BUCKETS, 64 - Long.numberOfLeadingZeros(length / SEQUENTIAL_THRESHOLD));
+        int[] tree = getSplitterTree(logBuckets);
+        int blocks = (int) Math.max(1, Math.min(getParallelism(), length / MIN_BLOCK_LENGTH));
+        long[] bounds = new long[blocks + 1];
+        for (int block = 0; block <= blocks; block++) {
+            bounds[block] = from + length * block / blocks;
+        }
+        long[][] counts = new long[blocks][tree.length];
+        List<RecursiveAction> histograms = new ArrayList<>(blocks);
+        for (int block = 0; block < blocks; block++) {
+            histograms.add(new Histogram(this, bounds[block], bounds[block + 1], tree, logBuckets, counts[block]));
+        }
+        invokeAll(histograms);
+        if (root.isCancelled()) {
+            return;
+        }
+        long[] bucketBounds = new long[tree.length + 1];
+        if (!toOffsets(counts, from, length, bucketBounds)) {
+            new MySortTask(root, aggregator, from, to - 1).invoke();
+            return;
+        }
+        List<RecursiveAction> scatters = new ArrayList<>(blocks);
+        for (int block = 0; block < blocks; block++) {
+            scatters.add(new Scatter(this, bounds[block], bounds[block + 1], tree, logBuckets, counts[block]));
+        }
+        invokeAll(scatters);
+        List<RecursiveAction> buckets = new ArrayList<>(tree.length);
+        for (int bucket = 0; bucket < tree.length; bucket++) {
+            if (bucketBounds[bucket + 1] > bucketBounds[bucket]) {
+                buckets.add(new Bucket(new SampleSortTask(root, bucketBounds[bucket], bucketBounds[bucket + 1])));
+            }
+        }
+        invokeAll(buckets);
+    }
+
+    /**
+     * The method is intended to find out how many threads may scan the range at the same time.
+     *
+     * @return the parallelism of the pool the task runs in, or of the common pool if it runs outside of a pool
+     */
+    private static int getParallelism() {
+        ForkJoinPool pool = ForkJoinTask.getPool();
+        return pool == null ? ForkJoinPool.getCommonPoolParallelism() : pool.getParallelism();
+    }
+
+    /**
+     * The method is intended to choose the splitters from a random sample of the range and lay them out as an
+     * implicit binary search tree: the root is at index 1, the children of the node at index j are at 2j and 2j + 1.
+     *
+     * @param logBuckets the binary logarithm of the number of buckets
+     * @return the tree, an array as long as the number of buckets whose element at index 0 is not used
+     */
+    private int[] getSplitterTree(int logBuckets) {
+        int bucketsNumber = 1 << logBuckets;
+        int[] sample = new int[bucketsNumber * OVERSAMPLING];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = aggregator.getInt(from + random.nextLong(to - from));
+        }
+        Arrays.sort(sample);
+        int[] splitters = new int[bucketsNumber - 1];
+        for (int i = 0; i < splitters.length; i++) {
+            splitters[i] = sample[(i + 1) * OVERSAMPLING];
+        }
+        int[] tree = new int[bucketsNumber];
+        fillTree(tree, 1, splitters, 0, splitters.length);
+        return tree;
+    }
+
+    /**
+     * The method is intended to put the median of the specified splitters to the specified node and the rest to its
+     * subtrees.
+     *
+     * @param tree      the tree
+     * @param node      an index of the node
+     * @param splitters sorted splitters
+     * @param first     first index of the splitters to put, inclusive
+     * @param last      last index of the splitters to put, exclusive
+     */
+    private static void fillTree(int[] tree, int node, int[] splitters, int first, int last) {
+        if (first >= last) {
+            return;
+        }
+        int middle = (first + last) >>> 1;
+        tree[node] = splitters[middle];
+        fillTree(tree, 2 * node, splitters, first, middle);
+        fillTree(tree, 2 * node + 1, splitters, middle + 1, last);
+    }
+
+    /**
+     * The method is intended to find the bucket of the specified integer. Bucket i holds the integers greater than
+     * splitter i - 1 and not greater than splitter i.
+     *
+     * @param tree       the splitter tree
+     * @param logBuckets the binary logarithm of the number of buckets
+     * @param value      an integer
+     * @return the bucket, between 0 and the number of buckets - 1
+     */
+    private static int getBucket(int[] tree, int logBuckets, int value) {
+        int node = 1;
+        for (int level = 0; level < logBuckets; level++) {
+            node = 2 * node + (value > tree[node] ? 1 : 0);
+        }
+        return node - tree.length;
+    }
+
+    /**
+     * The method is intended to replace the per-block bucket counts with the positions the blocks start scattering
+     * each bucket from. Buckets are ordered first, blocks second.
+     *
+     * @param counts       per-block bucket counts
+     * @param from         the position the first bucket starts from
+     * @param length       the number of integers counted
+     * @param bucketBounds an array to store the positions each bucket starts from to, the last element is set to the
+     *                     position the last bucket ends at
+     * @return {@code false} if all the integers fall into the same bucket and distributing them makes no progress
+     */
+    private static boolean toOffsets(long[][] counts, long from, long length, long[] bucketBounds) {
+        long offset = from;
+        boolean progress = true;
+        for (int bucket = 0; bucket < bucketBounds.length - 1; bucket++) {
+            bucketBounds[bucket] = offset;
+            for (long[] blockCounts : counts) {
+                long count = blockCounts[bucket];
+                blockCounts[bucket] = offset;
+                offset += count;
+            }
+            if (offset - bucketBounds[bucket] == length) {
+                progress = false;
+            }
+        }
+        bucketBounds[bucketBounds.length - 1] = offset;
+        return progress;
+    }
+
+    /**
+     * The task counts the buckets of a block.
+     */
+    private static class Histogram extends RecursiveAction {
+
+        private final SampleSortTask task;
+        private final long from;
+        private final long to;
+        private final int[] tree;
+        private final int logBuckets;
+        private final long[] counts;
+
+        Histogram(SampleSortTask task, long from, long to, int[] tree, int logBuckets, long[] counts) {
+            this.task = task;
+            this.from = from;
+            this.to = to;
+            this.tree = tree;
+            this.logBuckets = logBuckets;
+            this.counts = counts;
+        }
+
+        @Override
+        protected void compute() {
+            int[] buffer = new int[BUFFER_LENGTH];
+            for (long i = from; i < to && !task.root.isCancelled(); i += BUFFER_LENGTH) {
+                int length = (int) Math.min(BUFFER_LENGTH, to - i);
+                task.aggregator.getInts(i, buffer, 0, length);
+                for (int j = 0; j < length; j++) {
+                    counts[getBucket(tree, logBuckets, buffer[j])]++;
+                }
+            }
+        }
+
+    }
+
+    /**
+     * The task moves the integers of a block to the scratch positions the block has been given for their buckets.
+     */
+    private static class Scatter extends RecursiveAction {
+
+        private final SampleSortTask task;
+        private final long from;
+        private final long to;
+        private final int[] tree;
+        private final int logBuckets;
+        private final long[] offsets;
+
+        Scatter(SampleSortTask task, long from, long to, int[] tree, int logBuckets, long[] offsets) {
+            this.task = task;
+            this.from = from;
+            this.to = to;
+            this.tree = tree;
+            this.logBuckets = logBuckets;
+            this.offsets = offsets;
+        }
+
+        @Override
+        protected void compute() {
+            int[] buffer = new int[BUFFER_LENGTH];
+            for (long i = from; i < to && !task.root.isCancelled(); i += BUFFER_LENGTH) {
+                int length = (int) Math.min(BUFFER_LENGTH, to - i);
+                task.aggregator.getInts(i, buffer, 0, length);
+                for (int j = 0; j < length; j++) {
+                    int value = buffer[j];
+                    task.scratch.setInt(offsets[getBucket(tree, logBuckets, value)]++, value);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * The task copies a bucket back from the scratch aggregator and sorts it.
+     */
+    private static class Bucket extends RecursiveAction {
+
+        private final SampleSortTask task;
+
+        Bucket(SampleSortTask task) {
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (task.root.isCancelled()) {
+                return;
+            }
+            task.scratch.copyRange(task.from, task.aggregator, task.from, task.to - task.from);
+            task.invoke();
+        }
+
+    }
+
+}
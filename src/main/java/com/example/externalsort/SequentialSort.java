@@ -0,0 +1,542 @@
+package com.example.externalsort;
+
+import com.example.externalsort.aggregator.MyBufferAggregator;
+
+import java.util.Arrays;
+
+/**
+ * The class is intended to hold single-threaded sorting routines working on a sub-sequence of an aggregator. They are
+ * used by the parallel tasks once a sub-sequence is too small to be worth splitting any further.
+ * Indexes are inclusive, a sub-sequence with the last index less than the first one is empty.
+ * <p/>
+ * Quick sort here is an introsort: the pivot is a median of three or, for longer sub-sequences, Tukey's ninther, and a
+ * sub-sequence which has been partitioned more than {@link #getDepthLimit(long)} times is finished by heap sort, so the
+ * worst case is O(n log n) whatever the data is.
+ * <p/>
+ * Data with few distinct integers is partitioned into three parts instead of two: less than, equal to and greater than
+ * the pivot. The integers equal to the pivot are never touched again, so a sub-sequence of equal integers costs one
+ * linear pass. Three-way partitioning does more swaps on distinct data, so it is selected only if
+ * {@link #isLowCardinality(MyBufferAggregator, long, long)} says so.
+ * <p/>
+ * Two-way partitioning is either Hoare's scheme or its block variant by Edelkamp and Wei&szlig; (BlockQuicksort), see
+ * {@link #blockPartition(MyBufferAggregator, long, long)}. The latter trades a few extra moves for the branch
+ * mispredictions which dominate Hoare's loop on random data.
+ *
+ * @author Ruslan Sverchkov
+ */
+public final class SequentialSort {
+
+    /**
+     * Sub-sequences not longer than this are sorted by insertion sort.
+     */
+    public static final int INSERTION_SORT_THRESHOLD = 24;
+
+    /**
+     * Sub-sequences longer than this take Tukey's ninther as the pivot, shorter ones take a median of three.
+     */
+    public static final int NINTHER_THRESHOLD = 128;
+
+    /**
+     * Max number of integers sampled to estimate the number of distinct integers.
+     */
+    public static final int CARDINALITY_SAMPLE_SIZE = 4096;
+
+    /**
+     * Number of integers classified at a time by block partitioning.
+     */
+    public static final int BLOCK_SIZE = 128;
+
+    /**
+     * Sub-sequences not longer than this are partitioned by Hoare's scheme even if block partitioning is requested,
+     * a couple of partly filled blocks don't pay off.
+     */
+    public static final int BLOCK_PARTITION_THRESHOLD = 2 * BLOCK_SIZE;
+
+    private SequentialSort() {
+    }
+
+    /**
+     * The method is intended to sort the specified sub-sequence by introsort, tiny sub-sequences are finished by
+     * insertion sort.
+     *
+     * @param aggregator the aggregator to sort
+     * @param firstIndex first index of sub-sequence to sort
+     * @param lastIndex  last index of sub-sequence to sort
+     */
+    public static void sort(MyBufferAggregator aggregator, long firstIndex, long lastIndex) {
+        sort(aggregator, firstIndex, lastIndex, getDepthLimit(lastIndex - firstIndex + 1),
+                isLowCardinality(aggregator, firstIndex, lastIndex));
+    }
+
+    /**
+     * The method is intended to sort the specified sub-sequence by introsort, tiny sub-sequences are finished by
+     * insertion sort. Recursion goes into the smaller part only, so the stack depth is logarithmic.
+     *
+     * @param aggregator the aggregator to sort
+     * @param firstIndex first index of sub-sequence to sort
+     * @param lastIndex  last index of sub-sequence to sort
+     * @param depthLimit how many more times the sub-sequence may be partitioned before falling back to heap sort
+     * @param threeWay   whether or not to partition into three parts
+     */
+    public static void sort(MyBufferAggregator aggregator, long firstIndex, long lastIndex, int depthLimit,
+                            boolean threeWay) {
+        sort(aggregator, firstIndex, lastIndex, depthLimit, threeWay, false);
+    }
+
+    /**
+     * The method is intended to sort the specified sub-sequence by introsort, tiny sub-sequences are finished by
+     * insertion sort. Recursion goes into the smaller part only, so the stack depth is logarithmic.
+     *
+     * @param aggregator the aggregator to sort
+     * @param firstIndex first index of sub-sequence to sort
+     * @param lastIndex  last index of sub-sequence to sort
+     * @param depthLimit how many more times the sub-sequence may be partitioned before falling back to heap sort
+     * @param threeWay   whether or not to partition into three parts
+     * @param blocked    whether or not to partition into two parts by blocks rather than by Hoare's scheme, ignored
+     *                   if threeWay is set
+     */
+    public static void sort(MyBufferAggregator aggregator, long firstIndex, long lastIndex, int depthLimit,
+                            boolean threeWay, boolean blocked) {
+        long[] bounds = threeWay ? new long[2] : null;
+        while (lastIndex - firstIndex + 1 > INSERTION_SORT_THRESHOLD) {
+            if (depthLimit-- == 0) {
+                heapSort(aggregator, firstIndex, lastIndex);
+                return;
+            }
+            long leftLast;
+            long rightFirst;
+            if (threeWay) {
+                partitionThreeWay(aggregator, firstIndex, lastIndex, bounds);
+                leftLast = bounds[0] - 1;
+                rightFirst = bounds[1] + 1;
+            } else if (blocked && lastIndex - firstIndex >= BLOCK_PARTITION_THRESHOLD) {
+                leftLast = blockPartition(aggregator, firstIndex, lastIndex);
+                rightFirst = leftLast + 1;
+            } else {
+                leftLast = partition(aggregator, firstIndex, lastIndex);
+                rightFirst = leftLast + 1;
+            }
+            if (leftLast - firstIndex < lastIndex - rightFirst) {
+                sort(aggregator, firstIndex, leftLast, depthLimit, threeWay, blocked);
+                firstIndex = rightFirst;
+            } else {
+                sort(aggregator, rightFirst, lastIndex, depthLimit, threeWay, blocked);
+                lastIndex = leftLast;
+            }
+        }
+        insertionSort(aggregator, firstIndex, lastIndex);
+    }
+
+    /**
+     * The method is intended to estimate whether or not the specified sub-sequence has few distinct integers. Up to
+     * {@link #CARDINALITY_SAMPLE_SIZE} integers evenly spread over the sub-sequence are sampled, and the cardinality is
+     * considered low if more than a tenth of the sample are duplicates. Random 32-bit integers practically never
+     * collide in such a sample. A full sample is certain to pass the cutoff only if the sub-sequence has at most 3686
+     * distinct integers, which leaves more than a tenth of the 4096 sampled ones to repeat. Uniformly spread data
+     * passes it on average with up to about 19000 distinct integers, and the closer the cardinality gets to that, the
+     * more the result depends on the sample.
+     *
+     * @param aggregator the aggregator
+     * @param firstIndex first index of sub-sequence
+     * @param lastIndex  last index of sub-sequence
+     * @return whether or not three-way partitioning should be used for the sub-sequence
+     */
+    public static boolean isLowCardinality(MyBufferAggregator aggregator, long firstIndex, long lastIndex) {
+        long length = lastIndex - firstIndex + 1;
+        if (length <= INSERTION_SORT_THRESHOLD) {
+            return false;
+        }
+        int[] sample = new int[(int) Math.min(length, CARDINALITY_SAMPLE_SIZE)];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = aggregator.getInt(firstIndex + length * i / sample.length);
+        }
+        Arrays.sort(sample);
+        int duplicates = 0;
+        for (int i = 1; i < sample.length; i++) {
+            if (sample[i] == sample[i - 1]) {
+                duplicates++;
+            }
+        }
+        return duplicates * 10 > sample.length;
+    }
+
+    /**
+     * The method is intended to partition the specified sub-sequence into three parts by Dijkstra's Dutch national flag
+     * scheme: integers less than the pivot, equal to it and greater than it. The pivot is chosen by
+     * {@link #selectPivot(MyBufferAggregator, long, long)}.
+     *
+     * @param aggregator the aggregator to partition
+     * @param firstIndex first index of sub-sequence to partition
+     * @param lastIndex  last index of sub-sequence to partition, must not be less than firstIndex
+     * @param bounds     an array to put the first and the last indexes of the middle part to, the middle part is never
+     *                   empty
+     */
+    public static void partitionThreeWay(MyBufferAggregator aggregator, long firstIndex, long lastIndex,
+                                         long[] bounds) {
+        int pivot = aggregator.getInt(selectPivot(aggregator, firstIndex, lastIndex));
+        long lt = firstIndex;
+        long gt = lastIndex;
+        long i = firstIndex;
+        while (i <= gt) {
+            int value = aggregator.getInt(i);
+            if (value < pivot) {
+                swap(aggregator, lt++, i++);
+            } else if (value > pivot) {
+                swap(aggregator, i, gt--);
+            } else {
+                i++;
+            }
+        }
+        bounds[0] = lt;
+        bounds[1] = gt;
+    }
+
+    /**
+     * The method is intended to calculate how many times a sub-sequence of the specified length may be partitioned
+     * before introsort falls back to heap sort, which is twice the binary logarithm of the length.
+     *
+     * @param length a sub-sequence length
+     * @return the depth limit, non-negative
+     */
+    public static int getDepthLimit(long length) {
+        return length <= 1 ? 0 : 2 * (Long.SIZE - 1 - Long.numberOfLeadingZeros(length));
+    }
+
+    /**
+     * The method is intended to partition the specified sub-sequence by Hoare's scheme. The pivot is chosen by
+     * {@link #selectPivot(MyBufferAggregator, long, long)} and moved to the first index.
+     *
+     * @param aggregator the aggregator to partition
+     * @param firstIndex first index of sub-sequence to partition
+     * @param lastIndex  last index of sub-sequence to partition, must be greater than firstIndex
+     * @return the last index of the left part, always less than lastIndex; integers up to it are not greater than
+     *         integers after it
+     */
+    public static long partition(MyBufferAggregator aggregator, long firstIndex, long lastIndex) {
+        swap(aggregator, firstIndex, selectPivot(aggregator, firstIndex, lastIndex));
+        int pivot = aggregator.getInt(firstIndex);
+        long i = firstIndex - 1;
+        long j = lastIndex + 1;
+        while (true) {
+            do {
+                i++;
+            } while (aggregator.getInt(i) < pivot);
+            do {
+                j--;
+            } while (aggregator.getInt(j) > pivot);
+            if (i >= j) {
+                return j;
+            }
+            swap(aggregator, i, j);
+        }
+    }
+
+    /**
+     * The method is intended to partition the specified sub-sequence by blocks, as BlockQuicksort does. The pivot is
+     * chosen by {@link #selectPivot(MyBufferAggregator, long, long)}. Then a block of {@link #BLOCK_SIZE} integers is
+     * read into an array from each end of the sub-sequence, and the offsets of the integers which belong to the other
+     * side are stored without branching on the comparison. The stored integers are swapped pairwise within the arrays,
+     * and a block is written back and replaced once all of its stored integers have been swapped.
+     * Unlike BlockQuicksort the pivot is not moved aside to be put between the parts in the end: that displaces an
+     * integer of a sorted or reversed sub-sequence, and the displaced integers make medians of three poor pivots at
+     * the next levels.
+     *
+     * @param aggregator the aggregator to partition
+     * @param firstIndex first index of sub-sequence to partition
+     * @param lastIndex  last index of sub-sequence to partition, must be greater than firstIndex
+     * @return the last index of the left part, always less than lastIndex; integers up to it are not greater than
+     *         integers after it
+     */
+    public static long blockPartition(MyBufferAggregator aggregator, long firstIndex, long lastIndex) {
+        int pivot = aggregator.getInt(selectPivot(aggregator, firstIndex, lastIndex));
+        int[] leftValues = new int[BLOCK_SIZE];
+        int[] rightValues = new int[BLOCK_SIZE];
+        int[] leftOffsets = new int[BLOCK_SIZE];
+        int[] rightOffsets = new int[BLOCK_SIZE];
+        long begin = firstIndex;
+        long last = lastIndex;
+        int leftNumber = 0;
+        int rightNumber = 0;
+        int leftStart = 0;
+        int rightStart = 0;
+        while (last - begin + 1 > 2 * BLOCK_SIZE) {
+            if (leftNumber == 0) {
+                leftStart = 0;
+                aggregator.getInts(begin, leftValues, 0, BLOCK_SIZE);
+                leftNumber = classifyLeft(leftValues, BLOCK_SIZE, pivot, leftOffsets);
+            }
+            if (rightNumber == 0) {
+                rightStart = 0;
+                aggregator.getInts(last - BLOCK_SIZE + 1, rightValues, 0, BLOCK_SIZE);
+                rightNumber = classifyRight(rightValues, BLOCK_SIZE, pivot, rightOffsets);
+            }
+            int number = Math.min(leftNumber, rightNumber);
+            swapOffsets(leftValues, leftOffsets, leftStart, rightValues, BLOCK_SIZE, rightOffsets, rightStart, number);
+            leftNumber -= number;
+            rightNumber -= number;
+            leftStart += number;
+            rightStart += number;
+            if (leftNumber == 0) {
+                aggregator.putInts(begin, leftValues, 0, BLOCK_SIZE);
+                begin += BLOCK_SIZE;
+            }
+            if (rightNumber == 0) {
+                aggregator.putInts(last - BLOCK_SIZE + 1, rightValues, 0, BLOCK_SIZE);
+                last -= BLOCK_SIZE;
+            }
+        }
+        // at most two blocks are left, one of which may be partly processed already
+        int remaining = (int) (last - begin + 1);
+        int leftShift;
+        int rightShift;
+        if (leftNumber == 0 && rightNumber == 0) {
+            leftShift = remaining / 2;
+            rightShift = remaining - leftShift;
+        } else if (rightNumber != 0) {
+            leftShift = remaining - BLOCK_SIZE;
+            rightShift = BLOCK_SIZE;
+        } else {
+            leftShift = BLOCK_SIZE;
+            rightShift = remaining - BLOCK_SIZE;
+        }
+        if (leftNumber == 0) {
+            leftStart = 0;
+            aggregator.getInts(begin, leftValues, 0, leftShift);
+            leftNumber = classifyLeft(leftValues, leftShift, pivot, leftOffsets);
+        }
+        if (rightNumber == 0) {
+            rightStart = 0;
+            aggregator.getInts(last - rightShift + 1, rightValues, 0, rightShift);
+            rightNumber = classifyRight(rightValues, rightShift, pivot, rightOffsets);
+        }
+        int number = Math.min(leftNumber, rightNumber);
+        swapOffsets(leftValues, leftOffsets, leftStart, rightValues, rightShift, rightOffsets, rightStart, number);
+        aggregator.putInts(begin, leftValues, 0, leftShift);
+        aggregator.putInts(last - rightShift + 1, rightValues, 0, rightShift);
+        leftNumber -= number;
+        rightNumber -= number;
+        leftStart += number;
+        rightStart += number;
+        if (leftNumber == 0) {
+            begin += leftShift;
+        }
+        if (rightNumber == 0) {
+            last -= rightShift;
+        }
+        // the integers left in one of the blocks are moved to the inner end of the block
+        long rightFirst;
+        if (leftNumber != 0) {
+            int k = leftStart + leftNumber - 1;
+            long upper = last - begin;
+            while (k >= leftStart && leftOffsets[k] == upper) {
+                upper--;
+                k--;
+            }
+            while (k >= leftStart) {
+                swap(aggregator, begin + upper--, begin + leftOffsets[k--]);
+            }
+            rightFirst = begin + upper + 1;
+        } else if (rightNumber != 0) {
+            int k = rightStart + rightNumber - 1;
+            long upper = last - begin;
+            while (k >= rightStart && rightOffsets[k] == upper) {
+                upper--;
+                k--;
+            }
+            while (k >= rightStart) {
+                swap(aggregator, last - upper--, last - rightOffsets[k--]);
+            }
+            rightFirst = last - upper;
+        } else {
+            rightFirst = begin;
+        }
+        if (rightFirst == firstIndex || rightFirst > lastIndex) {
+            // the integers equal to the pivot have all gone to one side, which happens with lots of duplicates only
+            return partition(aggregator, firstIndex, lastIndex);
+        }
+        return rightFirst - 1;
+    }
+
+    /**
+     * The method is intended to store the offsets of the integers of a left block which are not less than the pivot.
+     *
+     * @param values  the integers of the block
+     * @param length  number of integers in the block
+     * @param pivot   the pivot
+     * @param offsets an array to store the offsets from the beginning of the block to
+     * @return number of the offsets stored
+     */
+    private static int classifyLeft(int[] values, int length, int pivot, int[] offsets) {
+        int number = 0;
+        for (int j = 0; j < length; j++) {
+            offsets[number] = j;
+            number += values[j] >= pivot ? 1 : 0;
+        }
+        return number;
+    }
+
+    /**
+     * The method is intended to store the offsets of the integers of a right block which are not greater than the
+     * pivot. The block is scanned from its end.
+     *
+     * @param values  the integers of the block
+     * @param length  number of integers in the block
+     * @param pivot   the pivot
+     * @param offsets an array to store the offsets from the end of the block to
+     * @return number of the offsets stored
+     */
+    private static int classifyRight(int[] values, int length, int pivot, int[] offsets) {
+        int number = 0;
+        for (int j = 0; j < length; j++) {
+            offsets[number] = j;
+            number += values[length - 1 - j] <= pivot ? 1 : 0;
+        }
+        return number;
+    }
+
+    /**
+     * The method is intended to swap the classified integers of a left block with the ones of a right block pairwise.
+     *
+     * @param leftValues   the integers of the left block
+     * @param leftOffsets  the offsets from the beginning of the left block
+     * @param leftStart    an index of the first offset to use in leftOffsets
+     * @param rightValues  the integers of the right block
+     * @param rightLength  number of integers in the right block
+     * @param rightOffsets the offsets from the end of the right block
+     * @param rightStart   an index of the first offset to use in rightOffsets
+     * @param number       number of pairs to swap
+     */
+    private static void swapOffsets(int[] leftValues, int[] leftOffsets, int leftStart, int[] rightValues,
+                                    int rightLength, int[] rightOffsets, int rightStart, int number) {
+        for (int j = 0; j < number; j++) {
+            int left = leftOffsets[leftStart + j];
+            int right = rightLength - 1 - rightOffsets[rightStart + j];
+            int temp = leftValues[left];
+            leftValues[left] = rightValues[right];
+            rightValues[right] = temp;
+        }
+    }
+
+    /**
+     * The method is intended to choose a pivot for the specified sub-sequence: a median of the first, the middle and
+     * the last integers, or Tukey's ninther (a median of three such medians spread over the sub-sequence) if the
+     * sub-sequence is longer than {@link #NINTHER_THRESHOLD}.
+     *
+     * @param aggregator the aggregator
+     * @param firstIndex first index of sub-sequence
+     * @param lastIndex  last index of sub-sequence, must not be less than firstIndex
+     * @return an index of the pivot, between firstIndex and lastIndex
+     */
+    public static long selectPivot(MyBufferAggregator aggregator, long firstIndex, long lastIndex) {
+        long length = lastIndex - firstIndex + 1;
+        long middle = firstIndex + length / 2;
+        if (length <= NINTHER_THRESHOLD) {
+            return medianOfThree(aggregator, firstIndex, middle, lastIndex);
+        }
+        long step = length / 8;
+        long first = medianOfThree(aggregator, firstIndex, firstIndex + step, firstIndex + 2 * step);
+        long second = medianOfThree(aggregator, middle - step, middle, middle + step);
+        long third = medianOfThree(aggregator, lastIndex - 2 * step, lastIndex - step, lastIndex);
+        return medianOfThree(aggregator, first, second, third);
+    }
+
+    /**
+     * The method is intended to find a median of three integers of the aggregator.
+     *
+     * @param aggregator the aggregator
+     * @param a          an index of the first integer
+     * @param b          an index of the second integer
+     * @param c          an index of the third integer
+     * @return an index of the median
+     */
+    public static long medianOfThree(MyBufferAggregator aggregator, long a, long b, long c) {
+        int x = aggregator.getInt(a);
+        int y = aggregator.getInt(b);
+        int z = aggregator.getInt(c);
+        if (x < y) {
+            return y < z ? b : x < z ? c : a;
+        }
+        return x < z ? a : y < z ? c : b;
+    }
+
+    /**
+     * The method is intended to sort the specified sub-sequence by heap sort. It is never quadratic, but it is slower
+     * than quick sort on average, so it is only a fallback.
+     *
+     * @param aggregator the aggregator to sort
+     * @param firstIndex first index of sub-sequence to sort
+     * @param lastIndex  last index of sub-sequence to sort
+     */
+    public static void heapSort(MyBufferAggregator aggregator, long firstIndex, long lastIndex) {
+        long length = lastIndex - firstIndex + 1;
+        for (long i = length / 2 - 1; i >= 0; i--) {
+            siftDown(aggregator, firstIndex, i, length);
+        }
+        for (long size = length - 1; size > 0; size--) {
+            swap(aggregator, firstIndex, firstIndex + size);
+            siftDown(aggregator, firstIndex, 0, size);
+        }
+    }
+
+    /**
+     * The method is intended to restore the max-heap property for the subtree rooted at the specified node.
+     *
+     * @param aggregator the aggregator holding the heap
+     * @param offset     an index of the heap root in the aggregator
+     * @param node       a node of the subtree root relative to the offset
+     * @param size       the heap size
+     */
+    private static void siftDown(MyBufferAggregator aggregator, long offset, long node, long size) {
+        int value = aggregator.getInt(offset + node);
+        long child;
+        while ((child = 2 * node + 1) < size) {
+            int childValue = aggregator.getInt(offset + child);
+            if (child + 1 < size) {
+                int rightValue = aggregator.getInt(offset + child + 1);
+                if (rightValue > childValue) {
+                    child++;
+                    childValue = rightValue;
+                }
+            }
+            if (childValue <= value) {
+                break;
+            }
+            aggregator.setInt(offset + node, childValue);
+            node = child;
+        }
+        aggregator.setInt(offset + node, value);
+    }
+
+    /**
+     * The method is intended to sort the specified sub-sequence by insertion sort.
+     *
+     * @param aggregator the aggregator to sort
+     * @param firstIndex first index of sub-sequence to sort
+     * @param lastIndex  last index of sub-sequence to sort
+     */
+    public static void insertionSort(MyBufferAggregator aggregator, long firstIndex, long lastIndex) {
+        for (long i = firstIndex + 1; i <= lastIndex; i++) {
+            int value = aggregator.getInt(i);
+            long j = i - 1;
+            while (j >= firstIndex && aggregator.getInt(j) > value) {
+                aggregator.setInt(j + 1, aggregator.getInt(j));
+                j--;
+            }
+            aggregator.setInt(j + 1, value);
+        }
+    }
+
+    /**
+     * The method is intended to swap two integers of the aggregator.
+     *
+     * @param aggregator the aggregator
+     * @param i          an index of the first integer
+     * @param j          an index of the second integer
+     */
+    public static void swap(MyBufferAggregator aggregator, long i, long j) {
+        int temp = aggregator.getInt(i);
+        aggregator.setInt(i, aggregator.getInt(j));
+        aggregator.setInt(j, temp);
+    }
+
+}
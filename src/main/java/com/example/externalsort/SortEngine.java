@@ -0,0 +1,133 @@
+package com.example.externalsort;
+
+import com.example.externalsort.aggregator.MyBufferAggregator;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The enumeration is intended to list the algorithms an aggregator can be sorted with. Some of them distribute the
+ * integers to a scratch aggregator of the same length, the caller is responsible for providing it.
+ * <p/>
+ * Every engine also has a variant sorting an int array, which a file read into the heap is sorted with. Both quick
+ * sorts share {@link ArraySortTask}: there is no block partitioning for an array, as the primitive sort of the JDK
+ * does the work below the top levels anyway.
+ *
+ * @author Ruslan Sverchkov
+ */
+public enum SortEngine {
+
+    /**
+     * In-place parallel quick sort, see {@link MySortTask}.
+     */
+    QUICKSORT(false) {
+        @Override
+        public RecursiveAction getTask(MyBufferAggregator aggregator, MyBufferAggregator scratch) {
+            return new MySortTask(aggregator, 0, aggregator.getLength() - 1);
+        }
+
+        @Override
+        public RecursiveAction getTask(int[] array, int[] scratch) {
+            return new ArraySortTask(array, false);
+        }
+    },
+
+    /**
+     * In-place parallel quick sort partitioning by blocks like BlockQuicksort, see
+     * {@link SequentialSort#blockPartition(MyBufferAggregator, long, long)}.
+     */
+    BLOCK_QUICKSORT(false) {
+        @Override
+        public RecursiveAction getTask(MyBufferAggregator aggregator, MyBufferAggregator scratch) {
+            return new MySortTask(aggregator, 0, aggregator.getLength() - 1, MySortTask.DEFAULT_THRESHOLD, true);
+        }
+
+        @Override
+        public RecursiveAction getTask(int[] array, int[] scratch) {
+            return new ArraySortTask(array, false);
+        }
+    },
+
+    /**
+     * Parallel LSD radix sort, see {@link RadixSortTask}.
+     */
+    RADIX(true) {
+        @Override
+        public RecursiveAction getTask(MyBufferAggregator aggregator, MyBufferAggregator scratch) {
+            return new RadixSortTask(aggregator, scratch);
+        }
+
+        @Override
+        public RecursiveAction getTask(int[] array, int[] scratch) {
+            return new ArrayRadixSortTask(array, scratch);
+        }
+    },
+
+    /**
+     * Parallel sample sort, see {@link SampleSortTask}.
+     */
+    SAMPLESORT(true) {
+        @Override
+        public RecursiveAction getTask(MyBufferAggregator aggregator, MyBufferAggregator scratch) {
+            return new SampleSortTask(aggregator, scratch);
+        }
+
+        @Override
+        public RecursiveAction getTask(int[] array, int[] scratch) {
+            return new ArraySampleSortTask(array, scratch);
+        }
+    },
+
+    /**
+     * Natural merge sort for presorted data falling back to quick sort, see {@link RunAdaptiveSortTask}.
+     */
+    ADAPTIVE(true) {
+        @Override
+        public RecursiveAction getTask(MyBufferAggregator aggregator, MyBufferAggregator scratch) {
+            return new RunAdaptiveSortTask(aggregator, scratch,
+                    new MySortTask(aggregator, 0, aggregator.getLength() - 1));
+        }
+
+        @Override
+        public RecursiveAction getTask(int[] array, int[] scratch) {
+            return new ArraySortTask(array, true);
+        }
+    };
+
+    private final boolean scratchRequired;
+
+    SortEngine(boolean scratchRequired) {
+        this.scratchRequired = scratchRequired;
+    }
+
+    /**
+     * Tells whether or not the engine needs a scratch aggregator.
+     *
+     * @return whether or not the engine needs a scratch aggregator
+     */
+    public boolean isScratchRequired() {
+        return scratchRequired;
+    }
+
+    /**
+     * The method is intended to construct a task sorting the specified aggregator.
+     *
+     * @param aggregator the aggregator to sort
+     * @param scratch    an aggregator at least as long as the one to sort, its content is overwritten, may be null if
+     *                   the engine does not need it
+     * @return a task sorting the aggregator, never returns null
+     * @throws IllegalArgumentException if the aggregator or scratch does not suit the engine
+     */
+    public abstract RecursiveAction getTask(MyBufferAggregator aggregator, MyBufferAggregator scratch);
+
+    /**
+     * The method is intended to construct a task sorting the specified int array.
+     *
+     * @param array   the array to sort
+     * @param scratch an array at least as long as the one to sort, its content is overwritten, may be null if the
+     *                engine does not need it
+     * @return a task sorting the array, never returns null
+     * @throws IllegalArgumentException if the array or scratch does not suit the engine
+     */
+    public abstract RecursiveAction getTask(int[] array, int[] scratch);
+
+}
@@ -0,0 +1,106 @@
+package com.example.externalsort;
+
+import com.example.externalsort.external.MergePlan;
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The class is intended to hold the statistics of a completed sort.
+ *
+ * @author Ruslan Sverchkov
+ */
+@Immutable
+public class SortResult {
+
+    private final long integersNumber;
+    private final boolean outOfCore;
+    private final boolean onHeap;
+    private final MergePlan mergePlan;
+    private final long milliseconds;
+
+    /**
+     * Constructs a SortResult instance.
+     *
+     * @param integersNumber number of the integers sorted
+     * @param outOfCore      whether or not the integers have been sorted out of core
+     * @param mergePlan      the plan the sorted runs have been merged by, null if no runs have been spilled
+     * @param milliseconds   time the sort has taken
+     * @throws IllegalArgumentException if:
+     *                                  * integersNumber is negative
+     *                                  * mergePlan is not null while outOfCore is false
+     *                                  * milliseconds is negative
+     */
+    public SortResult(long integersNumber, boolean outOfCore, MergePlan mergePlan, long milliseconds) {
+        this(integersNumber, outOfCore, false, mergePlan, milliseconds);
+    }
+
+    /**
+     * Constructs a SortResult instance.
+     *
+     * @param integersNumber number of the integers sorted
+     * @param outOfCore      whether or not the integers have been sorted out of core
+     * @param onHeap         whether or not the integers have been sorted in an int array rather than in mapped buffers
+     * @param mergePlan      the plan the sorted runs have been merged by, null if no runs have been spilled
+     * @param milliseconds   time the sort has taken
+     * @throws IllegalArgumentException if:
+     *                                  * integersNumber is negative
+     *                                  * both outOfCore and onHeap are true
+     *                                  * mergePlan is not null while outOfCore is false
+     *                                  * milliseconds is negative
+     */
+    public SortResult(long integersNumber, boolean outOfCore, boolean onHeap, MergePlan mergePlan,
+                      long milliseconds) {
+        Validate.isTrue(integersNumber >= 0);
+        Validate.isTrue(!outOfCore || !onHeap);
+        Validate.isTrue(outOfCore || mergePlan == null);
+        Validate.isTrue(milliseconds >= 0);
+        this.integersNumber = integersNumber;
+        this.outOfCore = outOfCore;
+        this.onHeap = onHeap;
+        this.mergePlan = mergePlan;
+        this.milliseconds = milliseconds;
+    }
+
+    public long getIntegersNumber() {
+        return integersNumber;
+    }
+
+    public boolean isOutOfCore() {
+        return outOfCore;
+    }
+
+    public boolean isOnHeap() {
+        return onHeap;
+    }
+
+    /**
+     * Returns the plan the sorted runs have been merged by.
+     *
+     * @return the merge plan, null if no runs have been spilled
+     */
+    public MergePlan getMergePlan() {
+        return mergePlan;
+    }
+
+    /**
+     * Returns the number of runs spilled to disk.
+     *
+     * @return number of runs, 0 if no runs have been spilled
+     */
+    public int getRunsNumber() {
+        return mergePlan == null ? 0 : mergePlan.getRunsNumber();
+    }
+
+    public long getMilliseconds() {
+        return milliseconds;
+    }
+
+    @Override
+    public String toString() {
+        String result = String.format("Sorted %,d integers %s in %,d milliseconds", integersNumber,
+                outOfCore ? "out of core" : onHeap ? "on heap" : "in memory", milliseconds);
+        return mergePlan == null ? result : result + "\n" + mergePlan;
+    }
+
+}
@@ -3,12 +3,25 @@ package com.example.externalsort;
 import org.apache.commons.lang.Validate;
 
 import javax.annotation.concurrent.ThreadSafe;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * The class is intended to execute a {@link RecursiveAction} instance synchronously.
- * This functionality must be already implemented somewhere, but unfortunately I haven't been able to find it.
+ * The calling thread blocks until the action's compute method has returned, it does not spin, so it does not compete
+ * with the pool's workers. One executor may run any number of actions, one after another or concurrently, so a pool
+ * can be reused across many sorts.
+ * <p/>
+ * Cancellation is cooperative: {@link RecursiveAction#cancel(boolean)} marks the action cancelled, and the tasks of
+ * this package check whether their root action has been cancelled and stop splitting and sorting as soon as it has.
+ * The executor waits until they stop before it reports the cancellation, so no worker touches the data afterwards.
  *
  * @author Ruslan Sverchkov
  */
@@ -16,6 +29,8 @@ import java.util.concurrent.RecursiveAction;
 public class SynchronousExecutor {
 
     private final ForkJoinPool pool;
+    private final Set<RecursiveAction> inFlight =
+            Collections.newSetFromMap(new ConcurrentHashMap<RecursiveAction, Boolean>());
 
     /**
      * Constructs a SynchronousExecutor instance.
@@ -28,23 +43,139 @@ public class SynchronousExecutor {
         this.pool = pool;
     }
 
+    /**
+     * The pool getter.
+     *
+     * @return the pool the actions are executed in, never returns null
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
     /**
      * The method is intended to execute a {@link RecursiveAction} instance synchronously.
      *
      * @param action an action to execute
      * @throws IllegalArgumentException if action is null
+     * @throws CancellationException    if the action has been cancelled
+     * @throws InterruptedException     if the calling thread has been interrupted, the action is cancelled then
      * @throws Throwable                if any error occurred in the action itself
      *                                  (rethrown {@link RecursiveAction#getException()})
      */
     public void execute(RecursiveAction action) throws Throwable {
         Validate.notNull(action);
-        pool.execute(action);
-        while (!action.isDone()) {
-            Thread.yield();
+        CountDownLatch computed = submit(action);
+        try {
+            computed.await();
+        } catch (InterruptedException e) {
+            cancel(action, computed);
+            throw e;
+        } finally {
+            inFlight.remove(action);
+        }
+        rethrow(action);
+    }
+
+    /**
+     * The method is intended to execute a {@link RecursiveAction} instance synchronously, the action is cancelled if it
+     * does not complete in time.
+     *
+     * @param action  an action to execute
+     * @param timeout max time to wait for the action to complete
+     * @param unit    the timeout unit
+     * @throws IllegalArgumentException if:
+     *                                  * action is null
+     *                                  * timeout is negative
+     *                                  * unit is null
+     * @throws TimeoutException         if the action has not completed in time, it is cancelled then
+     * @throws CancellationException    if the action has been cancelled
+     * @throws InterruptedException     if the calling thread has been interrupted, the action is cancelled then
+     * @throws Throwable                if any error occurred in the action itself
+     *                                  (rethrown {@link RecursiveAction#getException()})
+     */
+    public void execute(RecursiveAction action, long timeout, TimeUnit unit) throws Throwable {
+        Validate.notNull(action);
+        Validate.isTrue(timeout >= 0);
+        Validate.notNull(unit);
+        CountDownLatch computed = submit(action);
+        try {
+            if (!computed.await(timeout, unit)) {
+                cancel(action, computed);
+                throw new TimeoutException("The action has not completed in " + timeout + " " + unit);
+            }
+        } catch (InterruptedException e) {
+            cancel(action, computed);
+            throw e;
+        } finally {
+            inFlight.remove(action);
+        }
+        rethrow(action);
+    }
+
+    /**
+     * The method is intended to cancel all the actions this executor is executing at the moment. The threads waiting
+     * for them get {@link CancellationException} as soon as the actions' tasks stop.
+     */
+    public void cancelAll() {
+        for (RecursiveAction action : inFlight) {
+            action.cancel(true);
+        }
+    }
+
+    /**
+     * The method is intended to start the action in the pool.
+     *
+     * @param action an action to start
+     * @return a latch released when the action's compute method has returned, never returns null
+     */
+    private CountDownLatch submit(final RecursiveAction action) {
+        final CountDownLatch computed = new CountDownLatch(1);
+        inFlight.add(action);
+        pool.execute(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                try {
+                    action.invoke();
+                } finally {
+                    computed.countDown();
+                }
+            }
+        });
+        return computed;
+    }
+
+    /**
+     * The method is intended to cancel the action and to wait until its tasks stop.
+     *
+     * @param action   an action to cancel
+     * @param computed a latch released when the action's compute method has returned
+     */
+    private void cancel(RecursiveAction action, CountDownLatch computed) {
+        action.cancel(true);
+        boolean interrupted = false;
+        while (true) {
+            try {
+                computed.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
         }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The method is intended to rethrow an exception the completed action has thrown, if any.
+     *
+     * @param action a completed action
+     * @throws Throwable the exception the action has thrown
+     */
+    private void rethrow(RecursiveAction action) throws Throwable {
         if (action.getException() != null) {
             throw action.getException();
         }
     }
 
-}
\ No newline at end of file
+}
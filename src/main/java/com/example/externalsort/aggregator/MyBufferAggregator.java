@@ -5,6 +5,8 @@ import org.apache.commons.lang.Validate;
 
 import javax.annotation.concurrent.ThreadSafe;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.nio.MappedByteBuffer;
 import java.util.List;
 
@@ -21,10 +23,22 @@ import java.util.List;
  * operates on from the outside. So, please make sure the buffers you specify as a constructor argument are not used
  * anywhere else, otherwise the behavior of the class is unpredictable.
  * <p/>
- * The buffers are served in the order they are located in the list, for example if there are two 8-bytes buffers in the
- * list, the length of the MyBufferAggregator instance will be 4 (it contains 4 integers). If client tries to access data
- * with index 1, he gets the last four bytes of the first buffer; If client tries to access data with index 2, he gets
- * the first four bytes of the second buffer.
+ * The buffers are served in the order they are located in the list, for example if there are two 8-bytes buffers in
+ * the list, the length of the MyBufferAggregator instance will be 4 (it contains 4 integers). If client tries to access
+ * data with index 1, he gets the last four bytes of the first buffer; If client tries to access data with index 2, he
+ * gets the first four bytes of the second buffer.
+ * <p/>
+ * Every buffer but the last one is a segment of the same power-of-two number of integers, so the location of an
+ * integer is resolved with a shift and a mask instead of a search through the buffers. The last buffer may be shorter
+ * than a segment.
+ * <p/>
+ * The integers are read and written in the byte order of the buffers, which must be the same for all of them. In the
+ * native order a buffer accesses an integer as a whole, in the other order it also swaps the bytes of every integer,
+ * so the data produced on the same platform is faster to sort in the native order.
+ * <p/>
+ * Besides single integers, ranges may be read and written in bulk. A bulk operation resolves the segment once per
+ * segment the range crosses and copies through an {@link IntBuffer} view of it, which moves memory in blocks instead of
+ * locating every integer.
  *
  * @author Ruslan Sverchkov
  */
@@ -33,9 +47,18 @@ public class MyBufferAggregator<T extends ByteBuffer> {
 
     public static final int INT_SIZE_IN_BYTES = Integer.SIZE / Byte.SIZE;
 
-    private final List<T> buffers; // todo replace this with an array for performance's sake
+    private static final int INT_SIZE_SHIFT = Integer.numberOfTrailingZeros(INT_SIZE_IN_BYTES);
+    private static final int MAX_SEGMENT_SHIFT = Integer.SIZE - 1;
+    private static final int STAGING_LENGTH = 1024;
+
+    private final List<T> buffers;
+    private final ByteBuffer[] segments;
+    private final IntBuffer[] views;
+    private final int segmentShift;
+    private final long segmentMask;
     private final long length;
     private final boolean readOnly;
+    private final ByteOrder byteOrder;
 
     /**
      * Constructs a MyBufferAggregator instance.
@@ -46,14 +69,22 @@ public class MyBufferAggregator<T extends ByteBuffer> {
      *                                  * buffers list contains null elements
      *                                  * one of the buffers position is not 0
      *                                  * one of the buffers limit is not a multiple of {@code Integer.SIZE / Byte.SIZE}
+     *                                  * there are several buffers and the number of integers in the first one is not
+     *                                  a power of two
+     *                                  * one of the buffers but the last one holds a different number of integers
+     *                                  than the first one
+     *                                  * the last buffer holds more integers than the first one
+     *                                  * the buffers have different byte orders
      */
     public MyBufferAggregator(List<? extends T> buffers) {
         Validate.noNullElements(buffers);
         Validate.notEmpty(buffers);
         long tempLength = 0;
         boolean tempReadOnly = false;
+        ByteOrder tempByteOrder = buffers.get(0).order();
         for (ByteBuffer buffer : buffers) {
             Validate.isTrue(buffer.position() == 0);
+            Validate.isTrue(buffer.order() == tempByteOrder, "byte orders of the buffers differ");
             Validate.isTrue(buffer.limit() % INT_SIZE_IN_BYTES == 0);
             tempLength += buffer.limit() / INT_SIZE_IN_BYTES;
             if (buffer.isReadOnly()) {
@@ -61,8 +92,16 @@ public class MyBufferAggregator<T extends ByteBuffer> {
             }
         }
         this.buffers = ImmutableList.copyOf(buffers);
+        this.segments = this.buffers.toArray(new ByteBuffer[this.buffers.size()]);
+        this.views = new IntBuffer[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            views[i] = segments[i].asIntBuffer();
+        }
+        this.segmentShift = getSegmentShift(segments);
+        this.segmentMask = (1L << segmentShift) - 1;
         length = tempLength;
         readOnly = tempReadOnly;
+        byteOrder = tempByteOrder;
     }
 
     /**
@@ -75,6 +114,15 @@ public class MyBufferAggregator<T extends ByteBuffer> {
         return readOnly;
     }
 
+    /**
+     * The byte order getter.
+     *
+     * @return the byte order of the buffers, never returns null
+     */
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
     /**
      * The aggregator's length getter.
      *
@@ -89,16 +137,11 @@ public class MyBufferAggregator<T extends ByteBuffer> {
      *
      * @param index an index of integer to return
      * @return an integer specified by the index
-     * @throws IndexOutOfBoundsException if the specified index is not less than the aggregator length
-     * @throws IllegalStateException     if the actual location of the data has not been found, that could happen either
-     *                                   if the source code itself is incorrect or if the underlying buffers has been
-     *                                   changed from the outside
+     * @throws IndexOutOfBoundsException if the specified index is negative or not less than the aggregator length
      */
     public int getInt(final long index) {
-        MyDataLocation location = getDataLocation(index);
-        ByteBuffer buffer = location.getBuffer();
-        int indexInBuffer = location.getIndex();
-        return buffer.getInt(indexInBuffer * INT_SIZE_IN_BYTES);
+        checkIndex(index);
+        return segments[(int) (index >>> segmentShift)].getInt((int) (index & segmentMask) << INT_SIZE_SHIFT);
     }
 
     /**
@@ -106,46 +149,134 @@ public class MyBufferAggregator<T extends ByteBuffer> {
      *
      * @param index an index of integer to return
      * @param value a value to set
-     * @throws IndexOutOfBoundsException if the specified index is not less than the aggregator length
-     * @throws IllegalStateException     if the actual location of the data has not been found, that could happen either
-     *                                   if the source code itself is incorrect or if the underlying buffers has been
-     *                                   changed from the outside
+     * @throws IndexOutOfBoundsException if the specified index is negative or not less than the aggregator length
      * @throws java.nio.ReadOnlyBufferException
      *                                   if this aggregator is read-only
      */
     public void setInt(long index, int value) {
-        MyDataLocation location = getDataLocation(index);
-        ByteBuffer buffer = location.getBuffer();
-        int indexInBuffer = location.getIndex();
-        buffer.putInt(indexInBuffer * INT_SIZE_IN_BYTES, value);
+        checkIndex(index);
+        segments[(int) (index >>> segmentShift)].putInt((int) (index & segmentMask) << INT_SIZE_SHIFT, value);
     }
 
     /**
-     * The method is intended to determine the actual location of the data requested by the specified index in the
-     * underlying byte buffers.
+     * The method is intended to read a range of integers into an array.
      *
-     * @param index index of the data requested
-     * @return the actual location of the data requested, never returns {@code null}
-     * @throws IndexOutOfBoundsException if the specified index is not less than the aggregator length
-     * @throws IllegalStateException     if the actual location of the data has not been found, that could happen either
-     *                                   if the source code itself is incorrect or if the underlying buffers has been
-     *                                   changed from the outside
+     * @param from        an index of the first integer to read
+     * @param destination an array to read the integers into
+     * @param offset      an index of the array to put the first integer at
+     * @param length      number of integers to read
+     * @throws IndexOutOfBoundsException if the range is out of this aggregator or of the array
      */
-    protected MyDataLocation getDataLocation(long index) {
-        if (index >= length) {
-            throw new IndexOutOfBoundsException("index is " + index + " and length is " + length);
+    public void getInts(long from, int[] destination, int offset, int length) {
+        checkRange(from, length);
+        checkArrayRange(destination, offset, length);
+        while (length > 0) {
+            IntBuffer view = getView(from);
+            int step = Math.min(length, view.remaining());
+            view.get(destination, offset, step);
+            from += step;
+            offset += step;
+            length -= step;
         }
-        long length = 0;
-        for (T buffer : buffers) {
-            long tempIndex = index - length;
-            int intsInBuffer = buffer.limit() / INT_SIZE_IN_BYTES;
-            if (tempIndex < intsInBuffer) {
-                int indexInBuffer = (int) (tempIndex);
-                return new MyDataLocation(buffer, indexInBuffer); // todo get rid of this for performance's sake
-            }
-            length += intsInBuffer;
+    }
+
+    /**
+     * The method is intended to write a range of integers from an array.
+     *
+     * @param to     an index to write the first integer at
+     * @param source an array to write the integers from
+     * @param offset an index of the first integer in the array
+     * @param length number of integers to write
+     * @throws IndexOutOfBoundsException if the range is out of this aggregator or of the array
+     * @throws java.nio.ReadOnlyBufferException
+     *                                   if this aggregator is read-only
+     */
+    public void putInts(long to, int[] source, int offset, int length) {
+        checkRange(to, length);
+        checkArrayRange(source, offset, length);
+        while (length > 0) {
+            IntBuffer view = getView(to);
+            int step = Math.min(length, view.remaining());
+            view.put(source, offset, step);
+            to += step;
+            offset += step;
+            length -= step;
+        }
+    }
+
+    /**
+     * The method is intended to copy a range of integers within this aggregator. The ranges may overlap, the result
+     * is as if the range were copied to a temporary array first, like {@link System#arraycopy} does.
+     *
+     * @param from   an index of the first integer to copy
+     * @param to     an index to copy the first integer to
+     * @param length number of integers to copy
+     * @throws IndexOutOfBoundsException if either range is out of this aggregator
+     * @throws java.nio.ReadOnlyBufferException
+     *                                   if this aggregator is read-only
+     */
+    public void copyRange(long from, long to, long length) {
+        copyRange(from, this, to, length);
+    }
+
+    /**
+     * The method is intended to copy a range of integers to another aggregator, or within this one, see
+     * {@link #copyRange(long, long, long)}. The aggregators may have different byte orders.
+     *
+     * @param from   an index of the first integer to copy
+     * @param target an aggregator to copy to
+     * @param to     an index of the target to copy the first integer to
+     * @param length number of integers to copy
+     * @throws IllegalArgumentException  if target is null
+     * @throws IndexOutOfBoundsException if either range is out of its aggregator
+     * @throws java.nio.ReadOnlyBufferException
+     *                                   if the target is read-only
+     */
+    public void copyRange(long from, MyBufferAggregator<?> target, long to, long length) {
+        Validate.notNull(target);
+        checkRange(from, length);
+        target.checkRange(to, length);
+        int[] staging = new int[(int) Math.min(length, STAGING_LENGTH)];
+        // an overlapping range shifted to the right is copied from its end, so that no integer is overwritten unread
+        boolean backward = target == this && to > from && to < from + length;
+        for (long copied = 0; copied < length; ) {
+            int step = (int) Math.min(length - copied, staging.length);
+            long offset = backward ? length - copied - step : copied;
+            getInts(from + offset, staging, 0, step);
+            target.putInts(to + offset, staging, 0, step);
+            copied += step;
+        }
+    }
+
+    /**
+     * The method is intended to exchange two ranges of integers of this aggregator.
+     *
+     * @param first  an index of the first integer of one range
+     * @param second an index of the first integer of the other range
+     * @param length number of integers in every range
+     * @throws IllegalArgumentException  if the ranges overlap and are not the same range
+     * @throws IndexOutOfBoundsException if either range is out of this aggregator
+     * @throws java.nio.ReadOnlyBufferException
+     *                                   if this aggregator is read-only
+     */
+    public void swapRanges(long first, long second, long length) {
+        checkRange(first, length);
+        checkRange(second, length);
+        Validate.isTrue(first == second || first + length <= second || second + length <= first,
+                "ranges overlap");
+        if (first == second) {
+            return;
+        }
+        int[] firstStaging = new int[(int) Math.min(length, STAGING_LENGTH)];
+        int[] secondStaging = new int[firstStaging.length];
+        for (long swapped = 0; swapped < length; ) {
+            int step = (int) Math.min(length - swapped, firstStaging.length);
+            getInts(first + swapped, firstStaging, 0, step);
+            getInts(second + swapped, secondStaging, 0, step);
+            putInts(first + swapped, secondStaging, 0, step);
+            putInts(second + swapped, firstStaging, 0, step);
+            swapped += step;
         }
-        throw new IllegalStateException("index validation has been failed");
     }
 
     /**
@@ -158,4 +289,80 @@ public class MyBufferAggregator<T extends ByteBuffer> {
         return buffers;
     }
 
-}
\ No newline at end of file
+    /**
+     * The method is intended to check that the specified index addresses an integer of this aggregator.
+     *
+     * @param index an index to check
+     * @throws IndexOutOfBoundsException if the specified index is negative or not less than the aggregator length
+     */
+    private void checkIndex(long index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index is " + index + " and length is " + length);
+        }
+    }
+
+    /**
+     * The method is intended to check that the specified range addresses integers of this aggregator.
+     *
+     * @param index  an index of the first integer of the range
+     * @param length number of integers in the range
+     * @throws IndexOutOfBoundsException if the range is out of this aggregator
+     */
+    private void checkRange(long index, long length) {
+        if (index < 0 || length < 0 || index > this.length - length) {
+            throw new IndexOutOfBoundsException("range is [" + index + ", " + index + " + " + length
+                    + ") and length is " + this.length);
+        }
+    }
+
+    /**
+     * The method is intended to check that the specified range addresses elements of the array.
+     *
+     * @param array  an array
+     * @param offset an index of the first element of the range
+     * @param length number of elements in the range
+     * @throws IndexOutOfBoundsException if the range is out of the array
+     */
+    private static void checkArrayRange(int[] array, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > array.length - length) {
+            throw new IndexOutOfBoundsException("range is [" + offset + ", " + offset + " + " + length
+                    + ") and array length is " + array.length);
+        }
+    }
+
+    /**
+     * The method is intended to return a view of the segment holding the specified integer, positioned at it. The view
+     * is a duplicate, so concurrent bulk operations do not share positions.
+     *
+     * @param index an index of the integer
+     * @return a view positioned at the integer, never returns null
+     */
+    private IntBuffer getView(long index) {
+        IntBuffer view = views[(int) (index >>> segmentShift)].duplicate();
+        view.position((int) (index & segmentMask));
+        return view;
+    }
+
+    /**
+     * The method is intended to calculate the binary logarithm of the number of integers per segment.
+     * A single buffer is addressed as a segment of {@code 2^31} integers, which covers any buffer.
+     *
+     * @param segments the buffers to operate on
+     * @return the binary logarithm of the number of integers per segment
+     * @throws IllegalArgumentException if the buffers violate the segment layout described in the class comment
+     */
+    private static int getSegmentShift(ByteBuffer[] segments) {
+        if (segments.length == 1) {
+            return MAX_SEGMENT_SHIFT;
+        }
+        int intsInSegment = segments[0].limit() / INT_SIZE_IN_BYTES;
+        Validate.isTrue(Integer.bitCount(intsInSegment) == 1, "segment size must be a power of two: ", intsInSegment);
+        for (int i = 1; i < segments.length - 1; i++) {
+            Validate.isTrue(segments[i].limit() / INT_SIZE_IN_BYTES == intsInSegment, "segment sizes differ");
+        }
+        Validate.isTrue(segments[segments.length - 1].limit() / INT_SIZE_IN_BYTES <= intsInSegment,
+                "the last buffer is bigger than a segment");
+        return Integer.numberOfTrailingZeros(intsInSegment);
+    }
+
+}
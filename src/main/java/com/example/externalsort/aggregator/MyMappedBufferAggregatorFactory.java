@@ -6,6 +6,7 @@ import javax.annotation.concurrent.ThreadSafe;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
@@ -13,26 +14,81 @@ import java.util.List;
 
 /**
  * The class is intended to construct a {@link MyMappedBufferAggregator instance} using the specified file.
+ * A file which fits into one mapping is mapped by a single buffer, so every access goes straight to it. A bigger file
+ * is mapped by segments of the same power-of-two size, which lets the aggregator locate an integer with a shift and a
+ * mask.
+ * <p/>
+ * The buffers are set to the byte order of the file, big-endian unless another order is specified. A file written on
+ * the same platform is best sorted in {@link ByteOrder#nativeOrder()}, which saves swapping the bytes of every integer.
  *
  * @author Ruslan Sverchkov
  */
 @ThreadSafe
 public class MyMappedBufferAggregatorFactory {
 
+    /**
+     * The biggest number of bytes one mapped byte buffer can map which is a multiple of
+     * {@link MyBufferAggregator#INT_SIZE_IN_BYTES}.
+     */
+    public static final int MAX_BYTES_TO_MAP =
+            Integer.MAX_VALUE - Integer.MAX_VALUE % MyBufferAggregator.INT_SIZE_IN_BYTES;
+
     private final int maxBytesToMap;
+    private final int segmentSize;
+    private final ByteOrder byteOrder;
 
     /**
-     * Constructs a MyMappedBufferAggregatorFactory instance.
+     * Constructs a MyMappedBufferAggregatorFactory instance mapping big-endian files by up to
+     * {@link #MAX_BYTES_TO_MAP} bytes per mapped byte buffer.
+     */
+    public MyMappedBufferAggregatorFactory() {
+        this(MAX_BYTES_TO_MAP, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Constructs a MyMappedBufferAggregatorFactory instance mapping up to {@link #MAX_BYTES_TO_MAP} bytes by one
+     * mapped byte buffer.
      *
-     * @param maxBytesToMap max number of bytes mapped by one mapped byte buffer
+     * @param byteOrder a byte order of the files
+     * @throws IllegalArgumentException if byteOrder is null
+     */
+    public MyMappedBufferAggregatorFactory(ByteOrder byteOrder) {
+        this(MAX_BYTES_TO_MAP, byteOrder);
+    }
+
+    /**
+     * Constructs a MyMappedBufferAggregatorFactory instance mapping big-endian files.
+     *
+     * @param maxBytesToMap max number of bytes mapped by one mapped byte buffer, a file bigger than this is mapped by
+     *                      segments of the greatest power of two not exceeding this value
      * @throws IllegalArgumentException if:
      *                                  * maxBytesToMap is not positive
-     *                                  * maxBytesToMap is not a multiple of {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     *                                  * maxBytesToMap is not a multiple of
+     *                                  {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
      */
     public MyMappedBufferAggregatorFactory(int maxBytesToMap) {
+        this(maxBytesToMap, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Constructs a MyMappedBufferAggregatorFactory instance.
+     *
+     * @param maxBytesToMap max number of bytes mapped by one mapped byte buffer, a file bigger than this is mapped by
+     *                      segments of the greatest power of two not exceeding this value
+     * @param byteOrder     a byte order of the files
+     * @throws IllegalArgumentException if:
+     *                                  * maxBytesToMap is not positive
+     *                                  * maxBytesToMap is not a multiple of
+     *                                  {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     *                                  * byteOrder is null
+     */
+    public MyMappedBufferAggregatorFactory(int maxBytesToMap, ByteOrder byteOrder) {
         Validate.isTrue(maxBytesToMap > 0);
         Validate.isTrue(maxBytesToMap % MyBufferAggregator.INT_SIZE_IN_BYTES == 0);
+        Validate.notNull(byteOrder);
         this.maxBytesToMap = maxBytesToMap;
+        this.segmentSize = Integer.highestOneBit(maxBytesToMap);
+        this.byteOrder = byteOrder;
     }
 
     /**
@@ -45,35 +101,58 @@ public class MyMappedBufferAggregatorFactory {
      *                     while opening or creating the file
      */
     public MyMappedBufferAggregator get(File file) throws IOException {
+        return get(file, FileChannel.MapMode.READ_WRITE);
+    }
+
+    /**
+     * The method is intended to construct a {@link MyMappedBufferAggregator instance} mapping the specified file in
+     * the specified mode. An aggregator mapped {@link FileChannel.MapMode#READ_ONLY} throws
+     * {@link java.nio.ReadOnlyBufferException} on any attempt to modify it, the file is opened for reading only then.
+     *
+     * @param file a file to construct a {@link MyMappedBufferAggregator instance} for
+     * @param mode a mapping mode, either {@link FileChannel.MapMode#READ_ONLY} or
+     *             {@link FileChannel.MapMode#READ_WRITE}
+     * @return a {@link MyMappedBufferAggregator instance} constructed using the specified file, never returns null
+     * @throws IOException if the file cannot be opened in the mode required or some other error occurs while opening
+     *                     or mapping the file
+     */
+    public MyMappedBufferAggregator get(File file, FileChannel.MapMode mode) throws IOException {
         Validate.notNull(file);
-        Validate.isTrue(file.length() % 4 == 0);
+        Validate.isTrue(file.length() % MyBufferAggregator.INT_SIZE_IN_BYTES == 0);
+        Validate.isTrue(mode == FileChannel.MapMode.READ_ONLY || mode == FileChannel.MapMode.READ_WRITE);
         List<MappedByteBuffer> buffers = new ArrayList<>();
-        for (int i = 0; i < file.length() / maxBytesToMap; i++) {
-            buffers.add(getMappedByteBuffer(file, maxBytesToMap * i, maxBytesToMap));
-        }
-        int tail = (int) (file.length() % maxBytesToMap);
-        if (tail != 0) {
-            buffers.add(getMappedByteBuffer(file, file.length() - tail, tail));
+        String fileMode = mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw";
+        try (FileChannel channel = new RandomAccessFile(file, fileMode).getChannel()) {
+            long length = channel.size();
+            if (length <= maxBytesToMap) {
+                buffers.add(getMappedByteBuffer(channel, mode, 0, length));
+                return new MyMappedBufferAggregator(buffers);
+            }
+            for (long position = 0; position < length; position += segmentSize) {
+                buffers.add(getMappedByteBuffer(channel, mode, position, Math.min(segmentSize, length - position)));
+            }
         }
         return new MyMappedBufferAggregator(buffers);
     }
 
     /**
-     * The method is intended to construct a {@link MappedByteBuffer} instance.
+     * The method is intended to construct a {@link MappedByteBuffer} instance in the byte order of the files.
      *
-     * @param file     a file to map
+     * @param channel  a channel of the file to map, the mapping stays valid after the channel is closed
+     * @param mode     a mapping mode
      * @param position The position within the file at which the mapped region
      *                 is to start; must be non-negative
      * @param size     The size of the region to be mapped; must be non-negative and
      *                 no greater than {@link java.lang.Integer#MAX_VALUE}
      * @return a {@link MappedByteBuffer} instance, never returns null
-     * @throws IOException              if the given file object does not denote an existing, writable regular file and
-     *                                  a new regular file of that name cannot be created, or if some other error occurs
-     *                                  while opening or creating the file
+     * @throws IOException              if some I/O error occurs
      * @throws IllegalArgumentException If the preconditions on the parameters do not hold
      */
-    protected MappedByteBuffer getMappedByteBuffer(File file, long position, long size) throws IOException {
-        return new RandomAccessFile(file, "rw").getChannel().map(FileChannel.MapMode.READ_WRITE, position, size);
+    protected MappedByteBuffer getMappedByteBuffer(FileChannel channel, FileChannel.MapMode mode, long position,
+                                                   long size) throws IOException {
+        MappedByteBuffer buffer = channel.map(mode, position, size);
+        buffer.order(byteOrder);
+        return buffer;
     }
 
 }
\ No newline at end of file
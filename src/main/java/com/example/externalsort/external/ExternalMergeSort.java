@@ -0,0 +1,846 @@
+package com.example.externalsort.external;
+
+import com.example.externalsort.SortEngine;
+import com.example.externalsort.SortResult;
+import com.example.externalsort.SynchronousExecutor;
+import com.example.externalsort.aggregator.MyBufferAggregator;
+import com.example.externalsort.io.BufferPool;
+import com.example.externalsort.io.ChannelIntInput;
+import com.example.externalsort.io.ChannelIntOutput;
+import com.example.externalsort.io.IntBufferInput;
+import com.example.externalsort.io.IntInput;
+import com.example.externalsort.io.IntIteratorChannel;
+import com.example.externalsort.io.IntOutput;
+import com.example.externalsort.io.ReadAheadChannel;
+import com.example.externalsort.io.WriteBehindChannel;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.ThreadSafe;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.stream.IntStream;
+
+/**
+ * The class is intended to sort a stream of integers which does not fit into memory. The stream is read by chunks
+ * which fit into the memory budget, every chunk is sorted in memory by the specified {@link SortEngine} and spilled to
+ * a temporary file as a sorted run, then the runs are merged into the output. Both phases access the disk sequentially
+ * only.
+ * <p/>
+ * If the whole stream fits into one chunk it is written to the output right after sorting, no runs are spilled.
+ * If the engine needs a scratch aggregator, the budget is split between the chunk and the scratch equally.
+ * <p/>
+ * With {@link RunFormation#REPLACEMENT} the runs are formed by replacement selection instead: the input is streamed
+ * through a heap of integers taking most of the budget, the engine is not used then.
+ * <p/>
+ * The runs are merged as {@link MergePlanner} plans: in several passes if they outnumber the fan-in the budget allows,
+ * independent merges run concurrently on the executor's pool. The plan is reported in the {@link SortResult}.
+ * <p/>
+ * All the streams are read ahead and written behind by dedicated I/O threads through pairs of buffers (see
+ * {@link ReadAheadChannel} and {@link WriteBehindChannel}), so that the disk is busy while the chunks are being sorted
+ * and the runs are being merged. The buffers of the input and of the output are taken from the budget.
+ * <p/>
+ * The runs may be stored compressed, see {@link RunFormat}, which trades CPU time for disk traffic.
+ * <p/>
+ * The integers are read and written in the specified byte order. The chunks are sorted in that order as they are, so
+ * the native order saves swapping the bytes of every integer the engine touches.
+ * <p/>
+ * The runs may be spread across several temp directories, see {@link TempDirectories}, then there are two I/O threads
+ * per directory. The I/O threads belong to the instance and serve all its sorts, {@link #close()} stops them once the
+ * sorts in progress are over.
+ * <p/>
+ * Besides channels the integers may be taken from an {@link InputStream} or an {@link IntStream} of unknown length, and
+ * the result may be pulled as an {@link IntInput} instead of being written to a channel. The last merge is done lazily
+ * then, as the caller reads the result, so no sorted copy of the input is written to disk.
+ * <p/>
+ * One instance may run any number of sorts, one after another or concurrently. The chunk buffers of a sort which has
+ * not spilled any runs are kept for the next sorts, so a long living instance does not allocate direct memory for every
+ * small sort. The chunk buffers of a sort which has spilled runs are not kept: they are no longer referenced once the
+ * runs are formed, but their direct memory is only returned when the garbage collector frees them, so until then the
+ * merge buffers may come on top of them. At most {@link #MAX_IDLE_CHUNKS} chunks are kept. The buffers of the closed
+ * read-ahead and write-behind channels are kept for the next channels as well, at most a budget of them.
+ * {@link #releaseBuffers()} drops both.
+ *
+ * @author Ruslan Sverchkov
+ */
+@ThreadSafe
+public class ExternalMergeSort implements Closeable {
+
+    public static final long MIN_MEMORY_BUDGET = 64 * 1024;
+    public static final int MIN_IO_BUFFER_SIZE = 4 * 1024;
+
+    private static final int MAX_SEGMENT_SIZE = 1 << 30;
+    private static final int MAX_HEAP_LENGTH = Integer.MAX_VALUE - 8;
+    private static final long MAX_AUTO_IO_BUFFER_SIZE = 1024 * 1024;
+    private static final int IO_THREADS_PER_DIRECTORY = 2;
+
+    /**
+     * Size of the buffers which convert integers to bytes on top of the asynchronous channels, they just copy memory,
+     * so they are small. They are taken from the budget: two of them from the chunks or the heap of the run formation,
+     * one per input and output of a merge from the merge budget.
+     */
+    static final int STAGING_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * Max number of chunks kept for the next sorts, which is enough for a chunk and a scratch chunk.
+     */
+    static final int MAX_IDLE_CHUNKS = 2;
+
+    private final SynchronousExecutor executor;
+    private final SortEngine engine;
+    private final RunFormation runFormation;
+    private final RunFormat runFormat;
+    private final ByteOrder byteOrder;
+    private final long memoryBudget;
+    private final long chunkSize;
+    private final int ioBufferSize;
+    private final TempDirectories tempDirectories;
+    private final MergePlanner planner;
+    private final Queue<List<ByteBuffer>> idleChunks = new LinkedBlockingQueue<>(MAX_IDLE_CHUNKS);
+    private final ExecutorService ioExecutor;
+    private final BufferPool bufferPool;
+    private int activeSortsNumber;
+    private boolean closed;
+
+    /**
+     * Constructs an ExternalMergeSort instance which forms the runs by sorting chunks.
+     *
+     * @param executor      an executor to sort the chunks with
+     * @param engine        an algorithm to sort the chunks with
+     * @param memoryBudget  max number of bytes to hold in memory, rounded down to a multiple of
+     *                      {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     * @param tempDirectory a directory to spill the sorted runs to
+     * @throws IllegalArgumentException if:
+     *                                  * executor is null
+     *                                  * engine is null
+     *                                  * memoryBudget is less than {@link #MIN_MEMORY_BUDGET}
+     *                                  * tempDirectory is null
+     */
+    public ExternalMergeSort(SynchronousExecutor executor, SortEngine engine, long memoryBudget, File tempDirectory) {
+        this(executor, engine, RunFormation.SORT, RunFormat.PLAIN, ByteOrder.BIG_ENDIAN, memoryBudget, 0, 0,
+                ImmutableList.of(tempDirectory));
+    }
+
+    /**
+     * Constructs an ExternalMergeSort instance.
+     *
+     * @param executor        an executor to sort the chunks and to merge the runs with
+     * @param engine          an algorithm to sort the chunks with
+     * @param runFormation    a way to split the input into sorted runs
+     * @param runFormat       a format to store the sorted runs in
+     * @param byteOrder       a byte order of the integers of the input and of the output
+     * @param memoryBudget    max number of bytes to hold in memory, rounded down to a multiple of
+     *                        {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     * @param mergeBufferSize size of every merge buffer in bytes, 0 means the size is chosen automatically, see
+     *                        {@link MergePlanner#MergePlanner(long, int, int, int)}
+     * @param ioBufferSize    size of every buffer reading the input ahead or writing a run or the output behind while
+     *                        the runs are formed, there are four of them; 0 means 1/16 of the budget but no more
+     *                        than 1 MB
+     * @param tempDirectories directories to spill the sorted runs to, the runs are spread across them
+     * @throws IllegalArgumentException if:
+     *                                  * executor is null
+     *                                  * engine is null
+     *                                  * runFormation is null
+     *                                  * runFormat is null
+     *                                  * byteOrder is null
+     *                                  * memoryBudget is less than {@link #MIN_MEMORY_BUDGET}
+     *                                  * mergeBufferSize is not valid for {@link MergePlanner}
+     *                                  * ioBufferSize is neither 0 nor a multiple of
+     *                                  {@link MyBufferAggregator#INT_SIZE_IN_BYTES} between {@link #MIN_IO_BUFFER_SIZE}
+     *                                  and 1/8 of memoryBudget
+     *                                  * tempDirectories list is null, empty or contains null elements
+     */
+    public ExternalMergeSort(SynchronousExecutor executor, SortEngine engine, RunFormation runFormation,
+                             RunFormat runFormat, ByteOrder byteOrder, long memoryBudget, int mergeBufferSize,
+                             int ioBufferSize, List<File> tempDirectories) {
+        Validate.notNull(executor);
+        Validate.notNull(engine);
+        Validate.notNull(runFormation);
+        Validate.notNull(runFormat);
+        Validate.notNull(byteOrder);
+        Validate.isTrue(memoryBudget >= MIN_MEMORY_BUDGET);
+        Validate.isTrue(ioBufferSize == 0 || ioBufferSize >= MIN_IO_BUFFER_SIZE && ioBufferSize <= memoryBudget / 8
+                && ioBufferSize % MyBufferAggregator.INT_SIZE_IN_BYTES == 0);
+        this.executor = executor;
+        this.engine = engine;
+        this.runFormation = runFormation;
+        this.runFormat = runFormat;
+        this.byteOrder = byteOrder;
+        this.memoryBudget = memoryBudget - memoryBudget % MyBufferAggregator.INT_SIZE_IN_BYTES;
+        long tempIoBufferSize = ioBufferSize > 0 ? ioBufferSize : Math.min(memoryBudget / 16, MAX_AUTO_IO_BUFFER_SIZE);
+        this.ioBufferSize = (int) (tempIoBufferSize - tempIoBufferSize % MyBufferAggregator.INT_SIZE_IN_BYTES);
+        long sortBudget = this.memoryBudget - 4L * this.ioBufferSize - 2L * STAGING_BUFFER_SIZE;
+        long tempChunkSize = engine.isScratchRequired() ? sortBudget / 2 : sortBudget;
+        this.chunkSize = tempChunkSize - tempChunkSize % MyBufferAggregator.INT_SIZE_IN_BYTES;
+        this.tempDirectories = new TempDirectories(tempDirectories);
+        this.planner = new MergePlanner(this.memoryBudget, mergeBufferSize, STAGING_BUFFER_SIZE,
+                executor.getPool().getParallelism());
+        int ioThreadsNumber = IO_THREADS_PER_DIRECTORY * this.tempDirectories.getDirectories().size();
+        this.ioExecutor = Executors.newFixedThreadPool(ioThreadsNumber,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("external-sort-io-%d").build());
+        this.bufferPool = new BufferPool(this.memoryBudget);
+    }
+
+    /**
+     * The method is intended to sort the integers read from the input and write them to the output. Neither of the
+     * channels is closed.
+     *
+     * @param input  a channel to read the integers from
+     * @param output a channel to write the sorted integers to
+     * @return the statistics of the sort, never returns null
+     * @throws IllegalArgumentException if input or output is null
+     * @throws IOException              if an I/O error occurred or the input size is not a multiple of
+     *                                  {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     * @throws Throwable                if any error occurred while sorting a chunk
+     */
+    public SortResult sort(ReadableByteChannel input, WritableByteChannel output) throws Throwable {
+        Validate.notNull(input);
+        Validate.notNull(output);
+        long time = System.currentTimeMillis();
+        List<File> runs = new ArrayList<>();
+        List<File> spilled = Collections.synchronizedList(new ArrayList<File>());
+        startSort();
+        try {
+            long integersNumber = runFormation == RunFormation.REPLACEMENT
+                    ? selectRuns(input, output, null, runs)
+                    : generateRuns(input, output, null, runs);
+            MergePlan plan = runs.isEmpty() ? null : merge(runs, spilled, output);
+            return new SortResult(integersNumber, true, plan, System.currentTimeMillis() - time);
+        } finally {
+            cleanUp(runs, spilled);
+            endSort();
+        }
+    }
+
+    /**
+     * The method is intended to sort the integers read from the input stream and write them to the output stream.
+     * Neither of the streams is closed.
+     *
+     * @param input  a stream to read the integers from
+     * @param output a stream to write the sorted integers to
+     * @return the statistics of the sort, never returns null
+     * @throws IllegalArgumentException if input or output is null
+     * @throws IOException              if an I/O error occurred or the input size is not a multiple of
+     *                                  {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     * @throws Throwable                if any error occurred while sorting a chunk
+     */
+    public SortResult sort(InputStream input, OutputStream output) throws Throwable {
+        Validate.notNull(input);
+        Validate.notNull(output);
+        SortResult result = sort(Channels.newChannel(input), Channels.newChannel(output));
+        output.flush();
+        return result;
+    }
+
+    /**
+     * The method is intended to sort the integers read from the input. The runs are formed right away, the result is
+     * merged while it is being read. The returned input must be closed, it deletes the runs and gives the buffers back.
+     * The input channel is not closed.
+     *
+     * @param input a channel to read the integers from
+     * @return the sorted integers, never returns null
+     * @throws IllegalArgumentException if input is null
+     * @throws IOException              if an I/O error occurred or the input size is not a multiple of
+     *                                  {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     * @throws Throwable                if any error occurred while sorting a chunk
+     */
+    public IntInput sort(ReadableByteChannel input) throws Throwable {
+        Validate.notNull(input);
+        List<IntBuffer> sorted = new ArrayList<>();
+        List<File> runs = new ArrayList<>();
+        List<File> spilled = Collections.synchronizedList(new ArrayList<File>());
+        startSort();
+        try {
+            if (runFormation == RunFormation.REPLACEMENT) {
+                selectRuns(input, null, sorted, runs);
+            } else {
+                generateRuns(input, null, sorted, runs);
+            }
+            IntInput result = runs.isEmpty()
+                    ? new IntBufferInput(sorted)
+                    : openMerge(runs, spilled);
+            return new SortedInput(result, runs, spilled);
+        } catch (Throwable e) {
+            cleanUp(runs, spilled);
+            endSort();
+            throw e;
+        }
+    }
+
+    /**
+     * The method is intended to sort the integers read from the input stream, see {@link #sort(ReadableByteChannel)}.
+     * The input stream is not closed.
+     *
+     * @param input a stream to read the integers from
+     * @return the sorted integers, never returns null
+     * @throws IllegalArgumentException if input is null
+     * @throws IOException              if an I/O error occurred or the input size is not a multiple of
+     *                                  {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     * @throws Throwable                if any error occurred while sorting a chunk
+     */
+    public IntInput sort(InputStream input) throws Throwable {
+        Validate.notNull(input);
+        return sort(Channels.newChannel(input));
+    }
+
+    /**
+     * The method is intended to sort the integers of the stream, see {@link #sort(ReadableByteChannel)}. The stream is
+     * consumed lazily, so it may be longer than the budget allows to hold.
+     *
+     * @param input a stream of the integers to sort
+     * @return the sorted integers, never returns null
+     * @throws IllegalArgumentException if input is null
+     * @throws IOException              if an I/O error occurred
+     * @throws Throwable                if any error occurred while sorting a chunk
+     */
+    public IntInput sort(IntStream input) throws Throwable {
+        Validate.notNull(input);
+        return sort(new IntIteratorChannel(input.iterator(), byteOrder));
+    }
+
+    /**
+     * The method is intended to register a sort in progress, so that the I/O threads are not stopped under it.
+     *
+     * @throws RejectedExecutionException if the instance has been closed
+     */
+    private synchronized void startSort() {
+        if (closed) {
+            throw new RejectedExecutionException("The sort has been closed");
+        }
+        activeSortsNumber++;
+    }
+
+    /**
+     * The method is intended to unregister a sort which is over, and to stop the I/O threads if it is the last sort of
+     * a closed instance.
+     */
+    private synchronized void endSort() {
+        activeSortsNumber--;
+        if (closed && activeSortsNumber == 0) {
+            ioExecutor.shutdown();
+            releaseBuffers();
+        }
+    }
+
+    /**
+     * The method is intended to delete the runs once a sort is over. The channels of the sort have been closed by
+     * then, so no I/O thread touches the runs anymore.
+     *
+     * @param runs    the runs to delete
+     * @param spilled the intermediate runs to delete
+     */
+    private static void cleanUp(List<File> runs, List<File> spilled) {
+        for (File run : runs) {
+            delete(run);
+        }
+        for (File run : spilled) {
+            delete(run);
+        }
+    }
+
+    /**
+     * The method is intended to wrap a channel of the caller, so that closing a read-ahead channel on top of it waits
+     * for the I/O and gives the buffers back but leaves the channel open.
+     *
+     * @param channel a channel to wrap
+     * @return a channel which is not closed by close, never returns null
+     */
+    static ReadableByteChannel unclosable(final ReadableByteChannel channel) {
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer destination) throws IOException {
+                return channel.read(destination);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return channel.isOpen();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * The method is intended to wrap a channel of the caller, so that closing a write-behind channel on top of it
+     * flushes it and gives the buffers back but leaves the channel open.
+     *
+     * @param channel a channel to wrap
+     * @return a channel which is not closed by close, never returns null
+     */
+    static WritableByteChannel unclosable(final WritableByteChannel channel) {
+        return new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                return channel.write(source);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return channel.isOpen();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * The method is intended to delete the specified temporary file if it exists, or to delete it on exit if it
+     * cannot be deleted right now.
+     *
+     * @param file a file to delete
+     */
+    static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * The method is intended to split the input into sorted runs.
+     *
+     * @param input  a channel to read the integers from
+     * @param output a channel to write the sorted integers to if the input fits into one chunk, null means they are
+     *               added to sorted instead
+     * @param sorted a list to add the sorted integers to if the input fits into one chunk and output is null
+     * @param runs   a list to add the spilled runs to
+     * @return number of the integers read, if no runs have been spilled the integers have already been sorted into
+     *         the output or into sorted
+     * @throws Throwable if any error occurred
+     */
+    private long generateRuns(ReadableByteChannel input, WritableByteChannel output, List<IntBuffer> sorted,
+                                 List<File> runs) throws Throwable {
+        List<ByteBuffer> chunk = takeChunk();
+        List<ByteBuffer> scratchChunk = engine.isScratchRequired() ? takeChunk() : null;
+        MyBufferAggregator<ByteBuffer> scratch = scratchChunk == null ? null : new MyBufferAggregator<>(scratchChunk);
+        long integersNumber = 0;
+        try (ReadableByteChannel in = new ReadAheadChannel(unclosable(input), ioBufferSize, ioExecutor, bufferPool)) {
+            while (true) {
+                List<ByteBuffer> filled = readChunk(in, chunk);
+                if (filled.isEmpty()) {
+                    return integersNumber;
+                }
+                MyBufferAggregator<ByteBuffer> aggregator = new MyBufferAggregator<>(filled);
+                integersNumber += aggregator.getLength();
+                executor.execute(engine.getTask(aggregator, scratch));
+                if (runs.isEmpty() && aggregator.getLength() * MyBufferAggregator.INT_SIZE_IN_BYTES < chunkSize) {
+                    if (output == null) {
+                        for (ByteBuffer buffer : filled) {
+                            sorted.add(buffer.asIntBuffer());
+                        }
+                        return integersNumber;
+                    }
+                    try (WriteBehindChannel out = new WriteBehindChannel(unclosable(output), ioBufferSize, ioExecutor,
+                            bufferPool)) {
+                        write(filled, out);
+                    }
+                    return integersNumber;
+                }
+                long runSize = aggregator.getLength() * MyBufferAggregator.INT_SIZE_IN_BYTES;
+                File run = tempDirectories.createTempFile("run", runSize);
+                runs.add(run);
+                WriteBehindChannel channel = new WriteBehindChannel(new FileOutputStream(run).getChannel(),
+                        ioBufferSize, ioExecutor, bufferPool);
+                if (runFormat == RunFormat.PLAIN) {
+                    try (WriteBehindChannel out = channel) {
+                        write(filled, out);
+                    }
+                } else {
+                    try (IntOutput out = runFormat.getOutput(channel, STAGING_BUFFER_SIZE, byteOrder)) {
+                        for (long i = 0; i < aggregator.getLength(); i++) {
+                            out.write(aggregator.getInt(i));
+                        }
+                    }
+                }
+            }
+        } finally {
+            // the sorted integers handed to the caller still live in the chunk, and the runs are merged next
+            if (runs.isEmpty() && (sorted == null || sorted.isEmpty())) {
+                idleChunks.offer(chunk);
+                if (scratchChunk != null) {
+                    idleChunks.offer(scratchChunk);
+                }
+            }
+        }
+    }
+
+    /**
+     * The method is intended to split the input into sorted runs by replacement selection. The heap occupies the head
+     * of an array, the integers which are less than the last one written cannot join the current run, so they are
+     * stored right after the heap as it shrinks. When the heap becomes empty the stored integers form the heap of the
+     * next run.
+     *
+     * @param input  a channel to read the integers from
+     * @param output a channel to write the sorted integers to if the input fits into the heap, null means they are
+     *               added to sorted instead
+     * @param sorted a list to add the sorted integers to if the input fits into the heap and output is null
+     * @param runs   a list to add the spilled runs to
+     * @return number of the integers read, if no runs have been spilled the integers have already been sorted into
+     *         the output or into sorted
+     * @throws IOException if an I/O error occurred or the input size is not a multiple of
+     *                     {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     */
+    private long selectRuns(ReadableByteChannel input, WritableByteChannel output, List<IntBuffer> sorted,
+                               List<File> runs) throws IOException {
+        long heapSize = (memoryBudget - 4L * ioBufferSize - 2L * STAGING_BUFFER_SIZE)
+                / MyBufferAggregator.INT_SIZE_IN_BYTES;
+        int[] heap = new int[(int) Math.min(heapSize, MAX_HEAP_LENGTH)];
+        try (IntInput in = new ChannelIntInput(new ReadAheadChannel(unclosable(input), ioBufferSize, ioExecutor,
+                bufferPool), STAGING_BUFFER_SIZE, byteOrder)) {
+            return selectRuns(in, heap, output, sorted, runs);
+        }
+    }
+
+    /**
+     * The method is intended to split the input into sorted runs by replacement selection, see
+     * {@link #selectRuns(ReadableByteChannel, WritableByteChannel, List, List)}.
+     *
+     * @param in     an input to read the integers from
+     * @param heap   an array to hold the heap in
+     * @param output a channel to write the sorted integers to if the input fits into the heap, null means they are
+     *               added to sorted instead
+     * @param sorted a list to add the sorted integers to if the input fits into the heap and output is null
+     * @param runs   a list to add the spilled runs to
+     * @return number of the integers read
+     * @throws IOException if an I/O error occurred
+     */
+    private long selectRuns(IntInput in, int[] heap, WritableByteChannel output, List<IntBuffer> sorted,
+                            List<File> runs) throws IOException {
+        int length = 0;
+        while (length < heap.length && in.hasNext()) {
+            heap[length++] = in.next();
+        }
+        long integersNumber = length;
+        if (!in.hasNext()) {
+            Arrays.sort(heap, 0, length);
+            if (output == null) {
+                sorted.add(IntBuffer.wrap(heap, 0, length));
+                return integersNumber;
+            }
+            try (IntOutput out = new ChannelIntOutput(new WriteBehindChannel(unclosable(output), ioBufferSize,
+                    ioExecutor, bufferPool), STAGING_BUFFER_SIZE, byteOrder)) {
+                for (int i = 0; i < length; i++) {
+                    out.write(heap[i]);
+                }
+            }
+            return integersNumber;
+        }
+        while (length > 0) {
+            int size = length;
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(heap, i, size);
+            }
+            File run = tempDirectories.createTempFile("run", 2L * size * MyBufferAggregator.INT_SIZE_IN_BYTES);
+            runs.add(run);
+            try (IntOutput out = runFormat.getOutput(new WriteBehindChannel(new FileOutputStream(run).getChannel(),
+                    ioBufferSize, ioExecutor, bufferPool), STAGING_BUFFER_SIZE, byteOrder)) {
+                while (size > 0) {
+                    int last = heap[0];
+                    out.write(last);
+                    if (in.hasNext()) {
+                        int next = in.next();
+                        integersNumber++;
+                        if (next >= last) {
+                            heap[0] = next;
+                        } else {
+                            heap[0] = heap[--size];
+                            heap[size] = next;
+                        }
+                    } else {
+                        heap[0] = heap[--size];
+                        heap[size] = heap[--length];
+                    }
+                    siftDown(heap, 0, size);
+                }
+            }
+        }
+        return integersNumber;
+    }
+
+    /**
+     * The method is intended to restore the min-heap property of the subtree rooted at the specified index.
+     *
+     * @param heap  an array the heap occupies the head of
+     * @param index an index of the subtree root
+     * @param size  number of integers in the heap
+     */
+    private static void siftDown(int[] heap, int index, int size) {
+        int value = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (value <= heap[child]) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = value;
+    }
+
+    /**
+     * The method is intended to merge the sorted runs into the output as planned.
+     *
+     * @param runs    sorted runs to merge
+     * @param spilled a thread safe list to register the intermediate runs in
+     * @param output  a channel to write the merged integers to
+     * @return the plan the runs have been merged by, never returns null
+     * @throws IOException if an I/O error occurred
+     * @throws Throwable   if any other error occurred while merging
+     */
+    private MergePlan merge(List<File> runs, List<File> spilled, WritableByteChannel output) throws Throwable {
+        List<Long> runSizes = new ArrayList<>();
+        for (File run : runs) {
+            runSizes.add(run.length());
+        }
+        MergePlan plan = planner.plan(runSizes);
+        try {
+            executor.execute(new MergeTask(plan.getRoot(), runs, runFormat, byteOrder, tempDirectories, spilled,
+                    new Semaphore(plan.getConcurrency()), plan.getBufferSize(), ioExecutor, bufferPool, output));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return plan;
+    }
+
+    /**
+     * The method is intended to merge the sorted runs as planned, except for the last merge which is returned as an
+     * input to be pulled by the caller.
+     *
+     * @param runs    sorted runs to merge
+     * @param spilled a thread safe list to register the intermediate runs in
+     * @return the merged integers, never returns null
+     * @throws IOException if an I/O error occurred
+     * @throws Throwable   if any other error occurred while merging
+     */
+    private IntInput openMerge(List<File> runs, List<File> spilled) throws Throwable {
+        List<Long> runSizes = new ArrayList<>();
+        for (File run : runs) {
+            runSizes.add(run.length());
+        }
+        MergePlan plan = planner.plan(runSizes);
+        Semaphore permits = new Semaphore(plan.getConcurrency());
+        final List<MergeTask> subtasks = new ArrayList<>();
+        for (MergePlan.Node child : plan.getRoot().getChildren()) {
+            if (!child.isRun()) {
+                subtasks.add(new MergeTask(child, runs, runFormat, byteOrder, tempDirectories, spilled, permits,
+                        plan.getBufferSize(), ioExecutor, bufferPool, null));
+            }
+        }
+        try {
+            executor.execute(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(subtasks);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        int bufferSize = plan.getBufferSize() / 2 - plan.getBufferSize() / 2 % MyBufferAggregator.INT_SIZE_IN_BYTES;
+        List<IntInput> sources = new ArrayList<>();
+        int subtask = 0;
+        try {
+            for (MergePlan.Node child : plan.getRoot().getChildren()) {
+                File input = child.isRun() ? runs.get(child.getRun()) : subtasks.get(subtask++).getMerged();
+                sources.add(runFormat.getInput(new ReadAheadChannel(new FileInputStream(input).getChannel(),
+                        bufferSize, ioExecutor, bufferPool), STAGING_BUFFER_SIZE, byteOrder));
+            }
+            return new MergingIntInput(sources);
+        } catch (IOException e) {
+            for (IntInput source : sources) {
+                source.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The method is intended to drop the chunk buffers and the I/O buffers kept for the next sorts. Their direct
+     * memory is returned once the garbage collector frees them. The instance remains usable, the next sorts allocate
+     * their buffers again.
+     */
+    public void releaseBuffers() {
+        idleChunks.clear();
+        bufferPool.clear();
+    }
+
+    /**
+     * The method is intended to stop the I/O threads and to drop the kept buffers. The sorts in progress are
+     * completed first, including the sorted inputs not closed yet, no sorts may be run afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (activeSortsNumber == 0) {
+            ioExecutor.shutdown();
+        }
+        releaseBuffers();
+    }
+
+    /**
+     * The method is intended to tell how many chunks are kept for the next sorts.
+     *
+     * @return number of the idle chunks, between 0 and {@link #MAX_IDLE_CHUNKS}
+     */
+    int getIdleChunksNumber() {
+        return idleChunks.size();
+    }
+
+    /**
+     * The method is intended to tell how many bytes of I/O buffers are kept for the next sorts.
+     *
+     * @return total size of the idle I/O buffers, between 0 and the memory budget
+     */
+    long getIdleIoBytes() {
+        return bufferPool.getIdleBytes();
+    }
+
+    /**
+     * The method is intended to take the buffers of a chunk left by a previous sort, or to allocate them if there are
+     * none. The buffers may be offered to {@link #idleChunks} once they are not needed anymore.
+     *
+     * @return the chunk buffers, never returns null
+     */
+    private List<ByteBuffer> takeChunk() {
+        List<ByteBuffer> chunk = idleChunks.poll();
+        return chunk == null ? allocateChunk() : chunk;
+    }
+
+    /**
+     * The method is intended to allocate direct buffers for a chunk. Every buffer but the last one has the same
+     * power-of-two size as {@link MyBufferAggregator} requires.
+     *
+     * @return the chunk buffers, never returns null
+     */
+    private List<ByteBuffer> allocateChunk() {
+        int segmentSize = Integer.highestOneBit((int) Math.min(chunkSize, MAX_SEGMENT_SIZE));
+        List<ByteBuffer> chunk = new ArrayList<>();
+        for (long allocated = 0; allocated < chunkSize; allocated += segmentSize) {
+            chunk.add(ByteBuffer.allocateDirect((int) Math.min(segmentSize, chunkSize - allocated)).order(byteOrder));
+        }
+        return chunk;
+    }
+
+    /**
+     * The method is intended to fill the chunk buffers with the next integers of the input.
+     *
+     * @param input a channel to read
+     * @param chunk the chunk buffers
+     * @return the filled buffers ready to be aggregated, empty if the input is exhausted, never returns null
+     * @throws IOException if an I/O error occurred or the input ends in the middle of an integer
+     */
+    private List<ByteBuffer> readChunk(ReadableByteChannel input, List<ByteBuffer> chunk) throws IOException {
+        List<ByteBuffer> filled = new ArrayList<>();
+        for (ByteBuffer buffer : chunk) {
+            buffer.clear();
+            int read = 0;
+            while (buffer.hasRemaining() && read >= 0) {
+                read = input.read(buffer);
+            }
+            buffer.flip();
+            if (buffer.limit() % MyBufferAggregator.INT_SIZE_IN_BYTES != 0) {
+                throw new IOException("Input size must be a multiple of " + MyBufferAggregator.INT_SIZE_IN_BYTES);
+            }
+            if (buffer.hasRemaining()) {
+                filled.add(buffer);
+            }
+            if (read < 0) {
+                break;
+            }
+        }
+        return filled;
+    }
+
+    /**
+     * The method is intended to write the buffers to the channel. The buffers are consumed.
+     *
+     * @param buffers buffers to write
+     * @param channel a channel to write to
+     * @throws IOException if an I/O error occurred
+     */
+    private void write(List<ByteBuffer> buffers, WritableByteChannel channel) throws IOException {
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * The class is intended to hand the sorted integers to the caller and to clean up after the sort once they have
+     * been read.
+     */
+    @NotThreadSafe
+    private class SortedInput implements IntInput {
+
+        private final IntInput input;
+        private final List<File> runs;
+        private final List<File> spilled;
+        private boolean closed;
+
+        SortedInput(IntInput input, List<File> runs, List<File> spilled) {
+            this.input = input;
+            this.runs = runs;
+            this.spilled = spilled;
+        }
+
+        @Override
+        public boolean hasNext() throws IOException {
+            return input.hasNext();
+        }
+
+        @Override
+        public int next() throws IOException {
+            return input.next();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                input.close();
+            } finally {
+                cleanUp(runs, spilled);
+                endSort();
+            }
+        }
+
+    }
+
+}
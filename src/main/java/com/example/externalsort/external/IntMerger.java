@@ -0,0 +1,46 @@
+package com.example.externalsort.external;
+
+import com.example.externalsort.io.IntInput;
+import com.example.externalsort.io.IntOutput;
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The class is intended to merge several sorted inputs into one sorted output. The inputs are ordered by a
+ * {@link LoserTree} of their current integers, so each integer costs about log2(k) comparisons and no allocation.
+ * The merging itself is done by {@link MergingIntInput}, this class just drains it into an output.
+ *
+ * @author Ruslan Sverchkov
+ */
+@ThreadSafe
+public class IntMerger {
+
+    /**
+     * The method is intended to merge the specified sorted inputs into the specified output. Neither the inputs nor the
+     * output are closed.
+     *
+     * @param inputs sorted inputs to merge
+     * @param output an output to write the merged integers to
+     * @return the number of integers written
+     * @throws IOException              if an I/O error occurred
+     * @throws IllegalArgumentException if:
+     *                                  * inputs list is null
+     *                                  * inputs list contains null elements
+     *                                  * output is null
+     */
+    public long merge(List<? extends IntInput> inputs, IntOutput output) throws IOException {
+        Validate.noNullElements(inputs);
+        Validate.notNull(output);
+        MergingIntInput merged = new MergingIntInput(inputs);
+        long written = 0;
+        while (merged.hasNext()) {
+            output.write(merged.next());
+            written++;
+        }
+        return written;
+    }
+
+}
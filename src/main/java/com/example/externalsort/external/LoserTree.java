@@ -0,0 +1,137 @@
+package com.example.externalsort.external;
+
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A tournament tree of losers over the current integers of k sources. The leaves are the sources, every inner node
+ * holds the source which has lost the match played there, and the overall winner (the source with the least integer)
+ * is kept aside. When the winner's integer is replaced, only the matches on the path from its leaf to the root are
+ * replayed, which takes exactly ceil(log2(k)) comparisons, half as many as sifting a binary heap down.
+ * <p/>
+ * A source may be exhausted, an exhausted source loses every match.
+ *
+ * @author Ruslan Sverchkov
+ */
+@NotThreadSafe
+public class LoserTree {
+
+    private final int size;
+    private final int[] losers;
+    private final int[] keys;
+    private final boolean[] exhausted;
+    private int winner;
+
+    /**
+     * Constructs a LoserTree instance and plays the initial tournament.
+     *
+     * @param keys      the current integers of the sources, the array is copied
+     * @param exhausted whether or not every source is exhausted, the array is copied
+     * @throws IllegalArgumentException if:
+     *                                  * keys is null or empty
+     *                                  * exhausted is null
+     *                                  * arrays lengths differ
+     */
+    public LoserTree(int[] keys, boolean[] exhausted) {
+        Validate.isTrue(keys != null && keys.length > 0);
+        Validate.notNull(exhausted);
+        Validate.isTrue(keys.length == exhausted.length);
+        this.size = keys.length;
+        this.keys = keys.clone();
+        this.exhausted = exhausted.clone();
+        this.losers = new int[size];
+        int[] winners = new int[2 * size];
+        for (int source = 0; source < size; source++) {
+            winners[size + source] = source;
+        }
+        for (int node = size - 1; node > 0; node--) {
+            int left = winners[2 * node];
+            int right = winners[2 * node + 1];
+            if (beats(left, right)) {
+                winners[node] = left;
+                losers[node] = right;
+            } else {
+                winners[node] = right;
+                losers[node] = left;
+            }
+        }
+        winner = winners[1];
+    }
+
+    /**
+     * Tells whether or not all the sources are exhausted.
+     *
+     * @return whether or not all the sources are exhausted
+     */
+    public boolean isEmpty() {
+        return exhausted[winner];
+    }
+
+    /**
+     * The winner getter.
+     *
+     * @return the index of the source holding the least integer, meaningless if the tree is empty
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    /**
+     * The winner's integer getter.
+     *
+     * @return the least integer of all the sources, meaningless if the tree is empty
+     */
+    public int getWinnerKey() {
+        return keys[winner];
+    }
+
+    /**
+     * The method is intended to replace the winner's integer with the next integer of the same source and to replay
+     * the matches the winner has played.
+     *
+     * @param key the next integer of the winner's source
+     */
+    public void replaceWinner(int key) {
+        keys[winner] = key;
+        replay();
+    }
+
+    /**
+     * The method is intended to mark the winner's source exhausted and to replay the matches the winner has played.
+     */
+    public void exhaustWinner() {
+        exhausted[winner] = true;
+        replay();
+    }
+
+    /**
+     * The method is intended to replay the matches on the path from the winner's leaf to the root.
+     */
+    private void replay() {
+        int candidate = winner;
+        for (int node = (candidate + size) >>> 1; node > 0; node >>>= 1) {
+            if (beats(losers[node], candidate)) {
+                int temp = losers[node];
+                losers[node] = candidate;
+                candidate = temp;
+            }
+        }
+        winner = candidate;
+    }
+
+    /**
+     * The method is intended to play a match.
+     *
+     * @param a a source
+     * @param b another source
+     * @return whether or not source a wins the match
+     */
+    private boolean beats(int a, int b) {
+        if (exhausted[a]) {
+            return false;
+        }
+        return exhausted[b] || keys[a] < keys[b] || keys[a] == keys[b] && a < b;
+    }
+
+}
@@ -0,0 +1,235 @@
+package com.example.externalsort.external;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.List;
+
+/**
+ * The class is intended to describe how the sorted runs are merged. The merges form a tree: the leaves are the runs,
+ * every inner node merges its children into an intermediate run, and the root merges its children into the output.
+ * Merges which do not depend on each other may run concurrently.
+ *
+ * @author Ruslan Sverchkov
+ */
+@Immutable
+public class MergePlan {
+
+    private final Node root;
+    private final int runsNumber;
+    private final int fanIn;
+    private final int passes;
+    private final int concurrency;
+    private final int bufferSize;
+    private final long ioVolume;
+
+    /**
+     * Constructs a MergePlan instance.
+     *
+     * @param root        the final merge
+     * @param runsNumber  number of the runs to merge
+     * @param fanIn       max number of inputs of a merge
+     * @param concurrency max number of merges to run at the same time
+     * @param bufferSize  size of every input and output buffer of a merge in bytes
+     * @throws IllegalArgumentException if:
+     *                                  * root is null or is a run
+     *                                  * runsNumber is negative
+     *                                  * fanIn is less than 2
+     *                                  * concurrency or bufferSize is not positive
+     */
+    public MergePlan(Node root, int runsNumber, int fanIn, int concurrency, int bufferSize) {
+        Validate.isTrue(root != null && !root.isRun());
+        Validate.isTrue(runsNumber >= 0);
+        Validate.isTrue(fanIn >= 2);
+        Validate.isTrue(concurrency > 0);
+        Validate.isTrue(bufferSize > 0);
+        this.root = root;
+        this.runsNumber = runsNumber;
+        this.fanIn = fanIn;
+        this.passes = root.getDepth();
+        this.concurrency = concurrency;
+        this.bufferSize = bufferSize;
+        this.ioVolume = root.getIoVolume();
+    }
+
+    /**
+     * Returns the final merge, the root of the merge tree.
+     *
+     * @return the final merge, never returns null
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the number of the sorted runs the plan merges.
+     *
+     * @return number of runs, non-negative
+     */
+    public int getRunsNumber() {
+        return runsNumber;
+    }
+
+    /**
+     * Returns the max number of inputs of a merge.
+     *
+     * @return the fan-in, at least 2
+     */
+    public int getFanIn() {
+        return fanIn;
+    }
+
+    /**
+     * Returns the max number of times an integer is read and written while merging.
+     *
+     * @return number of merge passes
+     */
+    public int getPasses() {
+        return passes;
+    }
+
+    /**
+     * Returns the max number of merges which may run at the same time within the budget.
+     *
+     * @return the concurrency, positive
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Returns the size of every input and output buffer of a merge.
+     *
+     * @return the buffer size in bytes, positive
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Returns the number of bytes all the merges read and write in total, including the final merge.
+     *
+     * @return the planned I/O volume in bytes
+     */
+    public long getIoVolume() {
+        return ioVolume;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Merge plan: %,d runs, fan-in %,d, %,d passes, up to %,d concurrent merges,"
+                + " %,d bytes buffers, %,d bytes to read and write", runsNumber, fanIn, passes, concurrency,
+                bufferSize, ioVolume);
+    }
+
+    /**
+     * A node of the merge tree, either a sorted run or a merge of other nodes.
+     */
+    @Immutable
+    public static class Node {
+
+        private final int run;
+        private final long size;
+        private final List<Node> children;
+
+        /**
+         * Constructs a node of a sorted run.
+         *
+         * @param run  an index of the run
+         * @param size size of the run in bytes
+         * @throws IllegalArgumentException if run or size is negative
+         */
+        public Node(int run, long size) {
+            Validate.isTrue(run >= 0);
+            Validate.isTrue(size >= 0);
+            this.run = run;
+            this.size = size;
+            this.children = ImmutableList.of();
+        }
+
+        /**
+         * Constructs a node of a merge.
+         *
+         * @param children the nodes to merge
+         * @throws IllegalArgumentException if children list is null or contains null elements
+         */
+        public Node(List<Node> children) {
+            Validate.noNullElements(children);
+            long childrenSize = 0;
+            for (Node child : children) {
+                childrenSize += child.getSize();
+            }
+            this.run = -1;
+            this.size = childrenSize;
+            this.children = ImmutableList.copyOf(children);
+        }
+
+        /**
+         * Tells whether the node is a sorted run or a merge.
+         *
+         * @return {@code true} if the node is a sorted run
+         */
+        public boolean isRun() {
+            return run >= 0;
+        }
+
+        /**
+         * Returns an index of the run of the node.
+         *
+         * @return an index of the run, -1 if the node is a merge
+         */
+        public int getRun() {
+            return run;
+        }
+
+        /**
+         * Returns the number of bytes of the run or of the merge result.
+         *
+         * @return the size in bytes, non-negative
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the nodes the merge takes as inputs.
+         *
+         * @return the children, empty if the node is a run, never returns null
+         */
+        public List<Node> getChildren() {
+            return children;
+        }
+
+        /**
+         * Returns the number of merges on the longest path from the node to a run.
+         *
+         * @return depth of the node
+         */
+        private int getDepth() {
+            int depth = 0;
+            for (Node child : children) {
+                depth = Math.max(depth, child.getDepth());
+            }
+            return isRun() ? 0 : depth + 1;
+        }
+
+        /**
+         * Returns the number of bytes the merges of the subtree read and write.
+         *
+         * @return I/O volume of the subtree in bytes
+         */
+        private long getIoVolume() {
+            if (isRun()) {
+                return 0;
+            }
+            long volume = 2 * size;
+            for (Node child : children) {
+                volume += child.getIoVolume();
+            }
+            return volume;
+        }
+
+    }
+
+}
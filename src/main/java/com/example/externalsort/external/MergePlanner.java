@@ -0,0 +1,143 @@
+package com.example.externalsort.external;
+
+import com.example.externalsort.aggregator.MyBufferAggregator;
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The class is intended to plan the merge of sorted runs within a memory budget. Every input and the output of a merge
+ * needs a buffer and may need a staging buffer on top of it, so the budget and the buffer sizes bound the fan-in. If
+ * the runs outnumber the fan-in they are merged in several passes:
+ * <p/>
+ * * the fan-in is the max one the budget allows, a smaller fan-in only adds passes and so I/O
+ * * the runs are merged in the optimal order (the smallest first, as Huffman coding does), and the first merge takes
+ * just enough runs to make every following merge full, which minimizes the total I/O over all the merge trees of that
+ * fan-in
+ * * merges which do not depend on each other run concurrently as far as the budget allows
+ *
+ * @author Ruslan Sverchkov
+ */
+@Immutable
+public class MergePlanner {
+
+    public static final int MIN_BUFFER_SIZE = 4 * 1024;
+    public static final int MAX_BUFFER_SIZE = 1 << 30;
+
+    private static final int MIN_AUTO_BUFFER_SIZE = 16 * 1024;
+
+    private final long memoryBudget;
+    private final int bufferSize;
+    private final int stagingBufferSize;
+    private final int parallelism;
+
+    /**
+     * Constructs a MergePlanner instance for the inputs and outputs which hold nothing but their buffers.
+     *
+     * @param memoryBudget max number of bytes all the concurrent merges may hold in memory
+     * @param bufferSize   size of every buffer in bytes, 0 means the size is chosen to merge in one pass unless the
+     *                     buffers become smaller than 16 KB; the size is decreased if even two inputs do not fit into
+     *                     the budget
+     * @param parallelism  max number of merges to run at the same time
+     * @throws IllegalArgumentException if:
+     *                                  * memoryBudget is less than three times {@link #MIN_BUFFER_SIZE}
+     *                                  * bufferSize is neither 0 nor a multiple of
+     *                                  {@link MyBufferAggregator#INT_SIZE_IN_BYTES} between
+     *                                  {@link #MIN_BUFFER_SIZE} and {@link #MAX_BUFFER_SIZE}
+     *                                  * parallelism is not positive
+     */
+    public MergePlanner(long memoryBudget, int bufferSize, int parallelism) {
+        this(memoryBudget, bufferSize, 0, parallelism);
+    }
+
+    /**
+     * Constructs a MergePlanner instance.
+     *
+     * @param memoryBudget      max number of bytes all the concurrent merges may hold in memory
+     * @param bufferSize        size of every buffer in bytes, 0 means the size is chosen to merge in one pass unless
+     *                          the buffers become smaller than 16 KB; the size is decreased if even two inputs do not
+     *                          fit into the budget
+     * @param stagingBufferSize number of bytes every input and the output of a merge hold on top of their buffer, they
+     *                          are taken from the budget as well
+     * @param parallelism       max number of merges to run at the same time
+     * @throws IllegalArgumentException if:
+     *                                  * stagingBufferSize is negative
+     *                                  * memoryBudget is less than three times the sum of {@link #MIN_BUFFER_SIZE}
+     *                                  and stagingBufferSize
+     *                                  * bufferSize is neither 0 nor a multiple of
+     *                                  {@link MyBufferAggregator#INT_SIZE_IN_BYTES} between
+     *                                  {@link #MIN_BUFFER_SIZE} and {@link #MAX_BUFFER_SIZE}
+     *                                  * parallelism is not positive
+     */
+    public MergePlanner(long memoryBudget, int bufferSize, int stagingBufferSize, int parallelism) {
+        Validate.isTrue(stagingBufferSize >= 0);
+        Validate.isTrue(memoryBudget >= 3L * (MIN_BUFFER_SIZE + stagingBufferSize));
+        Validate.isTrue(bufferSize == 0 || bufferSize >= MIN_BUFFER_SIZE && bufferSize <= MAX_BUFFER_SIZE
+                && bufferSize % MyBufferAggregator.INT_SIZE_IN_BYTES == 0);
+        Validate.isTrue(parallelism > 0);
+        this.memoryBudget = memoryBudget;
+        this.bufferSize = bufferSize;
+        this.stagingBufferSize = stagingBufferSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * The method is intended to plan the merge of the runs of the specified sizes.
+     *
+     * @param runSizes sizes of the runs in bytes
+     * @return a merge plan, never returns null
+     * @throws IllegalArgumentException if runSizes list is null or contains null elements
+     */
+    public MergePlan plan(List<Long> runSizes) {
+        Validate.noNullElements(runSizes);
+        int runsNumber = runSizes.size();
+        long size = bufferSize;
+        if (size == 0) {
+            size = memoryBudget / (runsNumber + 1) - stagingBufferSize;
+            size = Math.min(Math.max(size, MIN_AUTO_BUFFER_SIZE), MAX_BUFFER_SIZE);
+        }
+        int maxFanIn = (int) Math.max(2, Math.min(memoryBudget / (size + stagingBufferSize) - 1, Integer.MAX_VALUE));
+        size = Math.min(size, memoryBudget / (maxFanIn + 1) - stagingBufferSize);
+        int buffer = (int) (size - size % MyBufferAggregator.INT_SIZE_IN_BYTES);
+        int fanIn = Math.max(2, Math.min(maxFanIn, runsNumber));
+        long mergeSize = (fanIn + 1L) * (buffer + stagingBufferSize);
+        int concurrency = (int) Math.max(1, Math.min(parallelism, memoryBudget / mergeSize));
+        return new MergePlan(getTree(runSizes, fanIn), runsNumber, fanIn, concurrency, buffer);
+    }
+
+    /**
+     * The method is intended to build the merge tree of the minimal I/O volume. The runs are merged smallest first,
+     * and the number of runs of the first merge is chosen so that the last merge is full.
+     *
+     * @param runSizes sizes of the runs in bytes
+     * @param fanIn    max number of inputs of a merge
+     * @return the root of the tree, never returns null
+     */
+    private MergePlan.Node getTree(List<Long> runSizes, int fanIn) {
+        PriorityQueue<MergePlan.Node> nodes = new PriorityQueue<>(Math.max(1, runSizes.size()),
+                new Comparator<MergePlan.Node>() {
+                    @Override
+                    public int compare(MergePlan.Node left, MergePlan.Node right) {
+                        return Long.compare(left.getSize(), right.getSize());
+                    }
+                });
+        for (int run = 0; run < runSizes.size(); run++) {
+            nodes.add(new MergePlan.Node(run, runSizes.get(run)));
+        }
+        int groupSize = nodes.size() > 1 ? (nodes.size() - 2) % (fanIn - 1) + 2 : fanIn;
+        while (nodes.size() > fanIn) {
+            List<MergePlan.Node> group = new ArrayList<>();
+            while (group.size() < groupSize) {
+                group.add(nodes.poll());
+            }
+            nodes.add(new MergePlan.Node(group));
+            groupSize = fanIn;
+        }
+        return new MergePlan.Node(new ArrayList<>(nodes));
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.example.externalsort.external;
+
+import com.example.externalsort.aggregator.MyBufferAggregator;
+import com.example.externalsort.io.BufferPool;
+import com.example.externalsort.io.ChannelIntOutput;
+import com.example.externalsort.io.IntInput;
+import com.example.externalsort.io.IntOutput;
+import com.example.externalsort.io.ReadAheadChannel;
+import com.example.externalsort.io.WriteBehindChannel;
+import org.apache.commons.lang.Validate;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The class is intended to perform a merge of a {@link MergePlan}. The merges of the children are forked first, so
+ * independent merges run concurrently, then the children are merged either into an intermediate run or, for the root,
+ * into the output. The number of merges holding their buffers at the same time is bounded by a semaphore. Every input
+ * run is deleted as soon as it has been merged to keep the disk usage bounded.
+ * <p/>
+ * Every buffer of the plan is split in two halves, so that the inputs are read ahead and the output is written behind
+ * while the integers are being merged.
+ * <p/>
+ * I/O errors are rethrown as {@link UncheckedIOException}.
+ *
+ * @author Ruslan Sverchkov
+ */
+class MergeTask extends RecursiveAction {
+
+    private final MergePlan.Node node;
+    private final List<File> runs;
+    private final RunFormat runFormat;
+    private final ByteOrder byteOrder;
+    private final TempDirectories tempDirectories;
+    private final Collection<File> spilled;
+    private final Semaphore permits;
+    private final int bufferSize;
+    private final ExecutorService ioExecutor;
+    private final BufferPool bufferPool;
+    private final WritableByteChannel output;
+    private final IntMerger merger = new IntMerger();
+    private File merged;
+
+    /**
+     * Constructs a MergeTask instance.
+     *
+     * @param node            a merge to perform
+     * @param runs            the sorted runs the plan refers to by index
+     * @param runFormat       a format of the runs, the intermediate runs are written in it as well
+     * @param byteOrder       a byte order of the runs and of the output
+     * @param tempDirectories directories to spill the intermediate runs to
+     * @param spilled         a thread safe collection to register the intermediate runs in, so that they are deleted
+     *                        even if the merge fails
+     * @param permits         a semaphore to take a permit from for the time of the merge
+     * @param bufferSize      size of every input and output buffer in bytes
+     * @param ioExecutor      an executor to read and write the disk with
+     * @param bufferPool      a pool to take the input and output buffers from
+     * @param output          a channel to write the merged integers to, null means an intermediate run is written
+     * @throws IllegalArgumentException if:
+     *                                  * node is null or is a run
+     *                                  * runs, runFormat, byteOrder, tempDirectories, spilled or permits is null
+     *                                  * bufferSize is less than twice {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     *                                  * ioExecutor or bufferPool is null
+     */
+    MergeTask(MergePlan.Node node, List<File> runs, RunFormat runFormat, ByteOrder byteOrder,
+              TempDirectories tempDirectories, Collection<File> spilled, Semaphore permits, int bufferSize,
+              ExecutorService ioExecutor, BufferPool bufferPool, WritableByteChannel output) {
+        Validate.isTrue(node != null && !node.isRun());
+        Validate.notNull(runs);
+        Validate.notNull(runFormat);
+        Validate.notNull(byteOrder);
+        Validate.notNull(tempDirectories);
+        Validate.notNull(spilled);
+        Validate.notNull(permits);
+        Validate.isTrue(bufferSize >= 2 * MyBufferAggregator.INT_SIZE_IN_BYTES);
+        Validate.notNull(ioExecutor);
+        Validate.notNull(bufferPool);
+        this.node = node;
+        this.runs = runs;
+        this.runFormat = runFormat;
+        this.byteOrder = byteOrder;
+        this.tempDirectories = tempDirectories;
+        this.spilled = spilled;
+        this.permits = permits;
+        this.bufferSize = bufferSize / 2 - bufferSize / 2 % MyBufferAggregator.INT_SIZE_IN_BYTES;
+        this.ioExecutor = ioExecutor;
+        this.bufferPool = bufferPool;
+        this.output = output;
+    }
+
+    /**
+     * Returns the intermediate run the task has merged into.
+     *
+     * @return the intermediate run, null if the task has written to the output or has not completed
+     */
+    File getMerged() {
+        return merged;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void compute() {
+        List<MergeTask> subtasks = new ArrayList<>();
+        for (MergePlan.Node child : node.getChildren()) {
+            if (!child.isRun()) {
+                subtasks.add(new MergeTask(child, runs, runFormat, byteOrder, tempDirectories, spilled, permits,
+                        2 * bufferSize, ioExecutor, bufferPool, null));
+            }
+        }
+        invokeAll(subtasks);
+        List<File> inputs = new ArrayList<>();
+        int subtask = 0;
+        for (MergePlan.Node child : node.getChildren()) {
+            inputs.add(child.isRun() ? runs.get(child.getRun()) : subtasks.get(subtask++).getMerged());
+        }
+        permits.acquireUninterruptibly();
+        try {
+            merge(inputs);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            permits.release();
+        }
+        for (File input : inputs) {
+            ExternalMergeSort.delete(input);
+        }
+    }
+
+    /**
+     * The method is intended to merge the inputs into the output or into a new intermediate run.
+     *
+     * @param inputs sorted runs to merge
+     * @throws IOException if an I/O error occurred
+     */
+    private void merge(List<File> inputs) throws IOException {
+        List<IntInput> sources = new ArrayList<>();
+        try {
+            for (File input : inputs) {
+                sources.add(runFormat.getInput(new ReadAheadChannel(new FileInputStream(input).getChannel(),
+                        bufferSize, ioExecutor, bufferPool), ExternalMergeSort.STAGING_BUFFER_SIZE, byteOrder));
+            }
+            if (output != null) {
+                try (IntOutput out = new ChannelIntOutput(new WriteBehindChannel(ExternalMergeSort.unclosable(output),
+                        bufferSize, ioExecutor, bufferPool), ExternalMergeSort.STAGING_BUFFER_SIZE, byteOrder)) {
+                    merger.merge(sources, out);
+                }
+                return;
+            }
+            merged = tempDirectories.createTempFile("run", node.getSize());
+            spilled.add(merged);
+            try (IntOutput out = runFormat.getOutput(new WriteBehindChannel(
+                    new FileOutputStream(merged).getChannel(), bufferSize, ioExecutor, bufferPool),
+                    ExternalMergeSort.STAGING_BUFFER_SIZE, byteOrder)) {
+                merger.merge(sources, out);
+            }
+        } finally {
+            for (IntInput source : sources) {
+                source.close();
+            }
+        }
+    }
+
+}
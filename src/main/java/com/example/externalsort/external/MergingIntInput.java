@@ -0,0 +1,95 @@
+package com.example.externalsort.external;
+
+import com.example.externalsort.io.IntInput;
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The class is intended to represent several sorted inputs as one sorted input. Unlike {@link IntMerger} it merges
+ * lazily, one integer per {@link #next()} call, so the caller pulls the result at its own pace.
+ *
+ * @author Ruslan Sverchkov
+ */
+@NotThreadSafe
+public class MergingIntInput implements IntInput {
+
+    private final IntInput[] sources;
+    private LoserTree tree;
+
+    /**
+     * Constructs a MergingIntInput instance. The first integer of every source is read right away.
+     *
+     * @param inputs sorted inputs to merge
+     * @throws IOException              if an I/O error occurred
+     * @throws IllegalArgumentException if inputs list is null or contains null elements
+     */
+    public MergingIntInput(List<? extends IntInput> inputs) throws IOException {
+        Validate.noNullElements(inputs);
+        sources = inputs.toArray(new IntInput[inputs.size()]);
+        if (sources.length == 0) {
+            return;
+        }
+        int[] keys = new int[sources.length];
+        boolean[] exhausted = new boolean[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            exhausted[i] = !sources[i].hasNext();
+            if (!exhausted[i]) {
+                keys[i] = sources[i].next();
+            }
+        }
+        tree = new LoserTree(keys, exhausted);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+        return tree != null && !tree.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int next() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int key = tree.getWinnerKey();
+        IntInput source = sources[tree.getWinner()];
+        if (source.hasNext()) {
+            tree.replaceWinner(source.next());
+        } else {
+            tree.exhaustWinner();
+        }
+        return key;
+    }
+
+    /**
+     * Closes all the sources, the first failure is rethrown after every source has been closed.
+     *
+     * @throws IOException if an I/O error occurred
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (IntInput source : sources) {
+            try {
+                source.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+}
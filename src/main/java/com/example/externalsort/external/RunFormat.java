@@ -0,0 +1,74 @@
+package com.example.externalsort.external;
+
+import com.example.externalsort.io.ChannelIntInput;
+import com.example.externalsort.io.ChannelIntOutput;
+import com.example.externalsort.io.CompressedIntInput;
+import com.example.externalsort.io.CompressedIntOutput;
+import com.example.externalsort.io.IntInput;
+import com.example.externalsort.io.IntOutput;
+
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The enumeration is intended to list the formats {@link ExternalMergeSort} can store the sorted runs in. The output
+ * is always written in the plain format.
+ *
+ * @author Ruslan Sverchkov
+ */
+public enum RunFormat {
+
+    /**
+     * Integers as they are, 4 bytes each.
+     */
+    PLAIN {
+        @Override
+        public IntInput getInput(ReadableByteChannel channel, int bufferSize, ByteOrder byteOrder) {
+            return new ChannelIntInput(channel, bufferSize, byteOrder);
+        }
+
+        @Override
+        public IntOutput getOutput(WritableByteChannel channel, int bufferSize, ByteOrder byteOrder) {
+            return new ChannelIntOutput(channel, bufferSize, byteOrder);
+        }
+    },
+
+    /**
+     * Blocks of deltas packed with the least bit width, see {@link CompressedIntOutput}. Spends some CPU time to make
+     * the runs several times smaller unless the integers are sparse. The encoding does not depend on the byte order.
+     */
+    COMPRESSED {
+        @Override
+        public IntInput getInput(ReadableByteChannel channel, int bufferSize, ByteOrder byteOrder) {
+            return new CompressedIntInput(channel, bufferSize);
+        }
+
+        @Override
+        public IntOutput getOutput(WritableByteChannel channel, int bufferSize, ByteOrder byteOrder) {
+            return new CompressedIntOutput(channel, bufferSize);
+        }
+    };
+
+    /**
+     * The method is intended to open a run for reading.
+     *
+     * @param channel    a channel to read the run from
+     * @param bufferSize size of the decoding buffer in bytes
+     * @param byteOrder  a byte order the run has been written in
+     * @return an input of the run integers, never returns null
+     */
+    public abstract IntInput getInput(ReadableByteChannel channel, int bufferSize, ByteOrder byteOrder);
+
+    /**
+     * The method is intended to open a run for writing. The integers must be written in ascending order.
+     *
+     * @param channel    a channel to write the run to
+     * @param bufferSize size of the encoding buffer in bytes
+     * @param byteOrder  a byte order to write the integers in, the plain runs must be in the byte order of the data
+     *                   since the sorted chunks are written to them as they are
+     * @return an output of the run integers, never returns null
+     */
+    public abstract IntOutput getOutput(WritableByteChannel channel, int bufferSize, ByteOrder byteOrder);
+
+}
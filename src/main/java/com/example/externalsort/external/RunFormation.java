@@ -0,0 +1,22 @@
+package com.example.externalsort.external;
+
+/**
+ * The enumeration is intended to list the ways {@link ExternalMergeSort} can split its input into sorted runs.
+ *
+ * @author Ruslan Sverchkov
+ */
+public enum RunFormation {
+
+    /**
+     * Every chunk which fits into the memory budget is sorted in memory by a
+     * {@link com.example.externalsort.SortEngine} and spilled as a run. Runs are exactly as long as the budget allows.
+     */
+    SORT,
+
+    /**
+     * Runs are formed by replacement selection through a heap which fits into the memory budget. Runs are about twice
+     * as long as the heap on random input, and presorted input makes a single run, so fewer runs have to be merged.
+     */
+    REPLACEMENT
+
+}
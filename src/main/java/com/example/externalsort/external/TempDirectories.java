@@ -0,0 +1,66 @@
+package com.example.externalsort.external;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class is intended to spread temporary files across several directories, presumably on different devices, so
+ * that their aggregate bandwidth is used. The directories are taken round-robin, a directory which has not enough
+ * usable space for the file is skipped.
+ *
+ * @author Ruslan Sverchkov
+ */
+@ThreadSafe
+public class TempDirectories {
+
+    private final List<File> directories;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Constructs a TempDirectories instance.
+     *
+     * @param directories directories to create temporary files in
+     * @throws IllegalArgumentException if directories list is null, empty or contains null elements
+     */
+    public TempDirectories(List<File> directories) {
+        Validate.notEmpty(directories);
+        Validate.noNullElements(directories);
+        this.directories = ImmutableList.copyOf(directories);
+    }
+
+    /**
+     * The directories getter.
+     *
+     * @return the directories the temporary files are spread across, in the order they are used, never returns null
+     */
+    public List<File> getDirectories() {
+        return directories;
+    }
+
+    /**
+     * The method is intended to create an empty temporary file in the next directory which has enough usable space.
+     *
+     * @param prefix       a prefix of the file name
+     * @param expectedSize the number of bytes expected to be written to the file
+     * @return a new empty file, never returns null
+     * @throws IOException if none of the directories has enough usable space or the file could not be created
+     */
+    public File createTempFile(String prefix, long expectedSize) throws IOException {
+        int first = next.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < directories.size(); i++) {
+            File directory = directories.get((first + i) % directories.size());
+            if (directory.getUsableSpace() >= expectedSize) {
+                return File.createTempFile(prefix, ".tmp", directory);
+            }
+        }
+        throw new IOException("None of the temp directories " + directories + " has " + expectedSize
+                + " bytes of usable space");
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.example.externalsort.io;
+
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * The class is intended to keep the direct buffers of the closed channels for the next ones, so that a long living
+ * owner does not allocate direct memory for every channel it opens. The buffers given back are kept as long as their
+ * total size does not exceed the limit, the least recently given ones are dropped first.
+ *
+ * @author Ruslan Sverchkov
+ */
+@ThreadSafe
+public class BufferPool {
+
+    private final long maxIdleBytes;
+    private final Deque<ByteBuffer> idle = new ArrayDeque<>();
+    private long idleBytes;
+
+    /**
+     * Constructs a BufferPool instance.
+     *
+     * @param maxIdleBytes max total size of the buffers kept, 0 means no buffers are kept
+     * @throws IllegalArgumentException if maxIdleBytes is negative
+     */
+    public BufferPool(long maxIdleBytes) {
+        Validate.isTrue(maxIdleBytes >= 0);
+        this.maxIdleBytes = maxIdleBytes;
+    }
+
+    /**
+     * The method is intended to take a kept buffer of the specified size, or to allocate one if there is none.
+     *
+     * @param size size of the buffer in bytes
+     * @return a cleared direct buffer, never returns null
+     * @throws IllegalArgumentException if size is not positive
+     */
+    public ByteBuffer take(int size) {
+        Validate.isTrue(size > 0);
+        synchronized (this) {
+            Iterator<ByteBuffer> iterator = idle.iterator();
+            while (iterator.hasNext()) {
+                ByteBuffer buffer = iterator.next();
+                if (buffer.capacity() == size) {
+                    iterator.remove();
+                    idleBytes -= size;
+                    buffer.clear();
+                    return buffer;
+                }
+            }
+        }
+        return ByteBuffer.allocateDirect(size);
+    }
+
+    /**
+     * The method is intended to keep the buffer for the next channels. The buffer must not be used by the caller
+     * anymore.
+     *
+     * @param buffer a buffer taken from the pool
+     * @throws IllegalArgumentException if buffer is null or is not direct
+     */
+    public synchronized void give(ByteBuffer buffer) {
+        Validate.isTrue(buffer != null && buffer.isDirect());
+        if (buffer.capacity() > maxIdleBytes) {
+            return;
+        }
+        idle.addFirst(buffer);
+        idleBytes += buffer.capacity();
+        while (idleBytes > maxIdleBytes) {
+            idleBytes -= idle.removeLast().capacity();
+        }
+    }
+
+    /**
+     * The method is intended to drop the kept buffers, so that their memory may be reclaimed.
+     */
+    public synchronized void clear() {
+        idle.clear();
+        idleBytes = 0;
+    }
+
+    /**
+     * The method is intended to tell the total size of the kept buffers.
+     *
+     * @return number of bytes kept, between 0 and the limit
+     */
+    public synchronized long getIdleBytes() {
+        return idleBytes;
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.example.externalsort.io;
+
+import com.example.externalsort.aggregator.MyBufferAggregator;
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.util.NoSuchElementException;
+
+/**
+ * The class is intended to read integers from a {@link ReadableByteChannel} through a direct buffer, so that the
+ * channel is always read by big sequential blocks. The integers are big-endian unless another byte order is specified.
+ *
+ * @author Ruslan Sverchkov
+ */
+@NotThreadSafe
+public class ChannelIntInput implements IntInput {
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private boolean endOfStream;
+
+    /**
+     * Constructs a ChannelIntInput instance reading big-endian integers.
+     *
+     * @param channel    a channel to read
+     * @param bufferSize size of the buffer in bytes
+     * @throws IllegalArgumentException if:
+     *                                  * channel is null
+     *                                  * bufferSize is not positive
+     *                                  * bufferSize is not a multiple of {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     */
+    public ChannelIntInput(ReadableByteChannel channel, int bufferSize) {
+        this(channel, bufferSize, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Constructs a ChannelIntInput instance.
+     *
+     * @param channel    a channel to read
+     * @param bufferSize size of the buffer in bytes
+     * @param byteOrder  a byte order of the integers
+     * @throws IllegalArgumentException if:
+     *                                  * channel is null
+     *                                  * bufferSize is not positive
+     *                                  * bufferSize is not a multiple of {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     *                                  * byteOrder is null
+     */
+    public ChannelIntInput(ReadableByteChannel channel, int bufferSize, ByteOrder byteOrder) {
+        Validate.notNull(channel);
+        Validate.isTrue(bufferSize > 0);
+        Validate.isTrue(bufferSize % MyBufferAggregator.INT_SIZE_IN_BYTES == 0);
+        Validate.notNull(byteOrder);
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize).order(byteOrder);
+        this.buffer.flip();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IOException if the channel ends in the middle of an integer
+     */
+    @Override
+    public boolean hasNext() throws IOException {
+        if (buffer.hasRemaining()) {
+            return true;
+        }
+        fill();
+        return buffer.hasRemaining();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int next() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return buffer.getInt();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * The method is intended to fill the exhausted buffer with the next block of the channel.
+     *
+     * @throws IOException if an I/O error occurred or the channel ends in the middle of an integer
+     */
+    private void fill() throws IOException {
+        buffer.clear();
+        while (!endOfStream && buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                endOfStream = true;
+            }
+        }
+        buffer.flip();
+        if (buffer.limit() % MyBufferAggregator.INT_SIZE_IN_BYTES != 0) {
+            throw new IOException("Stream size must be a multiple of " + MyBufferAggregator.INT_SIZE_IN_BYTES);
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.example.externalsort.io;
+
+import com.example.externalsort.aggregator.MyBufferAggregator;
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The class is intended to write integers to a {@link WritableByteChannel} through a direct buffer, so that the
+ * channel is always written by big sequential blocks. The integers are big-endian unless another byte order is
+ * specified.
+ *
+ * @author Ruslan Sverchkov
+ */
+@NotThreadSafe
+public class ChannelIntOutput implements IntOutput {
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructs a ChannelIntOutput instance writing big-endian integers.
+     *
+     * @param channel    a channel to write
+     * @param bufferSize size of the buffer in bytes
+     * @throws IllegalArgumentException if:
+     *                                  * channel is null
+     *                                  * bufferSize is not positive
+     *                                  * bufferSize is not a multiple of {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     */
+    public ChannelIntOutput(WritableByteChannel channel, int bufferSize) {
+        this(channel, bufferSize, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Constructs a ChannelIntOutput instance.
+     *
+     * @param channel    a channel to write
+     * @param bufferSize size of the buffer in bytes
+     * @param byteOrder  a byte order to write the integers in
+     * @throws IllegalArgumentException if:
+     *                                  * channel is null
+     *                                  * bufferSize is not positive
+     *                                  * bufferSize is not a multiple of {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     *                                  * byteOrder is null
+     */
+    public ChannelIntOutput(WritableByteChannel channel, int bufferSize, ByteOrder byteOrder) {
+        Validate.notNull(channel);
+        Validate.isTrue(bufferSize > 0);
+        Validate.isTrue(bufferSize % MyBufferAggregator.INT_SIZE_IN_BYTES == 0);
+        Validate.notNull(byteOrder);
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize).order(byteOrder);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(int value) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.putInt(value);
+    }
+
+    /**
+     * The method is intended to write everything buffered so far to the channel.
+     *
+     * @throws IOException if an I/O error occurred
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.example.externalsort.io;
+
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.NoSuchElementException;
+
+/**
+ * The class is intended to read integers written by {@link CompressedIntOutput} from a {@link ReadableByteChannel}.
+ * The channel is read by big blocks, the integers are decoded a block of {@link CompressedIntOutput#BLOCK_LENGTH} at a
+ * time.
+ *
+ * @author Ruslan Sverchkov
+ */
+@NotThreadSafe
+public class CompressedIntInput implements IntInput {
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final int[] block = new int[CompressedIntOutput.BLOCK_LENGTH];
+    private int length;
+    private int position;
+    private boolean endOfStream;
+
+    /**
+     * Constructs a CompressedIntInput instance.
+     *
+     * @param channel    a channel to read
+     * @param bufferSize size of the buffer of encoded blocks in bytes
+     * @throws IllegalArgumentException if:
+     *                                  * channel is null
+     *                                  * bufferSize is less than the max size of an encoded block
+     */
+    public CompressedIntInput(ReadableByteChannel channel, int bufferSize) {
+        Validate.notNull(channel);
+        Validate.isTrue(bufferSize >= CompressedIntOutput.MAX_BLOCK_SIZE);
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.buffer.flip();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IOException if the channel ends in the middle of a block
+     */
+    @Override
+    public boolean hasNext() throws IOException {
+        if (position < length) {
+            return true;
+        }
+        if (!fill(CompressedIntOutput.HEADER_SIZE)) {
+            if (buffer.hasRemaining()) {
+                throw new IOException("Compressed stream ends in the middle of a block header");
+            }
+            return false;
+        }
+        decode();
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int next() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return block[position++];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * The method is intended to decode the next block, its header is already in the buffer.
+     *
+     * @throws IOException if an I/O error occurred or the block is malformed
+     */
+    private void decode() throws IOException {
+        int blockLength = buffer.getShort(buffer.position());
+        int width = buffer.get(buffer.position() + 2);
+        if (blockLength <= 0 || blockLength > CompressedIntOutput.BLOCK_LENGTH || width < 0 || width > 32) {
+            throw new IOException("Malformed compressed block header");
+        }
+        if (!fill(CompressedIntOutput.HEADER_SIZE + ((blockLength - 1) * width + 7) / 8)) {
+            throw new IOException("Compressed stream ends in the middle of a block");
+        }
+        buffer.position(buffer.position() + 3);
+        int value = buffer.getInt();
+        long minDelta = buffer.getInt() & 0xFFFFFFFFL;
+        long mask = (1L << width) - 1;
+        long bits = 0;
+        int bitsNumber = 0;
+        block[0] = value;
+        for (int i = 1; i < blockLength; i++) {
+            while (bitsNumber < width) {
+                bits |= (buffer.get() & 0xFFL) << bitsNumber;
+                bitsNumber += 8;
+            }
+            value += (int) (minDelta + (bits & mask));
+            bits >>>= width;
+            bitsNumber -= width;
+            block[i] = value;
+        }
+        length = blockLength;
+        position = 0;
+    }
+
+    /**
+     * The method is intended to make sure the specified number of bytes is available in the buffer.
+     *
+     * @param size number of bytes required
+     * @return whether or not the bytes are available, {@code false} means the channel has ended
+     * @throws IOException if an I/O error occurred
+     */
+    private boolean fill(int size) throws IOException {
+        if (buffer.remaining() >= size) {
+            return true;
+        }
+        buffer.compact();
+        while (!endOfStream && buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                endOfStream = true;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() >= size;
+    }
+
+}
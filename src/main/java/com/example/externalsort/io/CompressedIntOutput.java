@@ -0,0 +1,148 @@
+package com.example.externalsort.io;
+
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The class is intended to write ascending integers to a {@link WritableByteChannel} in a compact block-wise format.
+ * The integers are grouped in blocks of {@link #BLOCK_LENGTH}, every block is encoded as:
+ * <p/>
+ * * number of integers in the block, 2 bytes
+ * * bit width of the packed deltas, 1 byte
+ * * the first integer, 4 bytes
+ * * the least delta between consecutive integers (the frame of reference), 4 bytes, unsigned
+ * * the rest of deltas minus the least one, bit-packed with the bit width, least significant bits first
+ * <p/>
+ * Deltas of sorted integers are small, so a block takes a fraction of the plain representation, and a run of equal or
+ * consecutive integers takes the header only. The worst case is about 1% bigger than the plain representation.
+ * Decoding is implemented by {@link CompressedIntInput}.
+ *
+ * @author Ruslan Sverchkov
+ */
+@NotThreadSafe
+public class CompressedIntOutput implements IntOutput {
+
+    public static final int BLOCK_LENGTH = 128;
+
+    static final int HEADER_SIZE = 2 + 1 + 4 + 4;
+    static final int MAX_BLOCK_SIZE = HEADER_SIZE + (BLOCK_LENGTH - 1) * 4;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final int[] block = new int[BLOCK_LENGTH];
+    private int length;
+
+    /**
+     * Constructs a CompressedIntOutput instance.
+     *
+     * @param channel    a channel to write
+     * @param bufferSize size of the buffer of encoded blocks in bytes
+     * @throws IllegalArgumentException if:
+     *                                  * channel is null
+     *                                  * bufferSize is less than the max size of an encoded block
+     */
+    public CompressedIntOutput(WritableByteChannel channel, int bufferSize) {
+        Validate.notNull(channel);
+        Validate.isTrue(bufferSize >= MAX_BLOCK_SIZE);
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if the value is less than the previous one
+     */
+    @Override
+    public void write(int value) throws IOException {
+        Validate.isTrue(length == 0 || value >= block[length - 1], "Integers must be written in ascending order");
+        block[length++] = value;
+        if (length == BLOCK_LENGTH) {
+            encode();
+        }
+    }
+
+    /**
+     * The method is intended to encode the pending integers and to write everything encoded so far to the channel.
+     * Flushing in the middle of a block makes the block shorter, so it is better done at the end only.
+     *
+     * @throws IOException if an I/O error occurred
+     */
+    public void flush() throws IOException {
+        if (length > 0) {
+            encode();
+        }
+        drain();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * The method is intended to encode the pending integers as a block.
+     *
+     * @throws IOException if an I/O error occurred while draining the buffer
+     */
+    private void encode() throws IOException {
+        if (buffer.remaining() < MAX_BLOCK_SIZE) {
+            drain();
+        }
+        long minDelta = 0xFFFFFFFFL;
+        long maxDelta = 0;
+        for (int i = 1; i < length; i++) {
+            long delta = (long) block[i] - block[i - 1];
+            minDelta = Math.min(minDelta, delta);
+            maxDelta = Math.max(maxDelta, delta);
+        }
+        if (length == 1) {
+            minDelta = 0;
+        }
+        int width = 64 - Long.numberOfLeadingZeros(maxDelta - minDelta);
+        buffer.putShort((short) length);
+        buffer.put((byte) width);
+        buffer.putInt(block[0]);
+        buffer.putInt((int) minDelta);
+        long bits = 0;
+        int bitsNumber = 0;
+        for (int i = 1; i < length; i++) {
+            bits |= ((long) block[i] - block[i - 1] - minDelta) << bitsNumber;
+            bitsNumber += width;
+            while (bitsNumber >= 8) {
+                buffer.put((byte) bits);
+                bits >>>= 8;
+                bitsNumber -= 8;
+            }
+        }
+        if (bitsNumber > 0) {
+            buffer.put((byte) bits);
+        }
+        length = 0;
+    }
+
+    /**
+     * The method is intended to write the encoded blocks to the channel.
+     *
+     * @throws IOException if an I/O error occurred
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.example.externalsort.io;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.IntBuffer;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The class is intended to read integers from a sequence of {@link IntBuffer} instances which are in memory already.
+ * The integers between the position and the limit of every buffer are read, the buffers are consumed.
+ *
+ * @author Ruslan Sverchkov
+ */
+@NotThreadSafe
+public class IntBufferInput implements IntInput {
+
+    private final List<IntBuffer> buffers;
+    private int current;
+
+    /**
+     * Constructs an IntBufferInput instance.
+     *
+     * @param buffers buffers to read
+     * @throws IllegalArgumentException if buffers list is null or contains null elements
+     */
+    public IntBufferInput(List<IntBuffer> buffers) {
+        Validate.noNullElements(buffers);
+        this.buffers = ImmutableList.copyOf(buffers);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+        while (current < buffers.size() && !buffers.get(current).hasRemaining()) {
+            current++;
+        }
+        return current < buffers.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return buffers.get(current).get();
+    }
+
+    /**
+     * Does nothing, the buffers are garbage collected.
+     */
+    @Override
+    public void close() {
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.example.externalsort.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The interface is intended to represent a sequential source of integers, for example a sorted run spilled to disk.
+ *
+ * @author Ruslan Sverchkov
+ */
+public interface IntInput extends Closeable {
+
+    /**
+     * Tells whether or not there are more integers to read.
+     *
+     * @return whether or not there are more integers to read
+     * @throws IOException if an I/O error occurred
+     */
+    boolean hasNext() throws IOException;
+
+    /**
+     * The method is intended to read the next integer.
+     *
+     * @return the next integer
+     * @throws IOException                      if an I/O error occurred
+     * @throws java.util.NoSuchElementException if there are no more integers
+     */
+    int next() throws IOException;
+
+}
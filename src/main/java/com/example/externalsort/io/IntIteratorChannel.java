@@ -0,0 +1,92 @@
+package com.example.externalsort.io;
+
+import com.example.externalsort.aggregator.MyBufferAggregator;
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.PrimitiveIterator;
+
+/**
+ * The class is intended to represent the integers of an iterator as a {@link ReadableByteChannel}, the way they are
+ * stored in files. The iterator is consumed lazily, so its length need not be known and it need not fit into memory.
+ *
+ * @author Ruslan Sverchkov
+ */
+@NotThreadSafe
+public class IntIteratorChannel implements ReadableByteChannel {
+
+    private final PrimitiveIterator.OfInt iterator;
+    private final ByteBuffer pending = ByteBuffer.allocate(MyBufferAggregator.INT_SIZE_IN_BYTES);
+    private boolean open = true;
+
+    /**
+     * Constructs an IntIteratorChannel instance representing the integers big-endian.
+     *
+     * @param iterator an iterator of the integers to read
+     * @throws IllegalArgumentException if iterator is null
+     */
+    public IntIteratorChannel(PrimitiveIterator.OfInt iterator) {
+        this(iterator, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Constructs an IntIteratorChannel instance.
+     *
+     * @param iterator  an iterator of the integers to read
+     * @param byteOrder a byte order to represent the integers in
+     * @throws IllegalArgumentException if iterator or byteOrder is null
+     */
+    public IntIteratorChannel(PrimitiveIterator.OfInt iterator, ByteOrder byteOrder) {
+        Validate.notNull(iterator);
+        Validate.notNull(byteOrder);
+        this.iterator = iterator;
+        this.pending.order(byteOrder).flip();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(ByteBuffer destination) throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        if (!pending.hasRemaining() && !iterator.hasNext()) {
+            return destination.hasRemaining() ? -1 : 0;
+        }
+        int read = 0;
+        while (destination.hasRemaining() && (pending.hasRemaining() || iterator.hasNext())) {
+            if (!pending.hasRemaining()) {
+                pending.clear();
+                pending.putInt(iterator.nextInt());
+                pending.flip();
+            }
+            int length = Math.min(pending.remaining(), destination.remaining());
+            destination.put(pending.array(), pending.position(), length);
+            pending.position(pending.position() + length);
+            read += length;
+        }
+        return read;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        open = false;
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.example.externalsort.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The interface is intended to represent a sequential sink of integers. Closing an output flushes everything written
+ * to it.
+ *
+ * @author Ruslan Sverchkov
+ */
+public interface IntOutput extends Closeable {
+
+    /**
+     * The method is intended to write the specified integer.
+     *
+     * @param value an integer to write
+     * @throws IOException if an I/O error occurred
+     */
+    void write(int value) throws IOException;
+
+}
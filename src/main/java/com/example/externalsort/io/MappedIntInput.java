@@ -0,0 +1,126 @@
+package com.example.externalsort.io;
+
+import com.example.externalsort.aggregator.MyBufferAggregator;
+import com.example.externalsort.aggregator.MyMappedBufferAggregator;
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.NoSuchElementException;
+
+/**
+ * The class is intended to read integers of a file through a window sliding along the file. The window is a read-only
+ * {@link MyMappedBufferAggregator} of the specified size, so the file is never copied into the heap and only the window
+ * is resident at a time. The integers are big-endian unless another byte order is specified.
+ *
+ * @author Ruslan Sverchkov
+ */
+@NotThreadSafe
+public class MappedIntInput implements IntInput {
+
+    private final FileChannel channel;
+    private final long length;
+    private final long windowLength;
+    private final ByteOrder byteOrder;
+    private MyMappedBufferAggregator window;
+    private long windowStart;
+    private long index;
+
+    /**
+     * Constructs a MappedIntInput instance reading big-endian integers.
+     *
+     * @param file       a file to read
+     * @param windowSize size of the window in bytes
+     * @throws IllegalArgumentException if:
+     *                                  * file is null
+     *                                  * windowSize is not positive
+     *                                  * windowSize is not a multiple of {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     * @throws IOException              if the file does not exist, its size is not a multiple of
+     *                                  {@link MyBufferAggregator#INT_SIZE_IN_BYTES}, or an I/O error occurred
+     */
+    public MappedIntInput(File file, int windowSize) throws IOException {
+        this(file, windowSize, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Constructs a MappedIntInput instance.
+     *
+     * @param file       a file to read
+     * @param windowSize size of the window in bytes
+     * @param byteOrder  a byte order of the integers
+     * @throws IllegalArgumentException if:
+     *                                  * file is null
+     *                                  * windowSize is not positive
+     *                                  * windowSize is not a multiple of {@link MyBufferAggregator#INT_SIZE_IN_BYTES}
+     *                                  * byteOrder is null
+     * @throws IOException              if the file does not exist, its size is not a multiple of
+     *                                  {@link MyBufferAggregator#INT_SIZE_IN_BYTES}, or an I/O error occurred
+     */
+    public MappedIntInput(File file, int windowSize, ByteOrder byteOrder) throws IOException {
+        Validate.notNull(file);
+        Validate.isTrue(windowSize > 0);
+        Validate.isTrue(windowSize % MyBufferAggregator.INT_SIZE_IN_BYTES == 0);
+        Validate.notNull(byteOrder);
+        this.byteOrder = byteOrder;
+        this.channel = new RandomAccessFile(file, "r").getChannel();
+        long size = channel.size();
+        if (size % MyBufferAggregator.INT_SIZE_IN_BYTES != 0) {
+            channel.close();
+            throw new IOException("File size must be a multiple of " + MyBufferAggregator.INT_SIZE_IN_BYTES);
+        }
+        this.length = size / MyBufferAggregator.INT_SIZE_IN_BYTES;
+        this.windowLength = windowSize / MyBufferAggregator.INT_SIZE_IN_BYTES;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+        return index < length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int next() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (window == null || index - windowStart == window.getLength()) {
+            slide();
+        }
+        return window.getInt(index++ - windowStart);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    /**
+     * The method is intended to map the window starting at the current index.
+     *
+     * @throws IOException if an I/O error occurred
+     */
+    private void slide() throws IOException {
+        windowStart = index;
+        long size = Math.min(windowLength, length - index) * MyBufferAggregator.INT_SIZE_IN_BYTES;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                windowStart * MyBufferAggregator.INT_SIZE_IN_BYTES, size);
+        buffer.order(byteOrder);
+        window = new MyMappedBufferAggregator(ImmutableList.of(buffer));
+    }
+
+}
@@ -0,0 +1,195 @@
+package com.example.externalsort.io;
+
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The class is intended to read a {@link ReadableByteChannel} ahead of its consumer. There are two direct buffers:
+ * while the consumer drains one of them, the other one is being filled with the next block of the channel by an I/O
+ * thread, so that reading the disk overlaps with processing the data read.
+ * <p/>
+ * The channel is read by blocks of the buffer size, a block which is not full is the last one.
+ * <p/>
+ * The buffers may be taken from a {@link BufferPool}, then they are given back to it on close unless a read is still
+ * in progress.
+ *
+ * @author Ruslan Sverchkov
+ */
+@NotThreadSafe
+public class ReadAheadChannel implements ReadableByteChannel {
+
+    private final ReadableByteChannel channel;
+    private final ExecutorService ioExecutor;
+    private final BufferPool bufferPool;
+    private ByteBuffer current;
+    private ByteBuffer spare;
+    private Future<ByteBuffer> next;
+    private boolean open = true;
+
+    /**
+     * Constructs a ReadAheadChannel instance and starts reading the first block.
+     *
+     * @param channel    a channel to read
+     * @param bufferSize size of every buffer in bytes
+     * @param ioExecutor an executor to read the channel with
+     * @throws IllegalArgumentException if:
+     *                                  * channel is null
+     *                                  * bufferSize is not positive
+     *                                  * ioExecutor is null
+     */
+    public ReadAheadChannel(ReadableByteChannel channel, int bufferSize, ExecutorService ioExecutor) {
+        this(channel, bufferSize, ioExecutor, new BufferPool(0));
+    }
+
+    /**
+     * Constructs a ReadAheadChannel instance which takes its buffers from the pool and starts reading the first block.
+     *
+     * @param channel    a channel to read
+     * @param bufferSize size of every buffer in bytes
+     * @param ioExecutor an executor to read the channel with
+     * @param bufferPool a pool to take the buffers from and to give them back to on close
+     * @throws IllegalArgumentException if:
+     *                                  * channel is null
+     *                                  * bufferSize is not positive
+     *                                  * ioExecutor is null
+     *                                  * bufferPool is null
+     */
+    public ReadAheadChannel(ReadableByteChannel channel, int bufferSize, ExecutorService ioExecutor,
+                            BufferPool bufferPool) {
+        Validate.notNull(channel);
+        Validate.isTrue(bufferSize > 0);
+        Validate.notNull(ioExecutor);
+        Validate.notNull(bufferPool);
+        this.channel = channel;
+        this.ioExecutor = ioExecutor;
+        this.bufferPool = bufferPool;
+        this.spare = bufferPool.take(bufferSize);
+        this.next = readAhead(bufferPool.take(bufferSize));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(ByteBuffer destination) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        if (current == null || !current.hasRemaining()) {
+            if (next == null) {
+                return -1;
+            }
+            ByteBuffer block = await(next);
+            next = null;
+            if (current != null) {
+                spare = current;
+            }
+            current = block;
+            if (current.limit() == current.capacity()) {
+                next = readAhead(spare);
+                spare = null;
+            }
+            if (!current.hasRemaining()) {
+                return -1;
+            }
+        }
+        int length = Math.min(destination.remaining(), current.remaining());
+        ByteBuffer slice = current.duplicate();
+        slice.limit(slice.position() + length);
+        destination.put(slice);
+        current.position(current.position() + length);
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Waits for the block being read, closes the underlying channel and gives the buffers back to the pool.
+     *
+     * @throws IOException if an I/O error occurred
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            if (next != null) {
+                ByteBuffer block = await(next);
+                next = null;
+                bufferPool.give(block);
+            }
+        } finally {
+            channel.close();
+        }
+        if (current != null) {
+            bufferPool.give(current);
+            current = null;
+        }
+        if (spare != null) {
+            bufferPool.give(spare);
+            spare = null;
+        }
+    }
+
+    /**
+     * The method is intended to start filling the specified buffer with the next block of the channel.
+     *
+     * @param buffer a buffer to fill
+     * @return a future of the buffer flipped for reading
+     */
+    private Future<ByteBuffer> readAhead(final ByteBuffer buffer) {
+        return ioExecutor.submit(new Callable<ByteBuffer>() {
+            @Override
+            public ByteBuffer call() throws IOException {
+                buffer.clear();
+                int read = 0;
+                while (buffer.hasRemaining() && read >= 0) {
+                    read = channel.read(buffer);
+                }
+                buffer.flip();
+                return buffer;
+            }
+        });
+    }
+
+    /**
+     * The method is intended to wait for the specified I/O operation to complete.
+     *
+     * @param operation an I/O operation
+     * @param <T>       a type of the operation result
+     * @return the operation result
+     * @throws IOException if the operation failed or the current thread was interrupted
+     */
+    static <T> T await(Future<T> operation) throws IOException {
+        try {
+            return operation.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for I/O");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+}
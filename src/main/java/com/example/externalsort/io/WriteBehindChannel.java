@@ -0,0 +1,171 @@
+package com.example.externalsort.io;
+
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The class is intended to write a {@link WritableByteChannel} behind its producer. There are two direct buffers:
+ * while the producer fills one of them, the other one is being written to the channel by an I/O thread, so that
+ * writing the disk overlaps with producing the data to write.
+ * <p/>
+ * The data written is not guaranteed to reach the channel until {@link #flush()} or {@link #close()} is called.
+ * <p/>
+ * The buffers may be taken from a {@link BufferPool}, then they are given back to it on close unless a write is still
+ * in progress.
+ *
+ * @author Ruslan Sverchkov
+ */
+@NotThreadSafe
+public class WriteBehindChannel implements WritableByteChannel {
+
+    private final WritableByteChannel channel;
+    private final ExecutorService ioExecutor;
+    private final BufferPool bufferPool;
+    private ByteBuffer current;
+    private ByteBuffer spare;
+    private Future<ByteBuffer> previous;
+    private boolean open = true;
+
+    /**
+     * Constructs a WriteBehindChannel instance.
+     *
+     * @param channel    a channel to write
+     * @param bufferSize size of every buffer in bytes
+     * @param ioExecutor an executor to write the channel with
+     * @throws IllegalArgumentException if:
+     *                                  * channel is null
+     *                                  * bufferSize is not positive
+     *                                  * ioExecutor is null
+     */
+    public WriteBehindChannel(WritableByteChannel channel, int bufferSize, ExecutorService ioExecutor) {
+        this(channel, bufferSize, ioExecutor, new BufferPool(0));
+    }
+
+    /**
+     * Constructs a WriteBehindChannel instance which takes its buffers from the pool.
+     *
+     * @param channel    a channel to write
+     * @param bufferSize size of every buffer in bytes
+     * @param ioExecutor an executor to write the channel with
+     * @param bufferPool a pool to take the buffers from and to give them back to on close
+     * @throws IllegalArgumentException if:
+     *                                  * channel is null
+     *                                  * bufferSize is not positive
+     *                                  * ioExecutor is null
+     *                                  * bufferPool is null
+     */
+    public WriteBehindChannel(WritableByteChannel channel, int bufferSize, ExecutorService ioExecutor,
+                              BufferPool bufferPool) {
+        Validate.notNull(channel);
+        Validate.isTrue(bufferSize > 0);
+        Validate.notNull(ioExecutor);
+        Validate.notNull(bufferPool);
+        this.channel = channel;
+        this.ioExecutor = ioExecutor;
+        this.bufferPool = bufferPool;
+        this.current = bufferPool.take(bufferSize);
+        this.spare = bufferPool.take(bufferSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        int written = source.remaining();
+        while (source.hasRemaining()) {
+            if (!current.hasRemaining()) {
+                writeBehind();
+            }
+            int length = Math.min(source.remaining(), current.remaining());
+            ByteBuffer slice = source.duplicate();
+            slice.limit(slice.position() + length);
+            current.put(slice);
+            source.position(source.position() + length);
+        }
+        return written;
+    }
+
+    /**
+     * The method is intended to write everything written so far to the channel and to wait until it is written.
+     *
+     * @throws IOException if an I/O error occurred
+     */
+    public void flush() throws IOException {
+        if (current.position() > 0) {
+            writeBehind();
+        }
+        if (previous != null) {
+            spare = ReadAheadChannel.await(previous);
+            previous = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Flushes the channel, closes the underlying one and gives the buffers back to the pool.
+     *
+     * @throws IOException if an I/O error occurred
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            open = false;
+            channel.close();
+        }
+        bufferPool.give(current);
+        bufferPool.give(spare);
+        current = null;
+        spare = null;
+    }
+
+    /**
+     * The method is intended to start writing the current buffer and to switch to the spare one, which is waited for
+     * if it is still being written.
+     *
+     * @throws IOException if an I/O error occurred while writing the spare buffer
+     */
+    private void writeBehind() throws IOException {
+        if (previous != null) {
+            spare = ReadAheadChannel.await(previous);
+        }
+        final ByteBuffer buffer = current;
+        buffer.flip();
+        previous = ioExecutor.submit(new Callable<ByteBuffer>() {
+            @Override
+            public ByteBuffer call() throws IOException {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+                return buffer;
+            }
+        });
+        current = spare;
+        spare = null;
+    }
+
+}
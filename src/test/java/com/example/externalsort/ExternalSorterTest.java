@@ -0,0 +1,183 @@
+package com.example.externalsort;
+
+import com.example.externalsort.external.RunFormat;
+import com.example.externalsort.io.IntInput;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.IntStream;
+
+/**
+ * This is a unit test for {@link ExternalSorter}.
+ *
+ * @author Ruslan Sverchkov
+ */
+public class ExternalSorterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReuse() throws Throwable {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try (ExternalSorter sorter = new ExternalSorter.Builder()
+                .pool(pool)
+                .memoryBudget(1024 * 1024)
+                .runFormat(RunFormat.COMPRESSED)
+                .tempDirectories(Collections.singletonList(folder.getRoot()))
+                .build()) {
+            for (int intsNumber : new int[]{1000, 1000000, 1, 100000}) {
+                int[] data = new Random(intsNumber).ints(intsNumber).toArray();
+                File file = writeInts(data);
+                File output = new File(folder.getRoot(), "sorted" + intsNumber);
+                SortResult result = sorter.sort(file, output);
+                Arrays.sort(data);
+                Assert.assertArrayEquals(data, readInts(output));
+                Assert.assertEquals(intsNumber, result.getIntegersNumber());
+                Assert.assertEquals(4L * intsNumber > 1024 * 1024, result.isOutOfCore());
+                Assert.assertEquals(result.isOutOfCore(), result.getRunsNumber() > 0);
+                sorter.sort(file);
+                Assert.assertArrayEquals(data, readInts(file));
+            }
+        }
+        // the pool has been specified, so it is not the sorter's to shut down
+        Assert.assertFalse(pool.isShutdown());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testOnHeap() throws Throwable {
+        int[] data = new Random(3).ints(3000000).toArray();
+        int[] expected = data.clone();
+        Arrays.sort(expected);
+        for (ByteOrder byteOrder : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            for (boolean onHeap : new boolean[]{true, false}) {
+                try (ExternalSorter sorter = new ExternalSorter.Builder()
+                        .threads(4)
+                        .byteOrder(byteOrder)
+                        .onHeap(onHeap)
+                        .tempDirectories(Collections.singletonList(folder.getRoot()))
+                        .build()) {
+                    File file = writeInts(data, byteOrder);
+                    File output = new File(folder.getRoot(), "sorted" + byteOrder + onHeap);
+                    Assert.assertEquals(onHeap, sorter.sort(file, output).isOnHeap());
+                    Assert.assertArrayEquals(expected, readInts(output, byteOrder));
+                    Assert.assertArrayEquals(data, readInts(file, byteOrder));
+                    sorter.sort(file);
+                    Assert.assertArrayEquals(expected, readInts(file, byteOrder));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSortPaths() throws Throwable {
+        try (ExternalSorter sorter = new ExternalSorter.Builder()
+                .threads(4)
+                .engine(SortEngine.RADIX)
+                .memoryBudget(1024 * 1024)
+                .tempDirectories(Collections.singletonList(folder.getRoot()))
+                .build()) {
+            // a file within the budget is sorted in the heap, a bigger one out of core in direct chunks
+            for (int intsNumber : new int[]{0, 1000, 1024 * 1024 / 4, 1024 * 1024 / 4 + 1, 1000000}) {
+                int[] data = new Random(intsNumber).ints(intsNumber).toArray();
+                File file = writeInts(data);
+                SortResult result = sorter.sort(file);
+                Arrays.sort(data);
+                Assert.assertArrayEquals(data, readInts(file));
+                Assert.assertEquals(4L * intsNumber > 1024 * 1024, result.isOutOfCore());
+                Assert.assertEquals(!result.isOutOfCore(), result.isOnHeap());
+            }
+            // the reservations are held against a fixed share of the max heap, however much of it is allocated
+            long limit = Runtime.getRuntime().maxMemory() / 4 * 3;
+            Assert.assertTrue(ExternalSorter.reserveHeap(limit / 2));
+            Assert.assertTrue(ExternalSorter.reserveHeap(limit - limit / 2));
+            try {
+                Assert.assertFalse(ExternalSorter.reserveHeap(1));
+                // the file is mapped if the heap has been reserved by other sorts
+                int[] data = new Random(0).ints(1000).toArray();
+                File file = writeInts(data);
+                SortResult result = sorter.sort(file);
+                Arrays.sort(data);
+                Assert.assertArrayEquals(data, readInts(file));
+                Assert.assertFalse(result.isOnHeap());
+            } finally {
+                ExternalSorter.releaseHeap(limit);
+            }
+            Assert.assertTrue(ExternalSorter.reserveHeap(1));
+            ExternalSorter.releaseHeap(1);
+        }
+    }
+
+    @Test
+    public void testSortIntStream() throws Throwable {
+        int[] data = new Random(1).ints(200000).toArray();
+        try (ExternalSorter sorter = new ExternalSorter.Builder()
+                .threads(2)
+                .memoryBudget(64 * 1024)
+                .tempDirectories(Collections.singletonList(folder.getRoot()))
+                .build();
+             IntInput sorted = sorter.sort(IntStream.of(data))) {
+            Arrays.sort(data);
+            for (int value : data) {
+                Assert.assertEquals(value, sorted.next());
+            }
+            Assert.assertFalse(sorted.hasNext());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSortIntStreamWithoutBudget() throws Throwable {
+        try (ExternalSorter sorter = new ExternalSorter.Builder().threads(1).build()) {
+            sorter.sort(IntStream.of(1, 2, 3));
+        }
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testClose() throws Throwable {
+        ExternalSorter sorter = new ExternalSorter.Builder().threads(2).build();
+        sorter.close();
+        // the pool the sorter has created is shut down
+        sorter.sort(writeInts(new int[]{3, 2, 1}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOutOfCoreSettingsWithoutBudget() {
+        new ExternalSorter.Builder().runFormat(RunFormat.COMPRESSED).build();
+    }
+
+    private File writeInts(int[] data) throws Exception {
+        return writeInts(data, ByteOrder.BIG_ENDIAN);
+    }
+
+    private File writeInts(int[] data, ByteOrder byteOrder) throws Exception {
+        ByteBuffer bytes = ByteBuffer.allocate(4 * data.length).order(byteOrder);
+        bytes.asIntBuffer().put(data);
+        File file = folder.newFile();
+        Files.write(file.toPath(), bytes.array());
+        return file;
+    }
+
+    private int[] readInts(File file) throws Exception {
+        return readInts(file, ByteOrder.BIG_ENDIAN);
+    }
+
+    private int[] readInts(File file, ByteOrder byteOrder) throws Exception {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(byteOrder);
+        int[] data = new int[bytes.remaining() / 4];
+        bytes.asIntBuffer().get(data);
+        return data;
+    }
+
+}
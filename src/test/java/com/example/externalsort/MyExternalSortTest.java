@@ -7,6 +7,10 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 /**
  * This is an integration test for the whole application.
@@ -43,7 +47,198 @@ public class MyExternalSortTest {
         }
     }
 
-    protected void testExternalSort(int intsNumber, int threadsNumber) throws Throwable {
+    @Test
+    public void testExternalSortOutOfCore() throws Throwable {
+        System.out.println("Out of core test");
+        for (int intsNumber : new int[]{
+                1,
+                100000,
+                262144,
+                1000000,
+                10000000
+        }) {
+            testExternalSort(intsNumber, 16, "--memory=1m");
+        }
+        testExternalSort(10000000, 4, "--memory=64k");
+        testExternalSort(2000000, 4, "--memory=64k", "--buffer=16k");
+        testExternalSort(2000000, 16, "--memory=1m", "--buffer=4k", "--runs=replacement");
+        testExternalSort(2000000, 4, "--memory=1m", "--io-buffer=4k");
+        testExternalSort(2000000, 4, "--memory=1m", "--io-buffer=128k", "--runs=replacement");
+        String tempDirs = folder.newFolder().getAbsolutePath() + File.pathSeparator
+                + folder.newFolder().getAbsolutePath() + File.pathSeparator + folder.newFolder().getAbsolutePath();
+        testExternalSort(2000000, 4, "--memory=64k", "--temp-dirs=" + tempDirs);
+        testExternalSort(1000000, 4, "--engine=radix", "--temp-dirs=" + tempDirs);
+        testExternalSort(10000000, 4, "--memory=1m", "--compress");
+        testExternalSort(2000000, 4, "--memory=64k", "--buffer=16k", "--compress", "--runs=replacement");
+        testExternalSort("few uniques", SortEngineTest.getFewUniques(3000000, 3000), 4, "--memory=1m",
+                "--compress");
+    }
+
+    @Test
+    public void testExternalSortEngines() throws Throwable {
+        System.out.println("Engines test");
+        for (SortEngine engine : SortEngine.values()) {
+            String engineOption = "--engine=" + engine.name().toLowerCase();
+            testExternalSort(1000000, 8, engineOption);
+            testExternalSort(1000000, 8, engineOption, "--mapped");
+            testExternalSort(1000000, 8, engineOption, "--memory=1m");
+        }
+    }
+
+    @Test
+    public void testExternalSortReplacementSelection() throws Throwable {
+        System.out.println("Replacement selection test");
+        testExternalSort(10000000, 4, "--memory=1m", "--runs=replacement");
+        testExternalSort(10000000, 4, "--memory=64k", "--runs=replacement");
+        Random random = new Random(42);
+        int[] data = new int[3000000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextInt();
+        }
+        testExternalSort("random", data, 4, "--memory=1m", "--runs=replacement");
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i + random.nextInt(1000);
+        }
+        testExternalSort("nearly sorted", data, 4, "--memory=1m", "--runs=replacement");
+        testExternalSort("few uniques", SortEngineTest.getFewUniques(3000000, 3000), 4, "--memory=1m",
+                "--runs=replacement");
+    }
+
+    @Test
+    public void testExternalSortToOutputFile() throws Throwable {
+        System.out.println("Output file test");
+        Random random = new Random(7);
+        int[] data = new int[2000000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextInt();
+        }
+        File testData = writeInts(data);
+        String original = getMD5(testData);
+        Arrays.sort(data);
+        String expected = getMD5(writeInts(data));
+        for (String[] options : new String[][]{
+                {},
+                {"--engine=radix"},
+                {"--memory=1m"},
+                {"--memory=1m", "--runs=replacement", "--compress"}
+        }) {
+            File output = new File(folder.getRoot(), "sorted" + Arrays.toString(options).hashCode());
+            String[] args = getArgs(testData, 4, options);
+            args = Arrays.copyOf(args, args.length + 1);
+            args[args.length - 1] = "--output=" + output.getAbsolutePath();
+            com.example.externalsort.ExternalSort.main(args);
+            Assert.assertEquals(expected, getMD5(output));
+            Assert.assertEquals(original, getMD5(testData));
+        }
+    }
+
+    @Test
+    public void testExternalSortByteOrder() throws Throwable {
+        System.out.println("Byte order test");
+        Random random = new Random(11);
+        int[] data = new int[2000000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextInt();
+        }
+        int[] reversed = new int[data.length];
+        for (int i = 0; i < data.length; i++) {
+            reversed[i] = Integer.reverseBytes(data[i]);
+        }
+        Arrays.sort(data);
+        int[] expected = new int[data.length];
+        for (int i = 0; i < data.length; i++) {
+            expected[i] = Integer.reverseBytes(data[i]);
+        }
+        // big-endian files of the byte-reversed integers are little-endian files of the integers
+        for (String[] options : new String[][]{
+                {"--byte-order=little"},
+                {"--byte-order=little", "--engine=radix"},
+                {"--byte-order=little", "--memory=1m"},
+                {"--byte-order=little", "--memory=1m", "--runs=replacement", "--compress"}
+        }) {
+            File testData = writeInts(reversed);
+            com.example.externalsort.ExternalSort.main(getArgs(testData, 4, options));
+            Assert.assertEquals(getMD5(writeInts(expected)), getMD5(testData));
+        }
+    }
+
+    @Test
+    public void testExternalSortWorstCases() throws Throwable {
+        System.out.println("Worst cases test");
+        testExternalSort("organ pipe", SortEngineTest.getOrganPipe(10000000), 16);
+        testExternalSort("median-of-3 killer", SortEngineTest.getMedianOfThreeKiller(10000000), 16);
+        testExternalSort("few uniques", SortEngineTest.getFewUniques(10000000, 3000), 16);
+    }
+
+    @Test
+    public void testExternalMerge() throws Throwable {
+        System.out.println("Merge test");
+        for (int filesNumber : new int[]{1, 2, 7, 300}) {
+            Random random = new Random(filesNumber);
+            List<String> args = new ArrayList<>();
+            args.add("--merge");
+            File output = folder.newFile();
+            args.add(output.getAbsolutePath());
+            List<Integer> all = new ArrayList<>();
+            for (int i = 0; i < filesNumber; i++) {
+                int[] data = new int[i % 10 == 3 ? 0 : random.nextInt(100000)];
+                for (int j = 0; j < data.length; j++) {
+                    data[j] = random.nextInt();
+                    all.add(data[j]);
+                }
+                Arrays.sort(data);
+                args.add(writeInts(data).getAbsolutePath());
+            }
+            int[] sorted = new int[all.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = all.get(i);
+            }
+            Arrays.sort(sorted);
+            File expected = writeInts(sorted);
+            long time = System.currentTimeMillis();
+            com.example.externalsort.ExternalSort.main(args.toArray(new String[args.size()]));
+            long taken = System.currentTimeMillis() - time;
+            System.out.format("files: %,4d, integers: %,12d, milliseconds: %,6d%n", filesNumber, sorted.length, taken);
+            Assert.assertEquals(getMD5(expected), getMD5(output));
+        }
+    }
+
+    @Test
+    public void testExternalMergeRejectsSortOptions() throws Throwable {
+        File input = writeInts(new int[]{1, 2, 3});
+        for (String option : new String[]{"--engine=radix", "--compress", "--runs=replacement", "--mapped",
+                "--temp-dirs=" + folder.getRoot().getAbsolutePath(), "--io-buffer=64k", "--output=sorted"}) {
+            File output = folder.newFile();
+            com.example.externalsort.ExternalSort.main("--merge", output.getAbsolutePath(), input.getAbsolutePath(),
+                    option);
+            Assert.assertEquals(option, 0, output.length());
+        }
+    }
+
+    protected File writeInts(int[] data) throws IOException {
+        File file = folder.newFile();
+        try (DataOutputStream s = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            for (int value : data) {
+                s.writeInt(value);
+            }
+        }
+        return file;
+    }
+
+    protected void testExternalSort(String name, int[] data, int threadsNumber, String... options) throws Throwable {
+        File testData = writeInts(data);
+        int[] sorted = data.clone();
+        Arrays.sort(sorted);
+        File expected = writeInts(sorted);
+        long time = System.currentTimeMillis();
+        com.example.externalsort.ExternalSort.main(getArgs(testData, threadsNumber, options));
+        long taken = System.currentTimeMillis() - time;
+        System.out.format("%s, integers: %,12d, threads: %,2d, milliseconds: %,6d %s%n", name, data.length,
+                threadsNumber, taken, Arrays.toString(options));
+        Assert.assertEquals(getMD5(testData), getMD5(expected));
+    }
+
+    protected void testExternalSort(int intsNumber, int threadsNumber, String... options) throws Throwable {
         File testData = folder.newFile();
         try (DataOutputStream s = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(testData)))) {
             for (int i = intsNumber; i > 0; i--) {
@@ -57,12 +252,21 @@ public class MyExternalSortTest {
             }
         }
         long time = System.currentTimeMillis();
-        com.example.externalsort.ExternalSort.main(testData.getAbsolutePath(), String.valueOf(threadsNumber));
+        com.example.externalsort.ExternalSort.main(getArgs(testData, threadsNumber, options));
         long taken = System.currentTimeMillis() - time;
-        System.out.format("integers: %,12d, threads: %,2d, milliseconds: %,6d%n", intsNumber, threadsNumber, taken);
+        System.out.format("integers: %,12d, threads: %,2d, milliseconds: %,6d %s%n", intsNumber, threadsNumber, taken,
+                Arrays.toString(options));
         Assert.assertEquals(getMD5(testData), getMD5(expected));
     }
 
+    protected String[] getArgs(File file, int threadsNumber, String... options) {
+        String[] args = new String[options.length + 2];
+        args[0] = file.getAbsolutePath();
+        args[1] = String.valueOf(threadsNumber);
+        System.arraycopy(options, 0, args, 2, options.length);
+        return args;
+    }
+
     protected String getMD5(File file) throws IOException {
         try(InputStream s = new BufferedInputStream(new FileInputStream(file))) {
             return DigestUtils.md5Hex(s);
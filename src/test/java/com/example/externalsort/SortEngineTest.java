@@ -0,0 +1,365 @@
+package com.example.externalsort;
+
+import com.example.externalsort.aggregator.MyBufferAggregator;
+import com.google.common.collect.ImmutableList;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This is a unit test for all the {@link SortEngine} algorithms on different data distributions.
+ *
+ * @author Ruslan Sverchkov
+ */
+public class SortEngineTest {
+
+    private static final int[] SIZES = {0, 1, 2, 3, 10, 100, 1000, 100000, 1000000};
+
+    private static SynchronousExecutor executor;
+
+    @BeforeClass
+    public static void setUp() {
+        executor = new SynchronousExecutor(new ForkJoinPool(4));
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        executor = null;
+    }
+
+    @Test
+    public void testRandom() throws Throwable {
+        for (int size : SIZES) {
+            Random random = new Random(size);
+            int[] data = new int[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = random.nextInt();
+            }
+            testAllEngines(data);
+        }
+    }
+
+    @Test
+    public void testSorted() throws Throwable {
+        for (int size : SIZES) {
+            int[] data = new int[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = i - size / 2;
+            }
+            testAllEngines(data);
+        }
+    }
+
+    @Test
+    public void testReversed() throws Throwable {
+        for (int size : SIZES) {
+            int[] data = new int[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = size / 2 - i;
+            }
+            testAllEngines(data);
+        }
+    }
+
+    @Test
+    public void testFewUniques() throws Throwable {
+        for (int size : SIZES) {
+            Random random = new Random(size);
+            int[] data = new int[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = random.nextInt(4) - 2;
+            }
+            testAllEngines(data);
+        }
+    }
+
+    @Test
+    public void testExtremes() throws Throwable {
+        for (int size : SIZES) {
+            int[] data = new int[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = i % 3 == 0 ? Integer.MIN_VALUE : i % 3 == 1 ? Integer.MAX_VALUE : 0;
+            }
+            testAllEngines(data);
+        }
+    }
+
+    @Test
+    public void testOrganPipe() throws Throwable {
+        for (int size : SIZES) {
+            testAllEngines(getOrganPipe(size));
+        }
+    }
+
+    @Test
+    public void testMedianOfThreeKiller() throws Throwable {
+        for (int size : SIZES) {
+            testAllEngines(getMedianOfThreeKiller(size));
+        }
+    }
+
+    @Test
+    public void testSawtooth() throws Throwable {
+        for (int size : SIZES) {
+            int[] data = new int[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = i % 1024;
+            }
+            testAllEngines(data);
+        }
+    }
+
+    @Test
+    public void testThousandsOfUniques() throws Throwable {
+        for (int size : SIZES) {
+            testAllEngines(getFewUniques(size, 3000));
+        }
+    }
+
+    @Test
+    public void testLowCardinalityDetection() {
+        int[] fewUniques = getFewUniques(1000000, 3000);
+        MyBufferAggregator<ByteBuffer> aggregator = getAggregator(fewUniques.length);
+        for (int i = 0; i < fewUniques.length; i++) {
+            aggregator.setInt(i, fewUniques[i]);
+        }
+        Assert.assertTrue(SequentialSort.isLowCardinality(aggregator, 0, aggregator.getLength() - 1));
+        Random random = new Random(0);
+        for (int i = 0; i < aggregator.getLength(); i++) {
+            aggregator.setInt(i, random.nextInt());
+        }
+        Assert.assertFalse(SequentialSort.isLowCardinality(aggregator, 0, aggregator.getLength() - 1));
+    }
+
+    @Test
+    public void testSortedBatches() throws Throwable {
+        for (int size : SIZES) {
+            Random random = new Random(size);
+            int[] data = new int[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = random.nextInt();
+            }
+            int batch = Math.max(1, size / 7);
+            for (int from = 0; from < size; from += batch) {
+                Arrays.sort(data, from, Math.min(size, from + batch));
+                if (from / batch % 2 == 1) {
+                    for (int i = from, j = Math.min(size, from + batch) - 1; i < j; i++, j--) {
+                        int temp = data[i];
+                        data[i] = data[j];
+                        data[j] = temp;
+                    }
+                }
+            }
+            testAllEngines(data);
+        }
+    }
+
+    @Test
+    public void testHeapSort() {
+        for (int[] data : new int[][]{getOrganPipe(1001), getMedianOfThreeKiller(1000), new int[]{1}, new int[0]}) {
+            int[] expected = data.clone();
+            Arrays.sort(expected);
+            MyBufferAggregator<ByteBuffer> aggregator = getAggregator(data.length + 2);
+            aggregator.setInt(0, Integer.MAX_VALUE);
+            aggregator.setInt(data.length + 1, Integer.MIN_VALUE);
+            for (int i = 0; i < data.length; i++) {
+                aggregator.setInt(i + 1, data[i]);
+            }
+            SequentialSort.heapSort(aggregator, 1, data.length);
+            Assert.assertEquals(Integer.MAX_VALUE, aggregator.getInt(0));
+            Assert.assertEquals(Integer.MIN_VALUE, aggregator.getInt(data.length + 1));
+            for (int i = 0; i < data.length; i++) {
+                Assert.assertEquals(expected[i], aggregator.getInt(i + 1));
+            }
+        }
+    }
+
+    @Test
+    public void testBlockPartition() {
+        Random random = new Random(0);
+        for (int size = 2; size < 1200; size += 1 + size / 8) {
+            for (int bound : new int[]{2, 100, Integer.MAX_VALUE}) {
+                int[] data = new int[size];
+                for (int i = 0; i < size; i++) {
+                    data[i] = random.nextInt(bound);
+                }
+                MyBufferAggregator<ByteBuffer> aggregator = getAggregator(size);
+                for (int i = 0; i < size; i++) {
+                    aggregator.setInt(i, data[i]);
+                }
+                long leftLast = SequentialSort.blockPartition(aggregator, 0, size - 1);
+                Assert.assertTrue(leftLast >= 0 && leftLast < size - 1);
+                int[] partitioned = new int[size];
+                int leftMax = Integer.MIN_VALUE;
+                int rightMin = Integer.MAX_VALUE;
+                for (int i = 0; i < size; i++) {
+                    partitioned[i] = aggregator.getInt(i);
+                    if (i <= leftLast) {
+                        leftMax = Math.max(leftMax, partitioned[i]);
+                    } else {
+                        rightMin = Math.min(rightMin, partitioned[i]);
+                    }
+                }
+                Assert.assertTrue(leftMax <= rightMin);
+                Arrays.sort(data);
+                Arrays.sort(partitioned);
+                Assert.assertArrayEquals(data, partitioned);
+            }
+        }
+    }
+
+    @Test
+    public void testQuicksortThresholds() throws Throwable {
+        Random random = new Random(0);
+        int[] data = new int[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextInt(1000);
+        }
+        int[] expected = data.clone();
+        Arrays.sort(expected);
+        for (long threshold : new long[]{1, 2, 100, 1000000}) {
+            MyBufferAggregator<ByteBuffer> aggregator = getAggregator(data.length);
+            for (int i = 0; i < data.length; i++) {
+                aggregator.setInt(i, data[i]);
+            }
+            executor.execute(new MySortTask(aggregator, 0, aggregator.getLength() - 1, threshold));
+            for (int i = 0; i < data.length; i++) {
+                Assert.assertEquals(expected[i], aggregator.getInt(i));
+            }
+        }
+    }
+
+    @Test
+    public void testParallelPartition() throws Throwable {
+        Random random = new Random(0);
+        int[] randomData = new int[1000000];
+        int[] extremes = new int[randomData.length];
+        for (int i = 0; i < randomData.length; i++) {
+            randomData[i] = random.nextInt();
+            extremes[i] = i % 5 == 0 ? Integer.MAX_VALUE : random.nextInt(100000);
+        }
+        for (int[] data : new int[][]{randomData, extremes, getOrganPipe(1000000), getMedianOfThreeKiller(1000000)}) {
+            int[] expected = data.clone();
+            Arrays.sort(expected);
+            for (long parallelThreshold : new long[]{1, 1 << 17}) {
+                for (boolean blocked : new boolean[]{false, true}) {
+                    MyBufferAggregator<ByteBuffer> aggregator = getAggregator(data.length);
+                    for (int i = 0; i < data.length; i++) {
+                        aggregator.setInt(i, data[i]);
+                    }
+                    executor.execute(new MySortTask(aggregator, 0, aggregator.getLength() - 1,
+                            MySortTask.DEFAULT_THRESHOLD, blocked, parallelThreshold));
+                    for (int i = 0; i < data.length; i++) {
+                        Assert.assertEquals(expected[i], aggregator.getInt(i));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOutsideOfPool() {
+        for (int[] data : new int[][]{getFewUniques(1000000, 1), getOrganPipe(1000000)}) {
+            int[] expected = data.clone();
+            Arrays.sort(expected);
+            for (SortEngine engine : SortEngine.values()) {
+                MyBufferAggregator<ByteBuffer> aggregator = getAggregator(data.length);
+                for (int i = 0; i < data.length; i++) {
+                    aggregator.setInt(i, data[i]);
+                }
+                engine.getTask(aggregator, engine.isScratchRequired() ? getAggregator(data.length) : null).invoke();
+                for (int i = 0; i < data.length; i++) {
+                    if (expected[i] != aggregator.getInt(i)) {
+                        Assert.fail(engine + " failed at index " + i + " of " + data.length);
+                    }
+                }
+                int[] array = data.clone();
+                engine.getTask(array, engine.isScratchRequired() ? new int[data.length] : null).invoke();
+                Assert.assertArrayEquals(engine + " failed on an array of " + data.length, expected, array);
+            }
+        }
+    }
+
+    protected void testAllEngines(int[] data) throws Throwable {
+        int[] expected = data.clone();
+        Arrays.sort(expected);
+        for (SortEngine engine : SortEngine.values()) {
+            MyBufferAggregator<ByteBuffer> aggregator = getAggregator(data.length);
+            for (int i = 0; i < data.length; i++) {
+                aggregator.setInt(i, data[i]);
+            }
+            executor.execute(engine.getTask(aggregator, engine.isScratchRequired()
+                    ? getAggregator(data.length) : null));
+            for (int i = 0; i < data.length; i++) {
+                if (expected[i] != aggregator.getInt(i)) {
+                    Assert.fail(engine + " failed at index " + i + " of " + data.length);
+                }
+            }
+            int[] array = data.clone();
+            executor.execute(engine.getTask(array, engine.isScratchRequired() ? new int[data.length] : null));
+            Assert.assertArrayEquals(engine + " failed on an array of " + data.length, expected, array);
+        }
+    }
+
+    /**
+     * The method is intended to generate integers ascending up to the middle and descending after it.
+     *
+     * @param size the number of integers
+     * @return the integers
+     */
+    public static int[] getOrganPipe(int size) {
+        int[] data = new int[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = Math.min(i, size - 1 - i);
+        }
+        return data;
+    }
+
+    /**
+     * The method is intended to generate random integers out of the specified number of distinct ones.
+     *
+     * @param size        the number of integers
+     * @param cardinality the number of distinct integers
+     * @return the integers
+     */
+    public static int[] getFewUniques(int size, int cardinality) {
+        Random random = new Random(size);
+        int[] data = new int[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = random.nextInt(cardinality) * 7919 - cardinality;
+        }
+        return data;
+    }
+
+    /**
+     * The method is intended to generate Musser's median-of-3 killer sequence, which makes a quick sort taking a median
+     * of the first, the middle and the last integers as the pivot quadratic.
+     *
+     * @param size the number of integers
+     * @return the integers
+     */
+    public static int[] getMedianOfThreeKiller(int size) {
+        int[] data = new int[size];
+        int k = size / 2;
+        for (int i = 1; i <= k; i++) {
+            data[i - 1] = i % 2 == 1 ? i : k + i - 1;
+            data[k + i - 1] = 2 * i;
+        }
+        if (size % 2 == 1) {
+            data[size - 1] = size;
+        }
+        return data;
+    }
+
+    protected MyBufferAggregator<ByteBuffer> getAggregator(int length) {
+        return new MyBufferAggregator<>(ImmutableList.of(
+                ByteBuffer.allocateDirect(length * MyBufferAggregator.INT_SIZE_IN_BYTES)));
+    }
+
+}
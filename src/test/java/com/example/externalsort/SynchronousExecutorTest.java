@@ -0,0 +1,101 @@
+package com.example.externalsort;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This is a unit test for {@link SynchronousExecutor}.
+ *
+ * @author Ruslan Sverchkov
+ */
+public class SynchronousExecutorTest {
+
+    private final SynchronousExecutor executor = new SynchronousExecutor(new ForkJoinPool(2));
+
+    @Test
+    public void testPoolReuse() throws Throwable {
+        for (int i = 0; i < 100; i++) {
+            SpinningAction action = new SpinningAction(0);
+            executor.execute(action);
+            Assert.assertTrue(action.isDone());
+            Assert.assertTrue(action.stopped);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExceptionRethrown() throws Throwable {
+        executor.execute(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                throw new IllegalStateException();
+            }
+        });
+    }
+
+    @Test
+    public void testTimeout() throws Throwable {
+        SpinningAction action = new SpinningAction(Long.MAX_VALUE);
+        try {
+            executor.execute(action, 50, TimeUnit.MILLISECONDS);
+            Assert.fail();
+        } catch (TimeoutException e) {
+            Assert.assertTrue(action.isCancelled());
+            Assert.assertTrue(action.stopped);
+        }
+    }
+
+    @Test
+    public void testCancelAll() throws Throwable {
+        final SpinningAction action = new SpinningAction(Long.MAX_VALUE);
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    action.started.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                executor.cancelAll();
+            }
+        }.start();
+        try {
+            executor.execute(action);
+            Assert.fail();
+        } catch (CancellationException e) {
+            Assert.assertTrue(action.stopped);
+        }
+    }
+
+    /**
+     * The action spins until it is cancelled or the specified time elapses.
+     */
+    private static class SpinningAction extends RecursiveAction {
+
+        private final long millis;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile boolean stopped;
+
+        SpinningAction(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        protected void compute() {
+            started.countDown();
+            long start = System.currentTimeMillis();
+            while (!isCancelled() && System.currentTimeMillis() - start < millis) {
+                Thread.yield();
+            }
+            stopped = true;
+        }
+
+    }
+
+}
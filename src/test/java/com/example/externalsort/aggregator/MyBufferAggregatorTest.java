@@ -0,0 +1,151 @@
+package com.example.externalsort.aggregator;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is a unit test for {@link MyBufferAggregator}.
+ *
+ * @author Ruslan Sverchkov
+ */
+public class MyBufferAggregatorTest {
+
+    @Test
+    public void testIndexResolutionAcrossSegments() {
+        MyBufferAggregator<ByteBuffer> aggregator = getAggregator(8, 8, 8, 3);
+        Assert.assertEquals(27, aggregator.getLength());
+        for (int i = 0; i < aggregator.getLength(); i++) {
+            aggregator.setInt(i, i * 31);
+        }
+        for (int i = 0; i < aggregator.getLength(); i++) {
+            Assert.assertEquals(i * 31, aggregator.getInt(i));
+        }
+        Assert.assertEquals(8 * 31, aggregator.getBuffers().get(1).getInt(0));
+        Assert.assertEquals(26 * 31, aggregator.getBuffers().get(3).getInt(2 * MyBufferAggregator.INT_SIZE_IN_BYTES));
+    }
+
+    @Test
+    public void testSingleBufferOfAnySize() {
+        MyBufferAggregator<ByteBuffer> aggregator = getAggregator(7);
+        aggregator.setInt(6, 42);
+        Assert.assertEquals(42, aggregator.getInt(6));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testIndexEqualToLength() {
+        getAggregator(8, 2).getInt(10);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testNegativeIndex() {
+        getAggregator(8, 2).setInt(-1, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSegmentIsNotPowerOfTwo() {
+        getAggregator(6, 6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDifferentSegmentSizes() {
+        getAggregator(8, 4, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLastBufferBiggerThanSegment() {
+        getAggregator(4, 8);
+    }
+
+    @Test
+    public void testBulkGetAndPutAcrossSegments() {
+        MyBufferAggregator<ByteBuffer> aggregator = getAggregator(8, 8, 8, 3);
+        int[] values = new int[25];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * 17 - 100;
+        }
+        aggregator.putInts(1, values, 2, 23);
+        for (int i = 0; i < 23; i++) {
+            Assert.assertEquals(values[i + 2], aggregator.getInt(i + 1));
+        }
+        int[] read = new int[30];
+        aggregator.getInts(5, read, 3, 19);
+        for (int i = 0; i < 19; i++) {
+            Assert.assertEquals(aggregator.getInt(i + 5), read[i + 3]);
+        }
+        Assert.assertEquals(0, read[2]);
+        Assert.assertEquals(0, read[22]);
+    }
+
+    @Test
+    public void testCopyRangeOverlapping() {
+        for (int[] range : new int[][]{{0, 5, 20}, {5, 0, 20}, {3, 11, 16}, {11, 3, 16}, {2, 2, 25}, {0, 26, 1}}) {
+            MyBufferAggregator<ByteBuffer> aggregator = getAggregator(8, 8, 8, 3);
+            int[] expected = new int[27];
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] = i;
+                aggregator.setInt(i, i);
+            }
+            System.arraycopy(expected, range[0], expected, range[1], range[2]);
+            aggregator.copyRange(range[0], range[1], range[2]);
+            for (int i = 0; i < expected.length; i++) {
+                Assert.assertEquals(expected[i], aggregator.getInt(i));
+            }
+        }
+    }
+
+    @Test
+    public void testCopyRangeToAnotherByteOrder() {
+        MyBufferAggregator<ByteBuffer> source = getAggregator(4, 4, 4);
+        List<ByteBuffer> buffers = new ArrayList<>();
+        buffers.add(ByteBuffer.allocateDirect(16 * MyBufferAggregator.INT_SIZE_IN_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN));
+        MyBufferAggregator<ByteBuffer> target = new MyBufferAggregator<>(buffers);
+        for (int i = 0; i < source.getLength(); i++) {
+            source.setInt(i, i * 1000003);
+        }
+        source.copyRange(1, target, 4, 10);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(source.getInt(i + 1), target.getInt(i + 4));
+        }
+        Assert.assertEquals(0, target.getInt(3));
+        Assert.assertEquals(0, target.getInt(14));
+    }
+
+    @Test
+    public void testSwapRanges() {
+        MyBufferAggregator<ByteBuffer> aggregator = getAggregator(8, 8, 8, 3);
+        for (int i = 0; i < aggregator.getLength(); i++) {
+            aggregator.setInt(i, i);
+        }
+        aggregator.swapRanges(2, 14, 12);
+        for (int i = 0; i < aggregator.getLength(); i++) {
+            int expected = i >= 2 && i < 14 ? i + 12 : i >= 14 && i < 26 ? i - 12 : i;
+            Assert.assertEquals(expected, aggregator.getInt(i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSwapOverlappingRanges() {
+        getAggregator(8, 8).swapRanges(0, 4, 5);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testBulkRangeBeyondLength() {
+        getAggregator(8, 2).getInts(5, new int[10], 0, 6);
+    }
+
+    protected MyBufferAggregator<ByteBuffer> getAggregator(int... intsInBuffers) {
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int ints : intsInBuffers) {
+            buffers.add(ByteBuffer.allocate(ints * MyBufferAggregator.INT_SIZE_IN_BYTES));
+        }
+        return new MyBufferAggregator<>(ImmutableList.copyOf(buffers));
+    }
+
+}
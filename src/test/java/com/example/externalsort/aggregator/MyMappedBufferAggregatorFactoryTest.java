@@ -0,0 +1,75 @@
+package com.example.externalsort.aggregator;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+/**
+ * This is a unit test for {@link MyMappedBufferAggregatorFactory}.
+ *
+ * @author Ruslan Sverchkov
+ */
+public class MyMappedBufferAggregatorFactoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSingleMapping() throws IOException {
+        File file = getFile(10);
+        MyMappedBufferAggregator aggregator = new MyMappedBufferAggregatorFactory(40).get(file);
+        Assert.assertEquals(1, aggregator.getBuffers().size());
+        assertContent(aggregator, 10);
+    }
+
+    @Test
+    public void testSegments() throws IOException {
+        File file = getFile(11);
+        MyMappedBufferAggregator aggregator = new MyMappedBufferAggregatorFactory(12).get(file);
+        Assert.assertEquals(6, aggregator.getBuffers().size());
+        assertContent(aggregator, 11);
+        aggregator.setInt(9, -1);
+        aggregator.force();
+        Assert.assertEquals(-1, new MyMappedBufferAggregatorFactory().get(file).getInt(9));
+    }
+
+    @Test
+    public void testByteOrder() throws IOException {
+        File file = getFile(11);
+        MyMappedBufferAggregator aggregator = new MyMappedBufferAggregatorFactory(12, ByteOrder.LITTLE_ENDIAN)
+                .get(file);
+        Assert.assertEquals(ByteOrder.LITTLE_ENDIAN, aggregator.getByteOrder());
+        for (int i = 0; i < 11; i++) {
+            Assert.assertEquals(Integer.reverseBytes(i), aggregator.getInt(i));
+        }
+        aggregator.setInt(9, 1);
+        aggregator.force();
+        Assert.assertEquals(Integer.reverseBytes(1), new MyMappedBufferAggregatorFactory().get(file).getInt(9));
+    }
+
+    protected File getFile(int intsNumber) throws IOException {
+        File file = folder.newFile();
+        try (DataOutputStream s = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            for (int i = 0; i < intsNumber; i++) {
+                s.writeInt(i);
+            }
+        }
+        return file;
+    }
+
+    protected void assertContent(MyBufferAggregator aggregator, int intsNumber) {
+        Assert.assertEquals(intsNumber, aggregator.getLength());
+        for (int i = 0; i < intsNumber; i++) {
+            Assert.assertEquals(i, aggregator.getInt(i));
+        }
+    }
+
+}
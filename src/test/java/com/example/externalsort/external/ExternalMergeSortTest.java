@@ -0,0 +1,133 @@
+package com.example.externalsort.external;
+
+import com.example.externalsort.SortEngine;
+import com.example.externalsort.SynchronousExecutor;
+import com.example.externalsort.io.IntInput;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.IntStream;
+
+/**
+ * This is a unit test for the streaming API of {@link ExternalMergeSort}.
+ *
+ * @author Ruslan Sverchkov
+ */
+public class ExternalMergeSortTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSortIntStream() throws Throwable {
+        for (RunFormation runFormation : RunFormation.values()) {
+            for (int intsNumber : new int[]{0, 1, 1000, 1000000}) {
+                int[] expected = new Random(intsNumber).ints(intsNumber).toArray();
+                try (ExternalMergeSort sort = getSort(runFormation, RunFormat.PLAIN);
+                     IntInput actual = sort.sort(IntStream.of(expected))) {
+                    Arrays.sort(expected);
+                    assertSorted(expected, actual);
+                }
+                assertNoRunsLeft();
+            }
+        }
+    }
+
+    @Test
+    public void testSortInputStream() throws Throwable {
+        int[] expected = new Random(0).ints(500000).toArray();
+        ByteBuffer bytes = ByteBuffer.allocate(4 * expected.length);
+        bytes.asIntBuffer().put(expected);
+        try (ExternalMergeSort sort = getSort(RunFormation.SORT, RunFormat.COMPRESSED)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            sort.sort(new ByteArrayInputStream(bytes.array()), output);
+            int[] actual = new int[expected.length];
+            ByteBuffer.wrap(output.toByteArray()).asIntBuffer().get(actual);
+            Arrays.sort(expected);
+            Assert.assertArrayEquals(expected, actual);
+            try (IntInput input = sort.sort(new ByteArrayInputStream(bytes.array()))) {
+                assertSorted(expected, input);
+            }
+        }
+        assertNoRunsLeft();
+    }
+
+    @Test
+    public void testIdleBuffers() throws Throwable {
+        try (ExternalMergeSort sort = new ExternalMergeSort(new SynchronousExecutor(new ForkJoinPool(4)),
+                SortEngine.RADIX, RunFormation.SORT, RunFormat.PLAIN, ByteOrder.BIG_ENDIAN,
+                ExternalMergeSort.MIN_MEMORY_BUDGET, 0, 0, Collections.singletonList(folder.getRoot()))) {
+            int[] small = new Random(0).ints(1000).toArray();
+            int[] big = new Random(1).ints(100000).toArray();
+            for (int[] expected : new int[][]{small, big, small, small}) {
+                ByteBuffer bytes = ByteBuffer.allocate(4 * expected.length);
+                bytes.asIntBuffer().put(expected);
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                sort.sort(new ByteArrayInputStream(bytes.array()), output);
+                // the chunks of a sort which has spilled runs are not kept through the merge
+                Assert.assertEquals(expected == big ? 0 : ExternalMergeSort.MAX_IDLE_CHUNKS,
+                        sort.getIdleChunksNumber());
+                // the buffers of the closed channels are kept within the budget
+                Assert.assertTrue(sort.getIdleIoBytes() > 0);
+                Assert.assertTrue(sort.getIdleIoBytes() <= ExternalMergeSort.MIN_MEMORY_BUDGET);
+            }
+            sort.releaseBuffers();
+            Assert.assertEquals(0, sort.getIdleChunksNumber());
+            Assert.assertEquals(0, sort.getIdleIoBytes());
+        }
+        assertNoRunsLeft();
+    }
+
+    @Test
+    public void testClose() throws Throwable {
+        int[] expected = new Random(0).ints(100000).toArray();
+        ExternalMergeSort sort = getSort(RunFormation.SORT, RunFormat.PLAIN);
+        try (IntInput actual = sort.sort(IntStream.of(expected))) {
+            // the sort in progress keeps the I/O threads running
+            sort.close();
+            Arrays.sort(expected);
+            assertSorted(expected, actual);
+        }
+        Assert.assertEquals(0, sort.getIdleIoBytes());
+        assertNoRunsLeft();
+        try {
+            sort.sort(IntStream.of(expected));
+            Assert.fail();
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+
+    private ExternalMergeSort getSort(RunFormation runFormation, RunFormat runFormat) {
+        return new ExternalMergeSort(new SynchronousExecutor(new ForkJoinPool(4)), SortEngine.QUICKSORT,
+                runFormation, runFormat, ByteOrder.BIG_ENDIAN, ExternalMergeSort.MIN_MEMORY_BUDGET, 0, 0,
+                Collections.singletonList(folder.getRoot()));
+    }
+
+    private void assertSorted(int[] expected, IntInput actual) throws Throwable {
+        for (int value : expected) {
+            Assert.assertTrue(actual.hasNext());
+            Assert.assertEquals(value, actual.next());
+        }
+        Assert.assertFalse(actual.hasNext());
+    }
+
+    private void assertNoRunsLeft() {
+        File[] files = folder.getRoot().listFiles();
+        Assert.assertNotNull(files);
+        Assert.assertEquals(0, files.length);
+    }
+
+}
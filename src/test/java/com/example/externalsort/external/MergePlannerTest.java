@@ -0,0 +1,82 @@
+package com.example.externalsort.external;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This is a unit test for {@link MergePlanner}.
+ *
+ * @author Ruslan Sverchkov
+ */
+public class MergePlannerTest {
+
+    @Test
+    public void testSinglePass() {
+        MergePlan plan = new MergePlanner(1024 * 1024, 0, 4).plan(getRunSizes(10, 1000));
+        Assert.assertEquals(1, plan.getPasses());
+        Assert.assertEquals(10, plan.getFanIn());
+        Assert.assertEquals(10, plan.getRoot().getChildren().size());
+        Assert.assertEquals(2 * 10 * 1000, plan.getIoVolume());
+        Assert.assertTrue(11L * plan.getBufferSize() <= 1024 * 1024);
+    }
+
+    @Test
+    public void testMultiplePasses() {
+        MergePlan plan = new MergePlanner(64 * 1024, 16 * 1024, 4).plan(getRunSizes(10, 1000));
+        Assert.assertEquals(3, plan.getFanIn());
+        Assert.assertEquals(3, plan.getPasses());
+        Assert.assertEquals(1, plan.getConcurrency());
+        Assert.assertEquals(3, plan.getRoot().getChildren().size());
+        // the first merge takes 2 runs, then 3, 3 and 2 runs with the first merge's result, then the final one
+        Assert.assertEquals(2 * (2 + 3 + 3 + 4 + 10) * 1000, plan.getIoVolume());
+    }
+
+    @Test
+    public void testMaxFanIn() {
+        MergePlan plan = new MergePlanner(1024 * 1024, 64 * 1024, 4).plan(getRunSizes(100, 1000));
+        Assert.assertEquals(2, plan.getPasses());
+        Assert.assertEquals(15, plan.getFanIn());
+        Assert.assertEquals(1, plan.getConcurrency());
+        plan = new MergePlanner(1024 * 1024, 0, 4).plan(getRunSizes(100, 1000));
+        Assert.assertEquals(2, plan.getPasses());
+        Assert.assertEquals(63, plan.getFanIn());
+        // the first merge takes 38 runs, then the final one takes its result and the other 62 runs, while a fan-in of
+        // 10 would need the same two passes but would read and write every run twice
+        Assert.assertEquals(2 * (38 + 100) * 1000, plan.getIoVolume());
+    }
+
+    @Test
+    public void testStagingBuffers() {
+        MergePlan plan = new MergePlanner(64 * 1024, 16 * 1024, 8 * 1024, 4).plan(getRunSizes(10, 1000));
+        Assert.assertEquals(2, plan.getFanIn());
+        Assert.assertTrue(3L * (plan.getBufferSize() + 8 * 1024) <= 64 * 1024);
+        plan = new MergePlanner(1024 * 1024, 0, 8 * 1024, 4).plan(getRunSizes(10, 1000));
+        Assert.assertEquals(1, plan.getPasses());
+        Assert.assertTrue(11L * (plan.getBufferSize() + 8 * 1024) <= 1024 * 1024);
+    }
+
+    @Test
+    public void testDegenerateCases() {
+        MergePlanner planner = new MergePlanner(64 * 1024, 0, 1);
+        MergePlan plan = planner.plan(Collections.<Long>emptyList());
+        Assert.assertEquals(1, plan.getPasses());
+        Assert.assertEquals(0, plan.getIoVolume());
+        plan = planner.plan(getRunSizes(1, 1000));
+        Assert.assertEquals(1, plan.getPasses());
+        Assert.assertEquals(1, plan.getRoot().getChildren().size());
+        Assert.assertTrue(3L * plan.getBufferSize() <= 64 * 1024);
+    }
+
+    private List<Long> getRunSizes(int runsNumber, long runSize) {
+        List<Long> runSizes = new ArrayList<>();
+        for (int i = 0; i < runsNumber; i++) {
+            runSizes.add(runSize);
+        }
+        return runSizes;
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.example.externalsort.io;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This is a unit test for {@link BufferPool}.
+ *
+ * @author Ruslan Sverchkov
+ */
+public class BufferPoolTest {
+
+    @Test
+    public void testReuse() {
+        BufferPool pool = new BufferPool(100);
+        ByteBuffer buffer = pool.take(40);
+        Assert.assertTrue(buffer.isDirect());
+        Assert.assertEquals(40, buffer.capacity());
+        buffer.putInt(1);
+        pool.give(buffer);
+        Assert.assertEquals(40, pool.getIdleBytes());
+        // a buffer of another size is allocated
+        Assert.assertNotSame(buffer, pool.take(20));
+        ByteBuffer reused = pool.take(40);
+        Assert.assertSame(buffer, reused);
+        Assert.assertEquals(0, reused.position());
+        Assert.assertEquals(40, reused.limit());
+        Assert.assertEquals(0, pool.getIdleBytes());
+    }
+
+    @Test
+    public void testLimit() {
+        BufferPool pool = new BufferPool(100);
+        ByteBuffer first = pool.take(40);
+        ByteBuffer second = pool.take(40);
+        ByteBuffer third = pool.take(40);
+        pool.give(first);
+        pool.give(second);
+        // the least recently given buffer is dropped
+        pool.give(third);
+        Assert.assertEquals(80, pool.getIdleBytes());
+        Assert.assertSame(third, pool.take(40));
+        Assert.assertSame(second, pool.take(40));
+        Assert.assertNotSame(first, pool.take(40));
+        // a buffer bigger than the limit is not kept
+        pool.give(pool.take(200));
+        Assert.assertEquals(0, pool.getIdleBytes());
+    }
+
+    @Test
+    public void testClear() {
+        BufferPool pool = new BufferPool(100);
+        ByteBuffer buffer = pool.take(40);
+        pool.give(buffer);
+        pool.clear();
+        Assert.assertEquals(0, pool.getIdleBytes());
+        Assert.assertNotSame(buffer, pool.take(40));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeLimit() {
+        new BufferPool(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHeapBuffer() {
+        new BufferPool(100).give(ByteBuffer.allocate(10));
+    }
+
+}
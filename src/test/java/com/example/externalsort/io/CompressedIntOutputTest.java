@@ -0,0 +1,93 @@
+package com.example.externalsort.io;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This is a unit test for {@link CompressedIntOutput} and {@link CompressedIntInput}.
+ *
+ * @author Ruslan Sverchkov
+ */
+public class CompressedIntOutputTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Random random = new Random(42);
+        for (int length : new int[]{0, 1, 2, 127, 128, 129, 1000, 100000}) {
+            int[] data = new int[length];
+            for (int i = 0; i < length; i++) {
+                data[i] = random.nextInt();
+            }
+            Arrays.sort(data);
+            Assert.assertArrayEquals(data, decode(encode(data), length));
+        }
+    }
+
+    @Test
+    public void testExtremeDeltas() throws IOException {
+        int[] data = {Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE};
+        Assert.assertArrayEquals(data, decode(encode(data), data.length));
+    }
+
+    @Test
+    public void testCompression() throws IOException {
+        int[] data = new int[128 * 1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i / 3;
+        }
+        byte[] dense = encode(data);
+        Assert.assertArrayEquals(data, decode(dense, data.length));
+        Assert.assertTrue(dense.length * 10 < data.length * 4);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = 1000 + 7 * i;
+        }
+        // constant deltas take the block header only
+        Assert.assertEquals(1000 * (2 + 1 + 4 + 4), encode(data).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDescending() throws IOException {
+        encode(new int[]{2, 1});
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        int[] data = new int[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i * i;
+        }
+        byte[] encoded = encode(data);
+        decode(Arrays.copyOf(encoded, encoded.length - 1), data.length);
+    }
+
+    private byte[] encode(int[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CompressedIntOutput output = new CompressedIntOutput(Channels.newChannel(bytes), 1024)) {
+            for (int value : data) {
+                output.write(value);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private int[] decode(byte[] encoded, int length) throws IOException {
+        int[] data = new int[length];
+        try (CompressedIntInput input = new CompressedIntInput(
+                Channels.newChannel(new ByteArrayInputStream(encoded)), 1024)) {
+            for (int i = 0; i < length; i++) {
+                Assert.assertTrue(input.hasNext());
+                data[i] = input.next();
+            }
+            Assert.assertFalse(input.hasNext());
+        }
+        return data;
+    }
+
+}
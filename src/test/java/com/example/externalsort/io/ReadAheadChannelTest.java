@@ -0,0 +1,267 @@
+package com.example.externalsort.io;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This is a unit test for {@link ReadAheadChannel}.
+ *
+ * @author Ruslan Sverchkov
+ */
+public class ReadAheadChannelTest {
+
+    private static final int BUFFER_SIZE = 16;
+
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        ioExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testHandoff() throws Exception {
+        SourceChannel source = new SourceChannel(getData(5 * BUFFER_SIZE), -1);
+        ReadAheadChannel channel = new ReadAheadChannel(source, BUFFER_SIZE, ioExecutor);
+        // the first block is read on construction
+        awaitIo();
+        Assert.assertEquals(BUFFER_SIZE, source.position);
+        // taking the first block starts reading the second one into the spare buffer
+        ByteBuffer destination = ByteBuffer.allocate(1);
+        Assert.assertEquals(1, channel.read(destination));
+        awaitIo();
+        Assert.assertEquals(2 * BUFFER_SIZE, source.position);
+        // the rest of the first block is served without reading further
+        destination = ByteBuffer.allocate(BUFFER_SIZE);
+        Assert.assertEquals(BUFFER_SIZE - 1, channel.read(destination));
+        awaitIo();
+        Assert.assertEquals(2 * BUFFER_SIZE, source.position);
+        // taking the second block hands the drained buffer back for the third one
+        destination.clear();
+        Assert.assertEquals(BUFFER_SIZE, channel.read(destination));
+        awaitIo();
+        Assert.assertEquals(3 * BUFFER_SIZE, source.position);
+        Assert.assertArrayEquals(Arrays.copyOfRange(source.data, BUFFER_SIZE, 2 * BUFFER_SIZE), destination.array());
+        channel.close();
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        for (int length : new int[]{0, 1, BUFFER_SIZE - 1, BUFFER_SIZE, BUFFER_SIZE + 1, 5 * BUFFER_SIZE,
+                5 * BUFFER_SIZE + BUFFER_SIZE / 2}) {
+            for (int chunk : new int[]{1, 7, BUFFER_SIZE, 3 * BUFFER_SIZE}) {
+                byte[] data = getData(length);
+                Assert.assertArrayEquals(data, readAll(new SourceChannel(data, -1), chunk));
+            }
+        }
+    }
+
+    @Test
+    public void testEofInTheMiddleOfBlock() throws IOException {
+        byte[] data = getData(2 * BUFFER_SIZE + BUFFER_SIZE / 2);
+        SourceChannel source = new SourceChannel(data, -1);
+        // the source returns short reads, a block is only short at the end of the channel
+        source.maxRead = 3;
+        ReadAheadChannel channel = new ReadAheadChannel(source, BUFFER_SIZE, ioExecutor);
+        ByteBuffer destination = ByteBuffer.allocate(data.length + 1);
+        Assert.assertEquals(BUFFER_SIZE, channel.read(destination));
+        Assert.assertEquals(BUFFER_SIZE, channel.read(destination));
+        Assert.assertEquals(BUFFER_SIZE / 2, channel.read(destination));
+        Assert.assertEquals(-1, channel.read(destination));
+        Assert.assertEquals(-1, channel.read(destination));
+        destination.flip();
+        Assert.assertEquals(ByteBuffer.wrap(data), destination);
+        channel.close();
+        Assert.assertTrue(source.closed);
+    }
+
+    @Test
+    public void testReadError() throws IOException {
+        SourceChannel source = new SourceChannel(getData(3 * BUFFER_SIZE), BUFFER_SIZE + 1);
+        ReadAheadChannel channel = new ReadAheadChannel(source, BUFFER_SIZE, ioExecutor);
+        ByteBuffer destination = ByteBuffer.allocate(BUFFER_SIZE);
+        Assert.assertEquals(BUFFER_SIZE, channel.read(destination));
+        destination.clear();
+        try {
+            channel.read(destination);
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertSame(source.error, e);
+        }
+        // the failed block is not taken, so the failure is not lost for a caller which closes the channel only
+        try {
+            channel.close();
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertSame(source.error, e);
+        }
+        Assert.assertTrue(source.closed);
+    }
+
+    @Test
+    public void testCloseError() {
+        SourceChannel source = new SourceChannel(getData(3 * BUFFER_SIZE), BUFFER_SIZE / 2);
+        ReadAheadChannel channel = new ReadAheadChannel(source, BUFFER_SIZE, ioExecutor);
+        try {
+            channel.close();
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertSame(source.error, e);
+        }
+        Assert.assertFalse(channel.isOpen());
+        Assert.assertTrue(source.closed);
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        SourceChannel source = new SourceChannel(getData(3 * BUFFER_SIZE), -1);
+        ReadAheadChannel channel = new ReadAheadChannel(source, BUFFER_SIZE, ioExecutor);
+        Assert.assertTrue(channel.isOpen());
+        channel.read(ByteBuffer.allocate(1));
+        channel.close();
+        // the block being read is waited for before the source is closed
+        Assert.assertEquals(2 * BUFFER_SIZE, source.positionOnClose);
+        Assert.assertFalse(channel.isOpen());
+        Assert.assertTrue(source.closed);
+        channel.close();
+        try {
+            channel.read(ByteBuffer.allocate(1));
+            Assert.fail();
+        } catch (ClosedChannelException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBufferPool() throws IOException {
+        BufferPool pool = new BufferPool(4 * BUFFER_SIZE);
+        for (int length : new int[]{0, BUFFER_SIZE / 2, 3 * BUFFER_SIZE}) {
+            // the buffers are given back whether the channel has been read to the end or not
+            for (int read : new int[]{0, 1, length + 1}) {
+                ReadAheadChannel channel = new ReadAheadChannel(new SourceChannel(getData(length), -1), BUFFER_SIZE,
+                        ioExecutor, pool);
+                channel.read(ByteBuffer.allocate(read));
+                channel.close();
+                Assert.assertEquals(2 * BUFFER_SIZE, pool.getIdleBytes());
+            }
+        }
+        // the buffers of a failed channel are dropped
+        pool.clear();
+        ReadAheadChannel channel = new ReadAheadChannel(new SourceChannel(getData(BUFFER_SIZE), 0), BUFFER_SIZE,
+                ioExecutor, pool);
+        try {
+            channel.close();
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertEquals(0, pool.getIdleBytes());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullChannel() {
+        new ReadAheadChannel(null, BUFFER_SIZE, ioExecutor);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroBufferSize() {
+        new ReadAheadChannel(new SourceChannel(new byte[0], -1), 0, ioExecutor);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullExecutor() {
+        new ReadAheadChannel(new SourceChannel(new byte[0], -1), BUFFER_SIZE, null);
+    }
+
+    private byte[] readAll(SourceChannel source, int chunk) throws IOException {
+        ByteBuffer result = ByteBuffer.allocate(source.data.length);
+        try (ReadAheadChannel channel = new ReadAheadChannel(source, BUFFER_SIZE, ioExecutor)) {
+            ByteBuffer destination = ByteBuffer.allocate(chunk);
+            while (channel.read(destination) >= 0) {
+                destination.flip();
+                result.put(destination);
+                destination.clear();
+            }
+        }
+        Assert.assertTrue(source.closed);
+        return result.array();
+    }
+
+    /**
+     * The method is intended to wait until the I/O thread has finished everything submitted so far.
+     */
+    private void awaitIo() throws Exception {
+        ioExecutor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                return null;
+            }
+        }).get();
+    }
+
+    private static byte[] getData(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + 7);
+        }
+        return data;
+    }
+
+    /**
+     * A channel over a byte array which may return short reads and fail at the specified position.
+     */
+    private static class SourceChannel implements ReadableByteChannel {
+
+        private final byte[] data;
+        private final int failAt;
+        private final IOException error = new IOException("read failed");
+        private volatile int position;
+        private volatile int positionOnClose = -1;
+        private volatile boolean closed;
+        private int maxRead = Integer.MAX_VALUE;
+
+        SourceChannel(byte[] data, int failAt) {
+            this.data = data;
+            this.failAt = failAt;
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            if (position == failAt) {
+                throw error;
+            }
+            if (position == data.length) {
+                return -1;
+            }
+            int length = Math.min(Math.min(destination.remaining(), maxRead), data.length - position);
+            if (failAt > position) {
+                length = Math.min(length, failAt - position);
+            }
+            destination.put(data, position, length);
+            position += length;
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public void close() {
+            positionOnClose = position;
+            closed = true;
+        }
+
+    }
+
+}
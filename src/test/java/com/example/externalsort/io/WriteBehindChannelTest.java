@@ -0,0 +1,244 @@
+package com.example.externalsort.io;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This is a unit test for {@link WriteBehindChannel}.
+ *
+ * @author Ruslan Sverchkov
+ */
+public class WriteBehindChannelTest {
+
+    private static final int BUFFER_SIZE = 16;
+
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        ioExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testHandoff() throws IOException, InterruptedException {
+        SinkChannel sink = new SinkChannel(-1);
+        sink.gate = new CountDownLatch(1);
+        WriteBehindChannel channel = new WriteBehindChannel(sink, BUFFER_SIZE, ioExecutor);
+        byte[] data = getData(3 * BUFFER_SIZE);
+        // the first block stays in the current buffer until the next byte does not fit
+        channel.write(ByteBuffer.wrap(data, 0, BUFFER_SIZE));
+        Assert.assertEquals(0, sink.writes);
+        // the full buffer is handed to the I/O thread, the producer goes on with the spare one
+        channel.write(ByteBuffer.wrap(data, BUFFER_SIZE, BUFFER_SIZE));
+        sink.started.await();
+        Assert.assertEquals(0, sink.bytes.size());
+        // the next handoff waits for the spare buffer to be written
+        sink.gate.countDown();
+        channel.write(ByteBuffer.wrap(data, 2 * BUFFER_SIZE, 1));
+        Assert.assertTrue(sink.bytes.size() >= BUFFER_SIZE);
+        channel.write(ByteBuffer.wrap(data, 2 * BUFFER_SIZE + 1, BUFFER_SIZE - 1));
+        channel.close();
+        Assert.assertArrayEquals(data, sink.bytes.toByteArray());
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        for (int length : new int[]{0, 1, BUFFER_SIZE - 1, BUFFER_SIZE, BUFFER_SIZE + 1, 5 * BUFFER_SIZE,
+                5 * BUFFER_SIZE + BUFFER_SIZE / 2}) {
+            for (int chunk : new int[]{1, 7, BUFFER_SIZE, 3 * BUFFER_SIZE}) {
+                byte[] data = getData(length);
+                SinkChannel sink = new SinkChannel(-1);
+                try (WriteBehindChannel channel = new WriteBehindChannel(sink, BUFFER_SIZE, ioExecutor)) {
+                    for (int i = 0; i < length; i += chunk) {
+                        ByteBuffer source = ByteBuffer.wrap(data, i, Math.min(chunk, length - i));
+                        Assert.assertEquals(source.remaining(), channel.write(source));
+                        Assert.assertFalse(source.hasRemaining());
+                    }
+                }
+                Assert.assertArrayEquals(data, sink.bytes.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void testFlush() throws IOException {
+        SinkChannel sink = new SinkChannel(-1);
+        WriteBehindChannel channel = new WriteBehindChannel(sink, BUFFER_SIZE, ioExecutor);
+        byte[] data = getData(2 * BUFFER_SIZE);
+        channel.write(ByteBuffer.wrap(data, 0, BUFFER_SIZE / 2));
+        Assert.assertEquals(0, sink.bytes.size());
+        channel.flush();
+        Assert.assertEquals(BUFFER_SIZE / 2, sink.bytes.size());
+        channel.flush();
+        Assert.assertEquals(BUFFER_SIZE / 2, sink.bytes.size());
+        // the channel goes on after a flush
+        channel.write(ByteBuffer.wrap(data, BUFFER_SIZE / 2, data.length - BUFFER_SIZE / 2));
+        channel.flush();
+        Assert.assertArrayEquals(data, sink.bytes.toByteArray());
+        Assert.assertFalse(sink.closed);
+        channel.close();
+        Assert.assertTrue(sink.closed);
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        SinkChannel sink = new SinkChannel(-1);
+        WriteBehindChannel channel = new WriteBehindChannel(sink, BUFFER_SIZE, ioExecutor);
+        byte[] data = getData(BUFFER_SIZE + BUFFER_SIZE / 2);
+        channel.write(ByteBuffer.wrap(data));
+        Assert.assertTrue(channel.isOpen());
+        channel.close();
+        // everything is written before the sink is closed
+        Assert.assertEquals(data.length, sink.sizeOnClose);
+        Assert.assertArrayEquals(data, sink.bytes.toByteArray());
+        Assert.assertFalse(channel.isOpen());
+        channel.close();
+        try {
+            channel.write(ByteBuffer.wrap(data));
+            Assert.fail();
+        } catch (ClosedChannelException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testWriteError() throws IOException {
+        SinkChannel sink = new SinkChannel(0);
+        WriteBehindChannel channel = new WriteBehindChannel(sink, BUFFER_SIZE, ioExecutor);
+        byte[] data = getData(3 * BUFFER_SIZE);
+        // the first block fails in the background, the failure reaches the producer at the next handoff
+        channel.write(ByteBuffer.wrap(data, 0, 2 * BUFFER_SIZE));
+        try {
+            channel.write(ByteBuffer.wrap(data, 2 * BUFFER_SIZE, BUFFER_SIZE));
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertSame(sink.error, e);
+        }
+    }
+
+    @Test
+    public void testCloseError() {
+        SinkChannel sink = new SinkChannel(BUFFER_SIZE);
+        WriteBehindChannel channel = new WriteBehindChannel(sink, BUFFER_SIZE, ioExecutor);
+        try {
+            channel.write(ByteBuffer.wrap(getData(2 * BUFFER_SIZE)));
+            channel.close();
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertSame(sink.error, e);
+        }
+        Assert.assertFalse(channel.isOpen());
+        Assert.assertTrue(sink.closed);
+        Assert.assertArrayEquals(Arrays.copyOf(getData(BUFFER_SIZE), BUFFER_SIZE), sink.bytes.toByteArray());
+    }
+
+    @Test
+    public void testBufferPool() throws IOException {
+        BufferPool pool = new BufferPool(4 * BUFFER_SIZE);
+        for (int length : new int[]{0, BUFFER_SIZE / 2, 3 * BUFFER_SIZE}) {
+            WriteBehindChannel channel = new WriteBehindChannel(new SinkChannel(-1), BUFFER_SIZE, ioExecutor, pool);
+            channel.write(ByteBuffer.wrap(getData(length)));
+            channel.close();
+            Assert.assertEquals(2 * BUFFER_SIZE, pool.getIdleBytes());
+        }
+        // the buffers of a failed channel are dropped
+        pool.clear();
+        WriteBehindChannel channel = new WriteBehindChannel(new SinkChannel(0), BUFFER_SIZE, ioExecutor, pool);
+        try {
+            channel.write(ByteBuffer.wrap(getData(BUFFER_SIZE)));
+            channel.close();
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertEquals(0, pool.getIdleBytes());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullChannel() {
+        new WriteBehindChannel(null, BUFFER_SIZE, ioExecutor);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroBufferSize() {
+        new WriteBehindChannel(new SinkChannel(-1), 0, ioExecutor);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullExecutor() {
+        new WriteBehindChannel(new SinkChannel(-1), BUFFER_SIZE, null);
+    }
+
+    private static byte[] getData(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + 7);
+        }
+        return data;
+    }
+
+    /**
+     * A channel collecting the bytes written which writes a few bytes at a time, may wait for a gate before writing
+     * and fail at the specified position.
+     */
+    private static class SinkChannel implements WritableByteChannel {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final int failAt;
+        private final IOException error = new IOException("write failed");
+        private volatile CountDownLatch gate;
+        private volatile int writes;
+        private volatile int sizeOnClose = -1;
+        private volatile boolean closed;
+
+        SinkChannel(int failAt) {
+            this.failAt = failAt;
+        }
+
+        @Override
+        public synchronized int write(ByteBuffer source) throws IOException {
+            started.countDown();
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            if (bytes.size() == failAt) {
+                throw error;
+            }
+            int length = Math.min(source.remaining(), 5);
+            byte[] chunk = new byte[length];
+            source.get(chunk);
+            bytes.write(chunk, 0, length);
+            writes++;
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public synchronized void close() {
+            sizeOnClose = bytes.size();
+            closed = true;
+        }
+
+    }
+
+}